@@ -15,21 +15,50 @@
  */
 package io.dropwizard.maxmind.geoip2;
 
+import com.google.common.base.Strings;
 import io.dropwizard.Configuration;
 import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.maxmind.geoip2.cache.CacheWarmer;
 import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabaseRegistry;
+import io.dropwizard.maxmind.geoip2.filter.GeoGate;
+import io.dropwizard.maxmind.geoip2.filter.MaxMindFeature;
+import io.dropwizard.maxmind.geoip2.filter.MaxMindGateFilter;
 import io.dropwizard.maxmind.geoip2.filter.MaxMindGeoIpRequestFilter;
+import io.dropwizard.maxmind.geoip2.health.MaxMindWarmupHealthCheck;
+import io.dropwizard.maxmind.geoip2.lookup.AsyncResolver;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
 import io.dropwizard.maxmind.geoip2.provider.MaxMindInfoProvider;
+import io.dropwizard.maxmind.geoip2.service.GeoIpLookupService;
+import io.dropwizard.maxmind.geoip2.service.GeoIpLookupServlet;
+import io.dropwizard.maxmind.geoip2.stats.TrafficAggregator;
+import io.dropwizard.maxmind.geoip2.stats.TrafficStatsServlet;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
 /**
  * @author phaneesh
  */
 public abstract class MaxMindBundle<T extends Configuration> implements ConfiguredBundle<T> {
 
+    private GeoIpLookupService lookupService;
+
     public abstract MaxMindConfig getMaxMindConfig(final T configuration);
 
+    /**
+     * @return the lookup service backed by the bundle's databases; available once the bundle has run
+     */
+    public GeoIpLookupService getLookupService() {
+        return lookupService;
+    }
+
     @Override
     public void initialize(Bootstrap<?> bootstrap) {
 
@@ -38,9 +67,54 @@ public abstract class MaxMindBundle<T extends Configuration> implements Configur
     @Override
     public void run(final T configuration, final Environment environment) {
         MaxMindConfig maxMindConfig = getMaxMindConfig(configuration);
-        environment.jersey().register(new MaxMindGeoIpRequestFilter(maxMindConfig));
+        //Readers are shared with every other bundle and service using the same files and closed with the last of them
+        MaxMindDatabaseRegistry.Lease databases = MaxMindDatabaseRegistry.shared().lease(maxMindConfig);
+        environment.lifecycle().manage(databases);
+        MaxMindMetrics metrics = new MaxMindMetrics(environment.metrics(), maxMindConfig.getMetricsName());
+        MaxMindResolver resolver = new MaxMindResolver(maxMindConfig, databases.getDatabases(), metrics);
+        environment.lifecycle().manage(resolver);
+        if(!Strings.isNullOrEmpty(maxMindConfig.getWarmupSnapshotPath())) {
+            CacheWarmer warmer = new CacheWarmer(resolver, new File(maxMindConfig.getWarmupSnapshotPath()),
+                    maxMindConfig.getWarmupMaxEntries());
+            environment.lifecycle().manage(warmer);
+            environment.healthChecks().register("maxmind-warmup", new MaxMindWarmupHealthCheck(warmer));
+        }
+        AsyncResolver asyncResolver = null;
+        if(maxMindConfig.isAsync()) {
+            int threads = maxMindConfig.getAsyncThreads() > 0 ? maxMindConfig.getAsyncThreads()
+                    : Runtime.getRuntime().availableProcessors();
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(maxMindConfig.getAsyncQueueSize());
+            ExecutorService executor = environment.lifecycle().executorService("maxmind-lookup-%d")
+                    .minThreads(threads)
+                    .maxThreads(threads)
+                    .workQueue(queue)
+                    .rejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy())
+                    .build();
+            asyncResolver = new AsyncResolver(resolver, executor, queue, maxMindConfig.getAsyncTimeout());
+        }
+        TrafficAggregator traffic = null;
+        if(maxMindConfig.isTrafficStats()) {
+            traffic = new TrafficAggregator(maxMindConfig.getTrafficStatsTopK(),
+                    maxMindConfig.getTrafficStatsSketchWidth());
+            environment.admin().addServlet("maxmind-traffic", new TrafficStatsServlet(traffic,
+                    environment.getObjectMapper(), maxMindConfig.getTrafficStatsTopK()))
+                    .addMapping("/maxmind/traffic");
+        }
+        MaxMindGeoIpRequestFilter geoIpFilter = new MaxMindGeoIpRequestFilter(maxMindConfig, resolver, asyncResolver,
+                traffic);
+        environment.jersey().register(new MaxMindFeature(geoIpFilter, maxMindConfig.isAnnotatedOnly()));
+        if(maxMindConfig.getGate() != null) {
+            environment.jersey().register(new MaxMindGateFilter(geoIpFilter, new GeoGate(maxMindConfig.getGate())));
+        }
         if(maxMindConfig.isMaxMindContext()) {
-            environment.jersey().register(new MaxMindInfoProvider.Binder());
+            environment.jersey().register(new MaxMindInfoProvider.Binder(resolver));
+        }
+        lookupService = new GeoIpLookupService(resolver, maxMindConfig.getBatchParallelism());
+        environment.lifecycle().manage(lookupService);
+        if(maxMindConfig.isAdminLookup()) {
+            environment.admin().addServlet("maxmind-lookup", new GeoIpLookupServlet(lookupService,
+                    environment.getObjectMapper(), maxMindConfig.getAdminLookupBatchSize()))
+                    .addMapping("/maxmind/lookup");
         }
     }
 }
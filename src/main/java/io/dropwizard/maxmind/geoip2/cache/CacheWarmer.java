@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.cache;
+
+import com.maxmind.db.Network;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the networks held by the result cache on shutdown and replays them against the freshly opened databases on
+ * startup, in a background thread, so a restart does not start from a cold cache. A snapshot whose replay was cut short
+ * is only replaced by one holding at least as many networks, so a quick restart does not lose the working set.
+ * <p>
+ * Snapshot format: magic, version and count ints followed by one entry per network: address length (4 or 16),
+ * prefix length and the network address bytes.
+ *
+ * @author phaneesh
+ */
+@Slf4j
+public class CacheWarmer implements Managed {
+
+    private static final int MAGIC = 0x4d4d5753;
+
+    private static final int VERSION = 1;
+
+    private final MaxMindResolver resolver;
+
+    private final File snapshot;
+
+    private final int maxEntries;
+
+    private volatile Thread warmer;
+
+    private volatile boolean warmedUp;
+
+    //Whether the previous snapshot was replayed in full, or is missing or unreadable and need not be kept
+    private volatile boolean replayFinished;
+
+    private volatile int replayed;
+
+    private volatile int total;
+
+    /**
+     * @param snapshot   file the hot networks are written to and read from
+     * @param maxEntries upper bound of networks persisted
+     */
+    public CacheWarmer(MaxMindResolver resolver, File snapshot, int maxEntries) {
+        this.resolver = resolver;
+        this.snapshot = snapshot;
+        this.maxEntries = maxEntries;
+    }
+
+    public boolean isWarmedUp() {
+        return warmedUp;
+    }
+
+    public int getReplayed() {
+        return replayed;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    @Override
+    public void start() {
+        if (!snapshot.isFile() || !resolver.getResultCache().isEnabled()) {
+            replayFinished = true;
+            warmedUp = true;
+            return;
+        }
+        warmer = new Thread(this::replay, "maxmind-cache-warmer");
+        warmer.setDaemon(true);
+        warmer.start();
+    }
+
+    @Override
+    public void stop() throws IOException {
+        final Thread thread = warmer;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        if (!resolver.getResultCache().isEnabled()) {
+            return;
+        }
+        final List<Network> networks = resolver.getResultCache().networks(maxEntries);
+        if (!replayFinished && networks.size() < total) {
+            log.info("Keeping GeoIP cache snapshot {} | Stopped after replaying {} of its {} networks", snapshot,
+                    replayed, total);
+            return;
+        }
+        write(networks);
+    }
+
+    void replay() {
+        final long start = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Ignoring unrecognised GeoIP cache snapshot {}", snapshot);
+                replayFinished = true;
+                return;
+            }
+            total = in.readInt();
+            for (int i = 0; i < total && !Thread.currentThread().isInterrupted(); i++) {
+                final byte[] address = new byte[in.readUnsignedByte()];
+                in.readUnsignedByte();
+                in.readFully(address);
+                //Resolving the network address caches the result for the whole network the databases now report
+                resolver.resolve(InetAddress.getByAddress(address));
+                replayed = i + 1;
+            }
+            if (replayed < total) {
+                log.info("Stopped warming up GeoIP cache from {} | Networks: {} of {}", snapshot, replayed, total);
+                return;
+            }
+            replayFinished = true;
+            log.info("Warmed up GeoIP cache from {} | Networks: {} | Took: {} ms", snapshot, replayed,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (ClosedByInterruptException e) {
+            log.info("Stopped warming up GeoIP cache from {} | Networks: {} of {}", snapshot, replayed, total);
+        } catch (EOFException e) {
+            replayFinished = true;
+            log.warn("GeoIP cache snapshot {} is truncated; replayed {} networks", snapshot, replayed);
+        } catch (IOException e) {
+            replayFinished = true;
+            log.warn("Error replaying GeoIP cache snapshot {}: {}", snapshot, e.getMessage());
+        } finally {
+            warmedUp = true;
+        }
+    }
+
+    void write(List<Network> networks) throws IOException {
+        final File parent = snapshot.getAbsoluteFile().getParentFile();
+        final File temporary = File.createTempFile(snapshot.getName(), ".tmp", parent);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(networks.size());
+            for (Network network : networks) {
+                final byte[] address = network.getNetworkAddress().getAddress();
+                out.writeByte(address.length);
+                out.writeByte(network.getPrefixLength());
+                out.write(address);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary.toPath());
+            throw e;
+        }
+        //Readers never see a partially written snapshot
+        Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Saved GeoIP cache snapshot {} | Networks: {}", snapshot, networks.size());
+    }
+}
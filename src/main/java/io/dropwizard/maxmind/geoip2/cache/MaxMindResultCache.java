@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.cache;
+
+import com.maxmind.db.Network;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+
+import java.net.InetAddress;
+import java.util.List;
+
+/**
+ * Size bounded, TTL aware cache of resolved {@link MaxMindResult} keyed on the network the result is valid for, so
+ * one lookup serves every address of a block (e.g. a rotating mobile or CGNAT /24 or /64).
+ * A cache configured with a non positive size or ttl is disabled and never stores anything.
+ *
+ * @author phaneesh
+ */
+public class MaxMindResultCache {
+
+    private final NetworkCache<MaxMindResult> cache;
+
+    public MaxMindResultCache(MaxMindConfig config) {
+        this(config.getCacheMaxEntries(), config.getCacheTTL());
+    }
+
+    public MaxMindResultCache(long maxEntries, long ttlSeconds) {
+        this.cache = new NetworkCache<>(maxEntries, ttlSeconds);
+    }
+
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    public MaxMindResult get(InetAddress address) {
+        return cache.get(address);
+    }
+
+    /**
+     * @param address      any address of the network
+     * @param prefixLength prefix length of the network every database consulted agrees on
+     */
+    public void put(InetAddress address, int prefixLength, MaxMindResult result) {
+        cache.put(address, prefixLength, result);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public List<Network> networks(int limit) {
+        return cache.networks(limit);
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long hitCount() {
+        return cache.hitCount();
+    }
+
+    public long missCount() {
+        return cache.missCount();
+    }
+
+    public long evictionCount() {
+        return cache.evictionCount();
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.maxmind.db.Network;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size bounded, TTL aware cache keyed on networks (address prefix and length) rather than single addresses.
+ * A lookup probes the prefix lengths stored so far, longest first, so one entry serves every address of its network.
+ * Probes reuse one key per thread and do not allocate.
+ * A cache configured with a non positive size or ttl is disabled and never stores anything.
+ *
+ * @author phaneesh
+ */
+public class NetworkCache<V> {
+
+    //Probe key of the calling thread; it is only ever compared against stored keys, never stored itself
+    private static final ThreadLocal<NetworkKey> PROBE = ThreadLocal.withInitial(NetworkKey::new);
+
+    private final Cache<NetworkKey, V> cache;
+
+    //Bit n is set once a network with prefix length n has been stored; probing skips every other length
+    private final AtomicLongArray v4Lengths = new AtomicLongArray(1);
+
+    private final AtomicLongArray v6Lengths = new AtomicLongArray(3);
+
+    //Counted per get rather than per probed prefix length
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public NetworkCache(long maxEntries, long ttlSeconds) {
+        if (maxEntries <= 0 || ttlSeconds <= 0) {
+            this.cache = null;
+            return;
+        }
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * @return the value stored for the longest cached network containing the address, or null
+     */
+    public V get(InetAddress address) {
+        if (cache == null) {
+            return null;
+        }
+        final byte[] bytes = address.getAddress();
+        final boolean v6 = bytes.length == 16;
+        final long high = NetworkKey.high(bytes);
+        final long low = NetworkKey.low(bytes);
+        final AtomicLongArray lengths = v6 ? v6Lengths : v4Lengths;
+        final NetworkKey probe = PROBE.get();
+        for (int word = lengths.length() - 1; word >= 0; word--) {
+            long bits = lengths.get(word);
+            while (bits != 0) {
+                final int bit = 63 - Long.numberOfLeadingZeros(bits);
+                bits &= ~(1L << bit);
+                final V value = cache.getIfPresent(probe.set(high, low, word * 64 + bit, v6));
+                if (value != null) {
+                    hits.increment();
+                    return value;
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a value for the network of the given address and prefix length. Prefix lengths beyond the address
+     * width are clamped, i.e. stored for the single address.
+     */
+    public void put(InetAddress address, int prefixLength, V value) {
+        if (cache == null) {
+            return;
+        }
+        final byte[] bytes = address.getAddress();
+        final int length = Math.max(0, Math.min(prefixLength, bytes.length * 8));
+        cache.put(new NetworkKey().set(NetworkKey.high(bytes), NetworkKey.low(bytes), length, bytes.length == 16),
+                value);
+        final AtomicLongArray lengths = bytes.length == 4 ? v4Lengths : v6Lengths;
+        final int word = length >>> 6;
+        final long mask = 1L << (length & 63);
+        long current;
+        do {
+            current = lengths.get(word);
+        } while ((current & mask) == 0 && !lengths.compareAndSet(word, current, current | mask));
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+            for (int i = 0; i < v6Lengths.length(); i++) {
+                v6Lengths.set(i, 0);
+            }
+            v4Lengths.set(0, 0);
+        }
+    }
+
+    /**
+     * @return up to {@code limit} of the cached networks, e.g. to persist the working set across restarts
+     */
+    public List<Network> networks(int limit) {
+        final List<Network> networks = new ArrayList<>();
+        if (cache == null) {
+            return networks;
+        }
+        for (NetworkKey key : cache.asMap().keySet()) {
+            if (networks.size() >= limit) {
+                break;
+            }
+            networks.add(key.toNetwork());
+        }
+        return networks;
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return cache == null ? 0 : cache.stats().evictionCount();
+    }
+
+    /**
+     * Address masked to its prefix length, packed into two longs. IPv4 networks use the low word only and are
+     * kept apart from IPv6 ones by the family flag. Mutable so probes can reuse one instance; keys stored in the
+     * cache are never changed after insertion.
+     */
+    private static final class NetworkKey {
+
+        private long high;
+
+        private long low;
+
+        private int prefixLength;
+
+        private boolean v6;
+
+        NetworkKey set(long high, long low, int prefixLength, boolean v6) {
+            if (v6) {
+                this.high = high & mask(prefixLength);
+                this.low = low & mask(prefixLength - 64);
+            } else {
+                this.high = 0;
+                this.low = low & (prefixLength == 0 ? 0 : 0xffffffffL << (32 - prefixLength)) & 0xffffffffL;
+            }
+            this.prefixLength = prefixLength;
+            this.v6 = v6;
+            return this;
+        }
+
+        //Leading 64 bits of an IPv6 address; 0 for IPv4
+        static long high(byte[] address) {
+            if (address.length == 4) {
+                return 0;
+            }
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (address[i] & 0xffL);
+            }
+            return value;
+        }
+
+        //Trailing 64 bits of an IPv6 address or the whole IPv4 address
+        static long low(byte[] address) {
+            long value = 0;
+            for (int i = address.length == 4 ? 0 : 8; i < address.length; i++) {
+                value = (value << 8) | (address[i] & 0xffL);
+            }
+            return value;
+        }
+
+        Network toNetwork() {
+            final byte[] address = new byte[v6 ? 16 : 4];
+            if (v6) {
+                for (int i = 0; i < 8; i++) {
+                    address[i] = (byte) (high >>> (56 - 8 * i));
+                    address[i + 8] = (byte) (low >>> (56 - 8 * i));
+                }
+            } else {
+                for (int i = 0; i < 4; i++) {
+                    address[i] = (byte) (low >>> (24 - 8 * i));
+                }
+            }
+            try {
+                return new Network(InetAddress.getByAddress(address), prefixLength);
+            } catch (UnknownHostException e) {
+                //Only thrown for illegal address lengths
+                throw new IllegalStateException(e);
+            }
+        }
+
+        //Mask keeping the leading n bits of a 64 bit word
+        private static long mask(int n) {
+            return n <= 0 ? 0 : n >= 64 ? -1L : -1L << (64 - n);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof NetworkKey)) {
+                return false;
+            }
+            final NetworkKey other = (NetworkKey) o;
+            return high == other.high && low == other.low && prefixLength == other.prefixLength && v6 == other.v6;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Long.hashCode(high);
+            result = 31 * result + Long.hashCode(low);
+            result = 31 * result + prefixLength;
+            return v6 ? ~result : result;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.config;
+
+import lombok.Getter;
+
+/**
+ * MaxMind database editions supported by the bundle, in the order they are queried.
+ *
+ * @author phaneesh
+ */
+@Getter
+public enum DatabaseType {
+
+    ENTERPRISE("enterprise"),
+    CITY("city"),
+    COUNTRY("country"),
+    ISP("isp"),
+    ASN("asn"),
+    CONNECTION_TYPE("connectionType"),
+    ANONYMOUS("anonymous");
+
+    private final String name;
+
+    DatabaseType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the type for a legacy {@code type} value (country, city, anonymous) or null if unsupported
+     */
+    public static DatabaseType fromName(String name) {
+        for (DatabaseType type : values()) {
+            if (type.name.equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
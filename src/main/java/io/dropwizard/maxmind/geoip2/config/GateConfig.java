@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allow and deny lists of the geo gate, which rejects requests before resource matching.
+ *
+ * @author phaneesh
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class GateConfig {
+    //ISO 3166-1 alpha-2 codes; when set, only requests from these countries pass
+    @Builder.Default
+    private List<String> allowCountries = new ArrayList<>();
+    //ISO 3166-1 alpha-2 codes rejected
+    @Builder.Default
+    private List<String> denyCountries = new ArrayList<>();
+    //Autonomous system numbers; when set, only requests from these networks pass
+    @Builder.Default
+    private List<Long> allowAsns = new ArrayList<>();
+    //Autonomous system numbers rejected
+    @Builder.Default
+    private List<Long> denyAsns = new ArrayList<>();
+    @Builder.Default
+    private boolean denyAnonymous = false;
+    @Builder.Default
+    private boolean denyAnonymousVpn = false;
+    @Builder.Default
+    private boolean denyTor = false;
+    //Let requests through when the country or ASN an allow list needs could not be resolved; the client controls the
+    //forwarding header, so a missing, malformed or private address would otherwise bypass the allow list
+    @Builder.Default
+    private boolean allowUnresolved = false;
+    //Let requests through when their lookup did not complete (async timeout or saturated pool); false rejects them
+    @Builder.Default
+    private boolean failOpen = true;
+    //Status of rejected requests
+    @Min(400)
+    @Max(599)
+    @Builder.Default
+    private int status = 403;
+}
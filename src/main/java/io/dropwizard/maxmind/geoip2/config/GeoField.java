@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.config;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import io.dropwizard.maxmind.geoip2.core.MaxMindHeaders;
+import lombok.Getter;
+
+/**
+ * Geo fields the bundle can resolve, named after the {@link io.dropwizard.maxmind.geoip2.core.MaxMindInfo}
+ * properties, along with the header each one is stamped as.
+ *
+ * @author phaneesh
+ */
+@Getter
+public enum GeoField {
+
+    COUNTRY("country", MaxMindHeaders.X_COUNTRY),
+    COUNTRY_ISO("countryIso", MaxMindHeaders.X_COUNTRY_ISO),
+    STATE("state", MaxMindHeaders.X_STATE),
+    STATE_ISO("stateIso", MaxMindHeaders.X_STATE_ISO),
+    CITY("city", MaxMindHeaders.X_CITY),
+    POSTAL("postal", MaxMindHeaders.X_POSTAL),
+    LATITUDE("latitude", MaxMindHeaders.X_LATITUDE),
+    LONGITUDE("longitude", MaxMindHeaders.X_LONGITUDE),
+    ACCURACY("accuracy", MaxMindHeaders.X_LOCATION_ACCURACY),
+    USER_TYPE("userType", MaxMindHeaders.X_USER_TYPE),
+    ISP("isp", MaxMindHeaders.X_ISP),
+    ASN("asn", MaxMindHeaders.X_ASN),
+    CONNECTION_TYPE("connectionType", MaxMindHeaders.X_CONNECTION_TYPE),
+    PROXY_LEGAL("proxyLegal", MaxMindHeaders.X_PROXY_LEGAL),
+    ANONYMOUS_IP("anonymousIp", MaxMindHeaders.X_ANONYMOUS_IP),
+    ANONYMOUS_VPN("anonymousVpn", MaxMindHeaders.X_ANONYMOUS_VPN),
+    TOR("tor", MaxMindHeaders.X_TOR);
+
+    private final String name;
+
+    private final String header;
+
+    GeoField(String name, String header) {
+        this.name = name;
+        this.header = header;
+    }
+
+    @JsonValue
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no field of that name
+     */
+    @JsonCreator
+    public static GeoField fromName(String name) {
+        for (GeoField field : values()) {
+            if (field.name.equalsIgnoreCase(name) || field.name().equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown geo field: " + name);
+    }
+}
@@ -16,12 +16,22 @@
  */
 package io.dropwizard.maxmind.geoip2.config;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.base.Strings;
+import com.maxmind.db.Reader;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.Valid;
+import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.NotEmpty;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * @author phaneesh
@@ -31,18 +41,177 @@ import javax.validation.constraints.NotEmpty;
 @NoArgsConstructor
 @Builder
 public class MaxMindConfig {
-    @NotEmpty
+    //Single database mode; use databases to configure one reader per edition instead
     private String databaseFilePath;
+    @Valid
+    @Builder.Default
+    private List<DatabaseConfig> databases = new ArrayList<>();
     @Builder.Default
     private String remoteIpHeader = "X-FORWARDED-FOR";
+    //Proxy networks in CIDR notation (e.g. 10.0.0.0/8); when set the client is the rightmost untrusted hop
+    @Builder.Default
+    private List<String> trustedProxies = new ArrayList<>();
+    //Read the client address from the RFC 7239 Forwarded header when present, falling back to remoteIpHeader
+    @Builder.Default
+    private boolean forwardedHeader = false;
     @Builder.Default
     private int cacheTTL = 300;
     @Builder.Default
     private int cacheMaxEntries = 10000;
+    //Networks without a record in the location database, cached for cacheTTL; 0 disables the negative cache
+    @Builder.Default
+    private int negativeCacheMaxEntries = 10000;
+    //Answer private, loopback, link local, CGNAT and other reserved addresses with an empty result without a lookup
+    @Builder.Default
+    private boolean skipReservedAddresses = true;
     @Builder.Default
     private boolean enterprise = false;
-    //country, city, anonymous
+    //country, city, anonymous (single database mode)
     private String type;
     @Builder.Default
     private boolean maxMindContext = false;
+    //In seconds; how often the database file is checked for updates. 0 disables hot reload
+    @Builder.Default
+    private int databaseReloadInterval = 0;
+    //MEMORY_MAPPED keeps the database off heap and pages it in on demand; MEMORY loads it fully on the heap
+    @Builder.Default
+    private Reader.FileMode fileMode = Reader.FileMode.MEMORY_MAPPED;
+    //Fault in the whole memory mapped database at startup (and on reload) so the first requests do not stall
+    @Builder.Default
+    private boolean preload = false;
+    //Flatten a country database into a compact in memory range index at load time; used when country is the location database
+    @Builder.Default
+    private boolean countryIndex = false;
+    //Only capture the client address in the filter and resolve it when MaxMindInfo is first injected
+    @Builder.Default
+    private boolean lazy = false;
+    //Only resolve for resources annotated with @MaxMindLookup instead of all resources not opted out
+    @Builder.Default
+    private boolean annotatedOnly = false;
+    //Stamp the X-MAXMIND-* headers on the request; MaxMindInfo injection does not depend on them
+    @Builder.Default
+    private boolean stampHeaders = true;
+    //Geo fields to resolve (e.g. countryIso, anonymousIp); empty resolves all of them
+    @Builder.Default
+    private List<GeoField> fields = new ArrayList<>();
+    //File the hottest cached networks are saved to on shutdown and replayed from on startup; unset disables warm-up
+    private String warmupSnapshotPath;
+    //Upper bound of networks saved to the warm-up snapshot
+    @Builder.Default
+    private int warmupMaxEntries = 10000;
+    //Run database lookups on a dedicated bounded pool with a per request latency budget instead of the request thread
+    @Builder.Default
+    private boolean async = false;
+    //Lookup threads in async mode; 0 uses one per available processor
+    @Builder.Default
+    private int asyncThreads = 0;
+    //Lookups queued in async mode before further requests go ahead without geo data
+    @Builder.Default
+    private int asyncQueueSize = 1024;
+    //In milliseconds; how long a request waits for its lookup in async mode
+    @Builder.Default
+    private int asyncTimeout = 20;
+    //Allow / deny lists applied before resource matching; unset disables the gate
+    @Valid
+    private GateConfig gate;
+    //Aggregate resolved requests by country, ASN and network and serve them on the admin port at /maxmind/traffic
+    @Builder.Default
+    private boolean trafficStats = false;
+    //ASNs and networks tracked by the traffic aggregation
+    @Builder.Default
+    private int trafficStatsTopK = 100;
+    //Counters per row of the traffic aggregation's Count-Min sketches; larger is more accurate
+    @Builder.Default
+    private int trafficStatsSketchWidth = 4096;
+    //Worker threads of the batch lookup service; 0 uses one per available processor
+    @Builder.Default
+    private int batchParallelism = 0;
+    //Expose POST /maxmind/lookup on the admin port, enriching one address per line into NDJSON
+    @Builder.Default
+    private boolean adminLookup = false;
+    //Addresses read and resolved per batch by the admin lookup endpoint
+    @Builder.Default
+    private int adminLookupBatchSize = 10000;
+    //Name metrics are registered under; every bundle sharing a metric registry needs its own
+    @NotEmpty
+    @Builder.Default
+    private String metricsName = "maxmind";
+
+    /**
+     * Databases to open: the explicit {@code databases} list, or the single {@code databaseFilePath} as
+     * enterprise / {@code type} for older configurations. Empty if the legacy type is not supported.
+     */
+    @JsonIgnore
+    public List<DatabaseConfig> getEffectiveDatabases() {
+        if (databases != null && !databases.isEmpty()) {
+            return databases;
+        }
+        final DatabaseType legacyType = enterprise ? DatabaseType.ENTERPRISE : DatabaseType.fromName(type);
+        if (Strings.isNullOrEmpty(databaseFilePath) || legacyType == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new DatabaseConfig(legacyType, databaseFilePath));
+    }
+
+    /**
+     * Fields to resolve: the configured {@code fields}, or all of them when none are configured.
+     */
+    @JsonIgnore
+    public Set<GeoField> getEffectiveFields() {
+        return fields == null || fields.isEmpty() ? EnumSet.allOf(GeoField.class) : EnumSet.copyOf(fields);
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "either databaseFilePath or databases must be configured")
+    public boolean isDatabaseConfigured() {
+        return !Strings.isNullOrEmpty(databaseFilePath) || (databases != null && !databases.isEmpty());
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "gate lists need their fields and a database producing them: countryIso and an enterprise, "
+            + "city or country database for countries, asn and an isp or asn database for ASNs, anonymousIp, "
+            + "anonymousVpn or tor and an anonymous database for the anonymity flags")
+    public boolean isGateResolvable() {
+        if (gate == null) {
+            return true;
+        }
+        final boolean countries = !gate.getAllowCountries().isEmpty() || !gate.getDenyCountries().isEmpty();
+        final boolean asns = !gate.getAllowAsns().isEmpty() || !gate.getDenyAsns().isEmpty();
+        return (!countries || produces(GeoField.COUNTRY_ISO, DatabaseType.ENTERPRISE, DatabaseType.CITY, DatabaseType.COUNTRY))
+                && (!asns || produces(GeoField.ASN, DatabaseType.ISP, DatabaseType.ASN))
+                && (!gate.isDenyAnonymous() || produces(GeoField.ANONYMOUS_IP, DatabaseType.ANONYMOUS))
+                && (!gate.isDenyAnonymousVpn() || produces(GeoField.ANONYMOUS_VPN, DatabaseType.ANONYMOUS))
+                && (!gate.isDenyTor() || produces(GeoField.TOR, DatabaseType.ANONYMOUS));
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "trafficStats needs countryIso and an enterprise, city or country database; asn and the "
+            + "anonymity flags are aggregated when available")
+    public boolean isTrafficStatsResolvable() {
+        return !trafficStats
+                || produces(GeoField.COUNTRY_ISO, DatabaseType.ENTERPRISE, DatabaseType.CITY, DatabaseType.COUNTRY);
+    }
+
+    /**
+     * @return whether the field is selected and one of the given editions, the ones that carry it, is configured
+     */
+    private boolean produces(GeoField field, DatabaseType... editions) {
+        if (!getEffectiveFields().contains(field)) {
+            return false;
+        }
+        for (DatabaseConfig database : getEffectiveDatabases()) {
+            for (DatabaseType edition : editions) {
+                if (database.getType() == edition) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "lazy requires maxMindContext; only MaxMindInfo injection resolves lazily captured addresses")
+    public boolean isLazyResolvable() {
+        return !lazy || maxMindContext;
+    }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.core;
+
+/**
+ * Connection types reported by the GeoIP2 connection type database and the enterprise traits, by header value.
+ *
+ * @author phaneesh
+ */
+public enum MaxMindConnectionType {
+    DIALUP,
+    CABLE_DSL,
+    CORPORATE,
+    CELLULAR,
+    SATELLITE;
+
+    private static final MaxMindConnectionType[] VALUES = values();
+
+    /**
+     * @return the connection type stamped as the given header value, or null if there is none
+     */
+    public static MaxMindConnectionType fromValue(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (MaxMindConnectionType type : VALUES) {
+            if (type.name().equals(value)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
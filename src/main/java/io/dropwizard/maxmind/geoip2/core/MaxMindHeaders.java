@@ -34,6 +34,7 @@ public interface MaxMindHeaders {
     String X_USER_TYPE = "X-MAXMIND-REQUEST-USER-TYPE";
     String X_CONNECTION_TYPE = "X-MAXMIND-REQUEST-CONNECTION-TYPE";
     String X_ISP = "X-MAXMIND-REQUEST-ISP";
+    String X_ASN = "X-MAXMIND-REQUEST-ASN";
     String X_PROXY_LEGAL = "X-MAXMIND-REQUEST-LEGAL-PROXY";
     String X_ANONYMOUS_IP = "X-MAXMIND-REQUEST-ANONYMOUS-IP";
     String X_ANONYMOUS_VPN = "X-MAXMIND-REQUEST-ANONYMOUS-VPN";
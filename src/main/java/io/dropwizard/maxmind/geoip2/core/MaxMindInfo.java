@@ -17,47 +17,424 @@
 
 package io.dropwizard.maxmind.geoip2.core;
 
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Strings;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import io.dropwizard.maxmind.geoip2.util.CountryCodes;
+import lombok.EqualsAndHashCode;
+
+import java.util.function.Function;
 
 /**
+ * Immutable, canonical geo data of a client address. The country ISO code is held as an index into the 26 x 26
+ * code space, connection and user types as enums, the flags as bits and names as references into a process wide
+ * intern pool. Country codes, connection and user types outside those spaces keep their original value as an interned
+ * string, so nothing a database or header reports is lost. Identical instances are interned on build, so every cache entry and request resolving to the same
+ * data shares one instance.
+ *
  * @author phaneesh
  */
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-@Builder
-public class MaxMindInfo {
+@EqualsAndHashCode
+@JsonPropertyOrder({"anonymousIp", "anonymousVpn", "tor", "city", "state", "stateIso", "country", "countryIso", "postal",
+        "userType", "connectionType", "isp", "latitude", "longitude", "accuracy"})
+@JsonDeserialize(builder = MaxMindInfo.MaxMindInfoBuilder.class)
+public final class MaxMindInfo {
+
+    public static final String UNKNOWN = "UNKNOWN";
+
+    private static final int ANONYMOUS_IP = 1;
+
+    private static final int ANONYMOUS_VPN = 1 << 1;
+
+    private static final int TOR = 1 << 2;
+
+    private static final Interner<String> NAMES = Interners.newWeakInterner();
+
+    private static final Interner<MaxMindInfo> INSTANCES = Interners.newWeakInterner();
+
+    private final byte flags;
+
+    //CountryCodes index, or CountryCodes.NONE
+    private final short countryIso;
+
+    private final MaxMindConnectionType connectionType;
+
+    private final MaxMindUserType userType;
+
+    //Original values the compact fields above do not represent, null otherwise
+    private final String rawCountryIso;
+
+    private final String rawConnectionType;
+
+    private final String rawUserType;
+
+    private final int accuracy;
+
+    private final double latitude;
+
+    private final double longitude;
+
+    private final String country;
+
+    private final String state;
+
+    private final String stateIso;
+
+    private final String city;
+
+    private final String postal;
+
+    private final String isp;
+
+    private MaxMindInfo(MaxMindInfoBuilder builder) {
+        this.flags = (byte) ((builder.anonymousIp ? ANONYMOUS_IP : 0) | (builder.anonymousVpn ? ANONYMOUS_VPN : 0)
+                | (builder.tor ? TOR : 0));
+        this.countryIso = (short) CountryCodes.index(builder.countryIso);
+        this.connectionType = MaxMindConnectionType.fromValue(builder.connectionType);
+        this.userType = MaxMindUserType.fromValue(builder.userType);
+        this.rawCountryIso = countryIso == CountryCodes.NONE ? raw(builder.countryIso) : null;
+        this.rawConnectionType = connectionType == null ? raw(builder.connectionType) : null;
+        this.rawUserType = userType == null ? raw(builder.userType) : null;
+        this.accuracy = builder.accuracy;
+        this.latitude = builder.latitude;
+        this.longitude = builder.longitude;
+        this.country = name(builder.country);
+        this.state = name(builder.state);
+        this.stateIso = name(builder.stateIso);
+        this.city = name(builder.city);
+        this.postal = name(builder.postal);
+        this.isp = name(builder.isp);
+    }
+
+    /**
+     * @deprecated instances are immutable and canonical; use {@link #builder()}, which returns the shared instance
+     * for these values rather than a copy of it
+     */
+    @Deprecated
+    public MaxMindInfo(boolean anonymousIp, boolean anonymousVpn, boolean tor, String city, String state,
+                       String stateIso, String country, String countryIso, String postal, String userType,
+                       String connectionType, String isp, double latitude, double longitude, int accuracy) {
+        this(new MaxMindInfoBuilder()
+                .anonymousIp(anonymousIp)
+                .anonymousVpn(anonymousVpn)
+                .tor(tor)
+                .city(city)
+                .state(state)
+                .stateIso(stateIso)
+                .country(country)
+                .countryIso(countryIso)
+                .postal(postal)
+                .userType(userType)
+                .connectionType(connectionType)
+                .isp(isp)
+                .latitude(latitude)
+                .longitude(longitude)
+                .accuracy(accuracy));
+    }
+
+    public static MaxMindInfoBuilder builder() {
+        return new MaxMindInfoBuilder();
+    }
+
+    public MaxMindInfoBuilder toBuilder() {
+        return new MaxMindInfoBuilder()
+                .anonymousIp(isAnonymousIp())
+                .anonymousVpn(isAnonymousVpn())
+                .tor(isTor())
+                .city(city)
+                .state(state)
+                .stateIso(stateIso)
+                .country(country)
+                .countryIso(getCountryIso())
+                .postal(postal)
+                .userType(getUserType())
+                .connectionType(getConnectionType())
+                .isp(isp)
+                .latitude(latitude)
+                .longitude(longitude)
+                .accuracy(accuracy);
+    }
+
+    public boolean isAnonymousIp() {
+        return (flags & ANONYMOUS_IP) != 0;
+    }
+
+    public boolean isAnonymousVpn() {
+        return (flags & ANONYMOUS_VPN) != 0;
+    }
+
+    public boolean isTor() {
+        return (flags & TOR) != 0;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public String getStateIso() {
+        return stateIso;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public String getCountryIso() {
+        if (countryIso == CountryCodes.NONE) {
+            return rawCountryIso == null ? UNKNOWN : rawCountryIso;
+        }
+        return CountryCodes.code(countryIso);
+    }
+
+    public String getPostal() {
+        return postal;
+    }
+
+    public String getUserType() {
+        if (userType == null) {
+            return rawUserType == null ? UNKNOWN : rawUserType;
+        }
+        return userType.getValue();
+    }
+
+    public String getConnectionType() {
+        if (connectionType == null) {
+            return rawConnectionType == null ? UNKNOWN : rawConnectionType;
+        }
+        return connectionType.name();
+    }
+
+    public String getIsp() {
+        return isp;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public int getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * @return the {@link CountryCodes} index of the country, or {@link CountryCodes#NONE} if unknown or not a two
+     * letter code
+     */
+    @JsonIgnore
+    public int getCountryIndex() {
+        return countryIso;
+    }
+
+    /**
+     * @return the user type, or null if unknown or not one of {@link MaxMindUserType}
+     */
+    @JsonIgnore
+    public MaxMindUserType getUserTypeValue() {
+        return userType;
+    }
+
+    /**
+     * @return the connection type, or null if unknown or not one of {@link MaxMindConnectionType}
+     */
+    @JsonIgnore
+    public MaxMindConnectionType getConnectionTypeValue() {
+        return connectionType;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("anonymousIp", isAnonymousIp())
+                .add("anonymousVpn", isAnonymousVpn())
+                .add("tor", isTor())
+                .add("city", city)
+                .add("state", state)
+                .add("stateIso", stateIso)
+                .add("country", country)
+                .add("countryIso", getCountryIso())
+                .add("postal", postal)
+                .add("userType", getUserType())
+                .add("connectionType", getConnectionType())
+                .add("isp", isp)
+                .add("latitude", latitude)
+                .add("longitude", longitude)
+                .add("accuracy", accuracy)
+                .toString();
+    }
+
+    private static String name(String value) {
+        return Strings.isNullOrEmpty(value) || UNKNOWN.equals(value) ? UNKNOWN : NAMES.intern(value);
+    }
+
+    //Interned original of a value the compact representation missed, null when there is nothing to keep
+    private static String raw(String value) {
+        return Strings.isNullOrEmpty(value) || UNKNOWN.equals(value) ? null : NAMES.intern(value);
+    }
+
+    /**
+     * Builds an instance from header values keyed by {@link MaxMindHeaders} names; missing values become
+     * {@link #UNKNOWN}, false or 0.
+     */
+    public static MaxMindInfo fromHeaders(Function<String, String> headers) {
+        final String anonymousIp = headers.apply(MaxMindHeaders.X_ANONYMOUS_IP);
+        final String anonymousVpn = headers.apply(MaxMindHeaders.X_ANONYMOUS_VPN);
+        final String tor = headers.apply(MaxMindHeaders.X_TOR);
+        final String latitude = headers.apply(MaxMindHeaders.X_LATITUDE);
+        final String longitude = headers.apply(MaxMindHeaders.X_LONGITUDE);
+        final String accuracy = headers.apply(MaxMindHeaders.X_LOCATION_ACCURACY);
+
+        return MaxMindInfo.builder()
+                .anonymousIp(!Strings.isNullOrEmpty(anonymousIp) && Boolean.parseBoolean(anonymousIp))
+                .anonymousVpn(!Strings.isNullOrEmpty(anonymousVpn) && Boolean.parseBoolean(anonymousVpn))
+                .tor(!Strings.isNullOrEmpty(tor) && Boolean.parseBoolean(tor))
+                .city(headers.apply(MaxMindHeaders.X_CITY))
+                .state(headers.apply(MaxMindHeaders.X_STATE))
+                .stateIso(headers.apply(MaxMindHeaders.X_STATE_ISO))
+                .country(headers.apply(MaxMindHeaders.X_COUNTRY))
+                .countryIso(headers.apply(MaxMindHeaders.X_COUNTRY_ISO))
+                .postal(headers.apply(MaxMindHeaders.X_POSTAL))
+                .connectionType(headers.apply(MaxMindHeaders.X_CONNECTION_TYPE))
+                .userType(headers.apply(MaxMindHeaders.X_USER_TYPE))
+                .isp(headers.apply(MaxMindHeaders.X_ISP))
+                .latitude(Strings.isNullOrEmpty(latitude) ? 0 : Double.parseDouble(latitude))
+                .longitude(Strings.isNullOrEmpty(longitude) ? 0 : Double.parseDouble(longitude))
+                .accuracy(Strings.isNullOrEmpty(accuracy) ? 0 : Integer.parseInt(accuracy))
+                .build();
+    }
+
+    /**
+     * Builder with the same methods as before instances became immutable. Missing or empty names become
+     * {@link #UNKNOWN}; country codes, connection and user types that are not recognised are kept as given.
+     */
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class MaxMindInfoBuilder {
+
+        private boolean anonymousIp;
+
+        private boolean anonymousVpn;
+
+        private boolean tor;
+
+        private String city;
+
+        private String state;
+
+        private String stateIso;
+
+        private String country;
+
+        private String countryIso;
+
+        private String postal;
+
+        private String userType;
+
+        private String connectionType;
+
+        private String isp;
+
+        private double latitude;
+
+        private double longitude;
+
+        private int accuracy;
+
+        private MaxMindInfoBuilder() {
+        }
+
+        public MaxMindInfoBuilder anonymousIp(boolean anonymousIp) {
+            this.anonymousIp = anonymousIp;
+            return this;
+        }
 
-    private boolean anonymousIp;
+        public MaxMindInfoBuilder anonymousVpn(boolean anonymousVpn) {
+            this.anonymousVpn = anonymousVpn;
+            return this;
+        }
 
-    private boolean anonymousVpn;
+        public MaxMindInfoBuilder tor(boolean tor) {
+            this.tor = tor;
+            return this;
+        }
 
-    private boolean tor;
+        public MaxMindInfoBuilder city(String city) {
+            this.city = city;
+            return this;
+        }
 
-    private String city;
+        public MaxMindInfoBuilder state(String state) {
+            this.state = state;
+            return this;
+        }
 
-    private String state;
+        public MaxMindInfoBuilder stateIso(String stateIso) {
+            this.stateIso = stateIso;
+            return this;
+        }
 
-    private String stateIso;
+        public MaxMindInfoBuilder country(String country) {
+            this.country = country;
+            return this;
+        }
 
-    private String country;
+        public MaxMindInfoBuilder countryIso(String countryIso) {
+            this.countryIso = countryIso;
+            return this;
+        }
 
-    private String countryIso;
+        public MaxMindInfoBuilder postal(String postal) {
+            this.postal = postal;
+            return this;
+        }
 
-    private String postal;
+        public MaxMindInfoBuilder userType(String userType) {
+            this.userType = userType;
+            return this;
+        }
 
-    private String userType;
+        public MaxMindInfoBuilder connectionType(String connectionType) {
+            this.connectionType = connectionType;
+            return this;
+        }
 
-    private String connectionType;
+        public MaxMindInfoBuilder isp(String isp) {
+            this.isp = isp;
+            return this;
+        }
 
-    private String isp;
+        public MaxMindInfoBuilder latitude(double latitude) {
+            this.latitude = latitude;
+            return this;
+        }
 
-    private double latitude;
+        public MaxMindInfoBuilder longitude(double longitude) {
+            this.longitude = longitude;
+            return this;
+        }
 
-    private double longitude;
+        public MaxMindInfoBuilder accuracy(int accuracy) {
+            this.accuracy = accuracy;
+            return this;
+        }
 
-    private int accuracy;
+        /**
+         * @return the canonical instance for these values
+         */
+        public MaxMindInfo build() {
+            return INSTANCES.intern(new MaxMindInfo(this));
+        }
+    }
 }
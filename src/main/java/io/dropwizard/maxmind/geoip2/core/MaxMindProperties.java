@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.core;
+
+/**
+ * Request property names used to pass GeoIP state between the filter and the {@code MaxMindInfo} provider.
+ *
+ * @author phaneesh
+ */
+public interface MaxMindProperties {
+
+    String CLIENT_ADDRESS = "io.dropwizard.maxmind.geoip2.clientAddress";
+    String RESULT = "io.dropwizard.maxmind.geoip2.result";
+    //Set once the geo gate has run, whether or not it could resolve the request
+    String GATED = "io.dropwizard.maxmind.geoip2.gated";
+}
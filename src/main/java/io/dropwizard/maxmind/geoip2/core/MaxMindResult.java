@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.dropwizard.maxmind.geoip2.core;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.Arrays;
+
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ANONYMOUS_IP;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ANONYMOUS_VPN;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ASN;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_CITY;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_CONNECTION_TYPE;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_COUNTRY;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_COUNTRY_ISO;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ISP;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_LATITUDE;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_LOCATION_ACCURACY;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_LONGITUDE;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_MAXMIND_ERROR;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_POSTAL;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_PROXY_LEGAL;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_STATE;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_STATE_ISO;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_TOR;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_USER_TYPE;
+
+/**
+ * Immutable, fully resolved geo data of a single client address: the typed {@link MaxMindInfo}, the ASN and the
+ * values outside it, plus which fields the databases reported. Lookups fill it field by field without formatting
+ * anything; header values are rendered once at build when they are going to be stamped, otherwise on demand.
+ * Instances are built once per lookup and shared by every request served from the cache.
+ *
+ * @author phaneesh
+ */
+@EqualsAndHashCode
+public final class MaxMindResult {
+
+    //Header of each field, indexed by its presence bit
+    private static final String[] HEADERS = {X_COUNTRY, X_COUNTRY_ISO, X_STATE, X_STATE_ISO, X_CITY, X_POSTAL,
+            X_LATITUDE, X_LONGITUDE, X_LOCATION_ACCURACY, X_USER_TYPE, X_ISP, X_CONNECTION_TYPE, X_PROXY_LEGAL, X_ASN,
+            X_ANONYMOUS_IP, X_ANONYMOUS_VPN, X_TOR, X_MAXMIND_ERROR};
+
+    private static final int COUNTRY = 0;
+
+    private static final int COUNTRY_ISO = 1;
+
+    private static final int STATE = 2;
+
+    private static final int STATE_ISO = 3;
+
+    private static final int CITY = 4;
+
+    private static final int POSTAL = 5;
+
+    private static final int LATITUDE = 6;
+
+    private static final int LONGITUDE = 7;
+
+    private static final int ACCURACY = 8;
+
+    private static final int USER_TYPE = 9;
+
+    private static final int ISP = 10;
+
+    private static final int CONNECTION_TYPE = 11;
+
+    private static final int PROXY_LEGAL = 12;
+
+    private static final int ASN = 13;
+
+    private static final int ANONYMOUS_IP = 14;
+
+    private static final int ANONYMOUS_VPN = 15;
+
+    private static final int TOR = 16;
+
+    private static final int ERROR = 17;
+
+    private static final String[] NONE = new String[0];
+
+    public static final MaxMindResult EMPTY = builder().headers(true).build();
+
+    //Bit per field reported, indexed as HEADERS
+    private final int present;
+
+    //Typed view; immutable and canonical, so it is handed out as is
+    @Getter
+    private final MaxMindInfo info;
+
+    private final long asn;
+
+    private final boolean proxyLegal;
+
+    private final String error;
+
+    //Header names and values as alternating entries, rendered at build when headers are stamped, otherwise null
+    @EqualsAndHashCode.Exclude
+    private final String[] entries;
+
+    private MaxMindResult(Builder builder) {
+        this.present = builder.present;
+        this.info = builder.info.build();
+        this.asn = builder.asn;
+        this.proxyLegal = builder.proxyLegal;
+        this.error = builder.error;
+        this.entries = builder.headers ? render() : null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isEmpty() {
+        return present == 0;
+    }
+
+    /**
+     * @return the autonomous system number, or -1 if none was reported
+     */
+    public long getAsn() {
+        return has(ASN) ? asn : -1;
+    }
+
+    /**
+     * @return the header value of a field, or null if it was not reported
+     */
+    public String get(String header) {
+        if (entries != null) {
+            for (int i = 0; i < entries.length; i += 2) {
+                if (entries[i].equals(header)) {
+                    return entries[i + 1];
+                }
+            }
+            return null;
+        }
+        for (int field = 0; field < HEADERS.length; field++) {
+            if (HEADERS[field].equals(header)) {
+                return has(field) ? value(field) : null;
+            }
+        }
+        return null;
+    }
+
+    public void stamp(final MultivaluedMap<String, String> headers) {
+        final String[] values = entries != null ? entries : render();
+        for (int i = 0; i < values.length; i += 2) {
+            headers.putSingle(values[i], values[i + 1]);
+        }
+    }
+
+    /**
+     * Adds every field of this result to the builder.
+     */
+    public void copyTo(final Builder builder) {
+        for (int field = 0; field < HEADERS.length; field++) {
+            if (has(field)) {
+                copy(field, builder);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MaxMindResult" + Arrays.toString(entries != null ? entries : render());
+    }
+
+    private boolean has(int field) {
+        return (present & (1 << field)) != 0;
+    }
+
+    private String[] render() {
+        if (present == 0) {
+            return NONE;
+        }
+        final String[] values = new String[Integer.bitCount(present) * 2];
+        int size = 0;
+        for (int field = 0; field < HEADERS.length; field++) {
+            if (has(field)) {
+                values[size++] = HEADERS[field];
+                values[size++] = value(field);
+            }
+        }
+        return values;
+    }
+
+    private String value(int field) {
+        switch (field) {
+            case COUNTRY:
+                return info.getCountry();
+            case COUNTRY_ISO:
+                return info.getCountryIso();
+            case STATE:
+                return info.getState();
+            case STATE_ISO:
+                return info.getStateIso();
+            case CITY:
+                return info.getCity();
+            case POSTAL:
+                return info.getPostal();
+            case LATITUDE:
+                return String.valueOf(info.getLatitude());
+            case LONGITUDE:
+                return String.valueOf(info.getLongitude());
+            case ACCURACY:
+                return String.valueOf(info.getAccuracy());
+            case USER_TYPE:
+                return info.getUserType();
+            case ISP:
+                return info.getIsp();
+            case CONNECTION_TYPE:
+                return info.getConnectionType();
+            case PROXY_LEGAL:
+                return String.valueOf(proxyLegal);
+            case ASN:
+                return String.valueOf(asn);
+            case ANONYMOUS_IP:
+                return String.valueOf(info.isAnonymousIp());
+            case ANONYMOUS_VPN:
+                return String.valueOf(info.isAnonymousVpn());
+            case TOR:
+                return String.valueOf(info.isTor());
+            default:
+                return error;
+        }
+    }
+
+    private void copy(int field, Builder builder) {
+        switch (field) {
+            case LATITUDE:
+                builder.latitude(info.getLatitude());
+                break;
+            case LONGITUDE:
+                builder.longitude(info.getLongitude());
+                break;
+            case ACCURACY:
+                builder.accuracy(info.getAccuracy());
+                break;
+            case PROXY_LEGAL:
+                builder.proxyLegal(proxyLegal);
+                break;
+            case ASN:
+                builder.asn(asn);
+                break;
+            case ANONYMOUS_IP:
+                builder.anonymousIp(info.isAnonymousIp());
+                break;
+            case ANONYMOUS_VPN:
+                builder.anonymousVpn(info.isAnonymousVpn());
+                break;
+            case TOR:
+                builder.tor(info.isTor());
+                break;
+            default:
+                builder.put(HEADERS[field], value(field));
+        }
+    }
+
+    /**
+     * Collects the fields of a lookup. Names are stored as given; {@link #put(String, String)} accepts header values
+     * and parses them, for results assembled from headers rather than database records.
+     */
+    public static final class Builder {
+
+        private final MaxMindInfo.MaxMindInfoBuilder info = MaxMindInfo.builder();
+
+        private int present;
+
+        private long asn;
+
+        private boolean proxyLegal;
+
+        private String error;
+
+        private boolean headers;
+
+        private Builder() {
+        }
+
+        /**
+         * @param headers whether to render the header values at build, for results that are going to be stamped
+         */
+        public Builder headers(boolean headers) {
+            this.headers = headers;
+            return this;
+        }
+
+        public Builder country(String country) {
+            info.country(country);
+            return mark(COUNTRY);
+        }
+
+        public Builder countryIso(String countryIso) {
+            info.countryIso(countryIso);
+            return mark(COUNTRY_ISO);
+        }
+
+        public Builder state(String state) {
+            info.state(state);
+            return mark(STATE);
+        }
+
+        public Builder stateIso(String stateIso) {
+            info.stateIso(stateIso);
+            return mark(STATE_ISO);
+        }
+
+        public Builder city(String city) {
+            info.city(city);
+            return mark(CITY);
+        }
+
+        public Builder postal(String postal) {
+            info.postal(postal);
+            return mark(POSTAL);
+        }
+
+        public Builder latitude(double latitude) {
+            info.latitude(latitude);
+            return mark(LATITUDE);
+        }
+
+        public Builder longitude(double longitude) {
+            info.longitude(longitude);
+            return mark(LONGITUDE);
+        }
+
+        public Builder accuracy(int accuracy) {
+            info.accuracy(accuracy);
+            return mark(ACCURACY);
+        }
+
+        public Builder userType(String userType) {
+            info.userType(userType);
+            return mark(USER_TYPE);
+        }
+
+        public Builder isp(String isp) {
+            info.isp(isp);
+            return mark(ISP);
+        }
+
+        public Builder connectionType(String connectionType) {
+            info.connectionType(connectionType);
+            return mark(CONNECTION_TYPE);
+        }
+
+        public Builder proxyLegal(boolean proxyLegal) {
+            this.proxyLegal = proxyLegal;
+            return mark(PROXY_LEGAL);
+        }
+
+        public Builder asn(long asn) {
+            this.asn = asn;
+            return mark(ASN);
+        }
+
+        public Builder anonymousIp(boolean anonymousIp) {
+            info.anonymousIp(anonymousIp);
+            return mark(ANONYMOUS_IP);
+        }
+
+        public Builder anonymousVpn(boolean anonymousVpn) {
+            info.anonymousVpn(anonymousVpn);
+            return mark(ANONYMOUS_VPN);
+        }
+
+        public Builder tor(boolean tor) {
+            info.tor(tor);
+            return mark(TOR);
+        }
+
+        public Builder error(String error) {
+            this.error = error;
+            return mark(ERROR);
+        }
+
+        /**
+         * Sets the field stamped as the given header from its header value; unknown headers are ignored.
+         *
+         * @throws NumberFormatException if a numeric field's value is not a number
+         */
+        public Builder put(String header, String value) {
+            switch (header) {
+                case X_COUNTRY:
+                    return country(value);
+                case X_COUNTRY_ISO:
+                    return countryIso(value);
+                case X_STATE:
+                    return state(value);
+                case X_STATE_ISO:
+                    return stateIso(value);
+                case X_CITY:
+                    return city(value);
+                case X_POSTAL:
+                    return postal(value);
+                case X_LATITUDE:
+                    return latitude(Double.parseDouble(value));
+                case X_LONGITUDE:
+                    return longitude(Double.parseDouble(value));
+                case X_LOCATION_ACCURACY:
+                    return accuracy(Integer.parseInt(value));
+                case X_USER_TYPE:
+                    return userType(value);
+                case X_ISP:
+                    return isp(value);
+                case X_CONNECTION_TYPE:
+                    return connectionType(value);
+                case X_PROXY_LEGAL:
+                    return proxyLegal(Boolean.parseBoolean(value));
+                case X_ASN:
+                    return asn(Long.parseLong(value));
+                case X_ANONYMOUS_IP:
+                    return anonymousIp(Boolean.parseBoolean(value));
+                case X_ANONYMOUS_VPN:
+                    return anonymousVpn(Boolean.parseBoolean(value));
+                case X_TOR:
+                    return tor(Boolean.parseBoolean(value));
+                case X_MAXMIND_ERROR:
+                    return error(value);
+                default:
+                    return this;
+            }
+        }
+
+        public MaxMindResult build() {
+            return present == 0 && EMPTY != null ? EMPTY : new MaxMindResult(this);
+        }
+
+        private Builder mark(int field) {
+            present |= 1 << field;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.core;
+
+import lombok.Getter;
+
+/**
+ * User types reported in the GeoIP2 enterprise / insights traits, by header value.
+ *
+ * @author phaneesh
+ */
+public enum MaxMindUserType {
+    BUSINESS("business"),
+    CAFE("cafe"),
+    CELLULAR("cellular"),
+    COLLEGE("college"),
+    CONSUMER_PRIVACY_NETWORK("consumer_privacy_network"),
+    CONTENT_DELIVERY_NETWORK("content_delivery_network"),
+    DIALUP("dialup"),
+    GOVERNMENT("government"),
+    HOSTING("hosting"),
+    LIBRARY("library"),
+    MILITARY("military"),
+    RESIDENTIAL("residential"),
+    ROUTER("router"),
+    SCHOOL("school"),
+    SEARCH_ENGINE_SPIDER("search_engine_spider"),
+    TRAVELER("traveler");
+
+    private static final MaxMindUserType[] VALUES = values();
+
+    @Getter
+    private final String value;
+
+    MaxMindUserType(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @return the user type stamped as the given header value, or null if there is none
+     */
+    public static MaxMindUserType fromValue(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (MaxMindUserType type : VALUES) {
+            if (type.value.equals(value)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
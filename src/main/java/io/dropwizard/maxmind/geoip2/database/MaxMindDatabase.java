@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.database;
+
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.DatabaseRecord;
+import com.maxmind.db.Network;
+import com.maxmind.db.Reader;
+import com.maxmind.geoip2.DatabaseReader;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * Owns the {@link DatabaseReader} for a database file and swaps it atomically when the file changes on disk.
+ * Callers {@link #acquire()} a handle for the duration of a lookup and {@link Handle#release()} it afterwards;
+ * a replaced reader is closed only once its last handle has been released.
+ *
+ * @author phaneesh
+ */
+@Slf4j
+public class MaxMindDatabase implements Managed {
+
+    //DatabaseReader does not expose the network of a miss, but the raw reader it looks addresses up with does
+    private static final Field DATABASE_READER = databaseReaderField();
+
+    private final File file;
+
+    private final Reader.FileMode fileMode;
+
+    private final boolean preload;
+
+    private final int reloadInterval;
+
+    private final AtomicReference<Handle> current = new AtomicReference<>();
+
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService watcher;
+
+    private long lastModified;
+
+    private long length;
+
+    private long checksum;
+
+    /**
+     * @param file           database file
+     * @param reloadInterval seconds between checks for an updated file; 0 disables reloading
+     */
+    public MaxMindDatabase(File file, int reloadInterval) {
+        this(file, Reader.FileMode.MEMORY_MAPPED, false, reloadInterval);
+    }
+
+    /**
+     * @param file           database file
+     * @param fileMode       memory mapped (off heap, paged in on demand) or fully loaded on heap
+     * @param preload        fault in the whole memory mapped file before the reader is used
+     * @param reloadInterval seconds between checks for an updated file; 0 disables reloading
+     */
+    public MaxMindDatabase(File file, Reader.FileMode fileMode, boolean preload, int reloadInterval) {
+        this.file = file;
+        this.fileMode = fileMode;
+        this.preload = preload;
+        this.reloadInterval = reloadInterval;
+        try {
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.checksum = checksum(file);
+            current.set(new Handle(open(file)));
+        } catch (IOException e) {
+            log.error("Error initializing GeoIP database", e);
+        }
+    }
+
+    /**
+     * Wraps an already opened reader, e.g. one built from a stream or shared with other code. It is never reloaded.
+     */
+    public MaxMindDatabase(DatabaseReader reader) {
+        this.file = null;
+        this.fileMode = null;
+        this.preload = false;
+        this.reloadInterval = 0;
+        current.set(new Handle(reader));
+    }
+
+    /**
+     * Acquires the current reader. Returns null if no database could be loaded.
+     * Every non null handle must be released exactly once.
+     */
+    public Handle acquire() {
+        while (true) {
+            final Handle handle = current.get();
+            if (handle == null || handle.retain()) {
+                return handle;
+            }
+        }
+    }
+
+    /**
+     * @return whether a reader is currently available, i.e. the database opened and has not been stopped
+     */
+    public boolean isLoaded() {
+        return current.get() != null;
+    }
+
+    /**
+     * @return the database file, or null when wrapping an externally opened reader
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Registers a callback invoked after a new database has been swapped in, e.g. to drop results cached from the
+     * old one.
+     */
+    public void addReloadListener(Runnable listener) {
+        reloadListeners.add(listener);
+    }
+
+    public void removeReloadListener(Runnable listener) {
+        reloadListeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (reloadInterval <= 0 || watcher != null) {
+            return;
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "maxmind-database-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::reloadIfChanged, reloadInterval, reloadInterval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void stop() throws InterruptedException {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher.awaitTermination(reloadInterval, TimeUnit.SECONDS);
+            watcher = null;
+        }
+        final Handle handle = current.getAndSet(null);
+        if (handle != null) {
+            handle.release();
+        }
+    }
+
+    void reloadIfChanged() {
+        try {
+            final long modified = file.lastModified();
+            final long size = file.length();
+            if (modified == lastModified && size == length) {
+                return;
+            }
+            //Reading the whole file for the checksum also pulls it into the page cache before the swap
+            final long crc = checksum(file);
+            if (crc != checksum) {
+                final DatabaseReader reader = open(file);
+                swap(reader);
+                checksum = crc;
+                log.info("Reloaded GeoIP database {} | Type: {} | Build: {}", file,
+                        reader.getMetadata().getDatabaseType(), reader.getMetadata().getBuildDate());
+            }
+            //Only now, so a file that could not be opened (e.g. still being written) is retried on the next check
+            lastModified = modified;
+            length = size;
+        } catch (Exception e) {
+            log.error("Error reloading GeoIP database {}", file, e);
+        }
+    }
+
+    void swap(DatabaseReader reader) {
+        final Handle previous = current.getAndSet(new Handle(reader));
+        if (previous != null) {
+            previous.release();
+        }
+        reloadListeners.forEach(Runnable::run);
+    }
+
+    private DatabaseReader open(File file) throws IOException {
+        final long start = System.nanoTime();
+        final long heapBefore = usedHeap();
+        if (preload && fileMode == Reader.FileMode.MEMORY_MAPPED) {
+            preload(file);
+        }
+        final DatabaseReader reader = new DatabaseReader.Builder(file)
+                .fileMode(fileMode)
+                .withCache(new CHMCache())
+                .build();
+        log.info("Opened GeoIP database {} | Mode: {} | Preload: {} | Size: {} KB | Took: {} ms | Heap delta: {} KB | RSS: {} KB",
+                file, fileMode, preload, file.length() / 1024, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                (usedHeap() - heapBefore) / 1024, residentSetSize());
+        return reader;
+    }
+
+    /**
+     * Maps the file and touches every page so the reader's own mapping is served from the page cache.
+     */
+    private static void preload(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).load();
+        }
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return resident set size in KB as reported by procfs, or -1 where unavailable
+     */
+    private static long residentSetSize() {
+        final File status = new File("/proc/self/status");
+        if (!status.canRead()) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(status.toPath(), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Cannot read resident set size: {}", e.getMessage());
+        }
+        return -1;
+    }
+
+    private static Field databaseReaderField() {
+        try {
+            final Field field = DatabaseReader.class.getDeclaredField("reader");
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Cannot access the reader of DatabaseReader, networks without a record will not be cached: {}",
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    private static long checksum(File file) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Reference counted reader. The database itself holds one reference until the reader is replaced or stopped.
+     */
+    public static final class Handle {
+
+        private final DatabaseReader reader;
+
+        //The raw reader behind the DatabaseReader, i.e. the same bytes, mapped or on heap, the lookups read
+        private final Reader networks;
+
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Handle(DatabaseReader reader) {
+            this.reader = reader;
+            this.networks = networks(reader);
+        }
+
+        public DatabaseReader reader() {
+            return reader;
+        }
+
+        /**
+         * Returns the network the database reports for an address, including addresses without a record, so a miss
+         * can be remembered for the whole network. It walks the tree of the reader the lookups use, so the network
+         * always comes from the same database as the result, and decodes nothing for misses.
+         *
+         * @return the network, or null when the reader of the DatabaseReader cannot be accessed
+         */
+        public Network network(InetAddress address) throws IOException {
+            if (networks == null) {
+                return null;
+            }
+            final DatabaseRecord<Object> record = networks.getRecord(address, Object.class);
+            return record.getNetwork();
+        }
+
+        public void release() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    log.warn("Error closing GeoIP database: {}", e.getMessage());
+                }
+            }
+        }
+
+        private static Reader networks(DatabaseReader reader) {
+            if (DATABASE_READER == null) {
+                return null;
+            }
+            try {
+                return (Reader) DATABASE_READER.get(reader);
+            } catch (IllegalAccessException | RuntimeException e) {
+                log.warn("Cannot access the reader of DatabaseReader: {}", e.getMessage());
+                return null;
+            }
+        }
+
+        private boolean retain() {
+            while (true) {
+                final int count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
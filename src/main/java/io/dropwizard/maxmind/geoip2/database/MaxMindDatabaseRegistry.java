@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.database;
+
+import com.maxmind.db.Reader;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process wide, reference counted registry of open databases keyed by canonical file path and file mode, so every
+ * bundle, filter and service using the same .mmdb shares one mapping and one node cache. The first consumer's preload
+ * and reload settings apply to a shared database. A database is stopped and closed when its last consumer releases it.
+ * A database that fails to open is not shared: its consumer owns it alone and the next consumer retries the open.
+ *
+ * @author phaneesh
+ */
+@Slf4j
+public final class MaxMindDatabaseRegistry {
+
+    private static final MaxMindDatabaseRegistry SHARED = new MaxMindDatabaseRegistry();
+
+    private final Map<Key, Entry> databases = new HashMap<>();
+
+    public static MaxMindDatabaseRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Acquires the shared database of a file, opening it on first use. Every acquire must be paired with a
+     * {@link #release(MaxMindDatabase)}.
+     */
+    public synchronized MaxMindDatabase acquire(File file, Reader.FileMode fileMode, boolean preload, int reloadInterval) {
+        final Key key = new Key(canonicalPath(file), fileMode);
+        Entry entry = databases.get(key);
+        if (entry == null) {
+            final MaxMindDatabase database = new MaxMindDatabase(new File(key.getPath()), fileMode, preload, reloadInterval);
+            if (!database.isLoaded()) {
+                log.warn("Not sharing GeoIP database {} as it could not be opened", key.getPath());
+                return database;
+            }
+            entry = new Entry(database);
+            databases.put(key, entry);
+        } else {
+            log.debug("Sharing GeoIP database {} | Mode: {} | Consumers: {}", key.getPath(), fileMode, entry.references + 1);
+        }
+        entry.references++;
+        return entry.database;
+    }
+
+    /**
+     * Releases a database acquired from the registry. Databases that were not shared, as they failed to open, are
+     * stopped right away.
+     */
+    public synchronized void release(MaxMindDatabase database) {
+        for (Map.Entry<Key, Entry> entry : databases.entrySet()) {
+            if (entry.getValue().database != database) {
+                continue;
+            }
+            if (--entry.getValue().references == 0) {
+                databases.remove(entry.getKey());
+                stop(database);
+                log.info("Closed GeoIP database {}", entry.getKey().getPath());
+            }
+            return;
+        }
+        stop(database);
+    }
+
+    /**
+     * Acquires one database per edition configured. The returned lease starts them with the application and
+     * releases them when it stops.
+     */
+    public Lease lease(MaxMindConfig config) {
+        final Map<DatabaseType, MaxMindDatabase> leased = new EnumMap<>(DatabaseType.class);
+        for (DatabaseConfig database : config.getEffectiveDatabases()) {
+            leased.put(database.getType(), acquire(new File(database.getPath()), config.getFileMode(),
+                    config.isPreload(), config.getDatabaseReloadInterval()));
+        }
+        return new Lease(leased);
+    }
+
+    public synchronized int size() {
+        return databases.size();
+    }
+
+    private static void stop(MaxMindDatabase database) {
+        try {
+            database.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String canonicalPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    @Value
+    private static class Key {
+
+        String path;
+
+        Reader.FileMode fileMode;
+    }
+
+    private static final class Entry {
+
+        private final MaxMindDatabase database;
+
+        private int references;
+
+        private Entry(MaxMindDatabase database) {
+            this.database = database;
+        }
+    }
+
+    /**
+     * Databases acquired by one consumer, managed with its lifecycle.
+     */
+    public final class Lease implements Managed {
+
+        private final Map<DatabaseType, MaxMindDatabase> databases;
+
+        private boolean released;
+
+        private Lease(Map<DatabaseType, MaxMindDatabase> databases) {
+            this.databases = databases;
+        }
+
+        public Map<DatabaseType, MaxMindDatabase> getDatabases() {
+            return Collections.unmodifiableMap(databases);
+        }
+
+        @Override
+        public void start() {
+            databases.values().forEach(MaxMindDatabase::start);
+        }
+
+        @Override
+        public synchronized void stop() {
+            if (released) {
+                return;
+            }
+            released = true;
+            final List<MaxMindDatabase> leased = new ArrayList<>(databases.values());
+            leased.forEach(MaxMindDatabaseRegistry.this::release);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.filter;
+
+import io.dropwizard.maxmind.geoip2.config.GateConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindInfo;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.util.CountryCodes;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Gate configuration compiled into lookup tables: countries as bitsets indexed by their two letter code (26 x 26 bits)
+ * and ASNs as sorted arrays, checked against the typed result (country index, flag bits and numeric ASN), so a check is
+ * a few array reads and binary searches.
+ *
+ * @author phaneesh
+ */
+public final class GeoGate {
+
+    /**
+     * Why a request was rejected.
+     */
+    public enum Reason {
+        COUNTRY,
+        ASN,
+        ANONYMOUS,
+        UNRESOLVED,
+        UNAVAILABLE
+    }
+
+    private final long[] allowCountries;
+
+    private final long[] denyCountries;
+
+    private final boolean countryAllowList;
+
+    private final long[] allowAsns;
+
+    private final long[] denyAsns;
+
+    private final boolean denyAnonymous;
+
+    private final boolean denyAnonymousVpn;
+
+    private final boolean denyTor;
+
+    private final boolean allowUnresolved;
+
+    private final boolean failOpen;
+
+    private final int status;
+
+    public GeoGate(GateConfig config) {
+        this.allowCountries = countries(config.getAllowCountries());
+        this.denyCountries = countries(config.getDenyCountries());
+        this.countryAllowList = !config.getAllowCountries().isEmpty();
+        this.allowAsns = asns(config.getAllowAsns());
+        this.denyAsns = asns(config.getDenyAsns());
+        this.denyAnonymous = config.isDenyAnonymous();
+        this.denyAnonymousVpn = config.isDenyAnonymousVpn();
+        this.denyTor = config.isDenyTor();
+        this.allowUnresolved = config.isAllowUnresolved();
+        this.failOpen = config.isFailOpen();
+        this.status = config.getStatus();
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @param result resolved geo data, or null if the client address could not be resolved
+     * @return null if the request may pass, otherwise the reason it is rejected
+     */
+    public Reason check(MaxMindResult result) {
+        final MaxMindResult geo = result == null ? MaxMindResult.EMPTY : result;
+        final MaxMindInfo info = geo.getInfo();
+        final int country = info.getCountryIndex();
+        if (country == CountryCodes.NONE) {
+            if (countryAllowList && !allowUnresolved) {
+                return Reason.UNRESOLVED;
+            }
+        } else if (contains(denyCountries, country) || (countryAllowList && !contains(allowCountries, country))) {
+            return Reason.COUNTRY;
+        }
+        if (allowAsns.length > 0 || denyAsns.length > 0) {
+            final long asn = geo.getAsn();
+            if (asn < 0) {
+                if (allowAsns.length > 0 && !allowUnresolved) {
+                    return Reason.UNRESOLVED;
+                }
+            } else if (Arrays.binarySearch(denyAsns, asn) >= 0
+                    || (allowAsns.length > 0 && Arrays.binarySearch(allowAsns, asn) < 0)) {
+                return Reason.ASN;
+            }
+        }
+        if ((denyAnonymous && info.isAnonymousIp()) || (denyAnonymousVpn && info.isAnonymousVpn())
+                || (denyTor && info.isTor())) {
+            return Reason.ANONYMOUS;
+        }
+        return null;
+    }
+
+    /**
+     * Decides on a request whose lookup did not complete. Failing open treats it like an address nothing is known
+     * about, so only allow lists that do not admit unresolved requests reject it; failing closed rejects it.
+     *
+     * @return null if the request may pass, otherwise the reason it is rejected
+     */
+    public Reason unavailable() {
+        return failOpen ? check(null) : Reason.UNAVAILABLE;
+    }
+
+    private static boolean contains(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static long[] countries(List<String> isoCodes) {
+        final long[] bits = new long[(CountryCodes.COUNT + 63) >>> 6];
+        for (String isoCode : isoCodes) {
+            final int index = CountryCodes.index(isoCode == null ? null : isoCode.trim().toUpperCase(Locale.ROOT));
+            if (index == CountryCodes.NONE) {
+                throw new IllegalArgumentException("Invalid country code: " + isoCode);
+            }
+            bits[index >>> 6] |= 1L << index;
+        }
+        return bits;
+    }
+
+    private static long[] asns(List<Long> asns) {
+        return asns.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+    }
+}
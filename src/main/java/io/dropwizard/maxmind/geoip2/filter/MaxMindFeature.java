@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.filter;
+
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Binds the {@link MaxMindGeoIpRequestFilter} only to resource methods that want GeoIP information,
+ * as decided by {@link MaxMindLookup} and the opt-in/opt-out default.
+ *
+ * @author phaneesh
+ */
+@Provider
+public class MaxMindFeature implements DynamicFeature {
+
+    private final MaxMindGeoIpRequestFilter filter;
+
+    private final boolean annotatedOnly;
+
+    /**
+     * @param filter        filter to bind
+     * @param annotatedOnly if true only resources annotated with {@code @MaxMindLookup} are resolved (opt-in),
+     *                      otherwise every resource is resolved unless annotated with {@code @MaxMindLookup(false)}
+     */
+    public MaxMindFeature(MaxMindGeoIpRequestFilter filter, boolean annotatedOnly) {
+        this.filter = filter;
+        this.annotatedOnly = annotatedOnly;
+    }
+
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        if (isEnabled(resourceInfo)) {
+            context.register(filter);
+        }
+    }
+
+    private boolean isEnabled(ResourceInfo resourceInfo) {
+        MaxMindLookup lookup = resourceInfo.getResourceMethod() == null
+                ? null : resourceInfo.getResourceMethod().getAnnotation(MaxMindLookup.class);
+        if (lookup == null && resourceInfo.getResourceClass() != null) {
+            lookup = resourceInfo.getResourceClass().getAnnotation(MaxMindLookup.class);
+        }
+        return lookup == null ? !annotatedOnly : lookup.value();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.filter;
+
+import io.dropwizard.maxmind.geoip2.core.MaxMindProperties;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.net.InetAddress;
+
+/**
+ * Rejects requests by country, ASN or anonymity before resource matching and before the body is read.
+ * The result it resolves is attached to the request and the request is marked as gated, so the GeoIP filter does not
+ * extract or resolve the address again, even when the gate could not resolve it.
+ * Applies to every request, including resources opted out with {@link MaxMindLookup}. Requests whose lookup did not
+ * complete in async mode pass or are rejected as configured with {@code failOpen}.
+ *
+ * @author phaneesh
+ */
+@Provider
+@PreMatching
+@Priority(Priorities.AUTHENTICATION)
+public class MaxMindGateFilter implements ContainerRequestFilter {
+
+    private final MaxMindGeoIpRequestFilter geoIpFilter;
+
+    private final GeoGate gate;
+
+    private final MaxMindMetrics metrics;
+
+    public MaxMindGateFilter(MaxMindGeoIpRequestFilter geoIpFilter, GeoGate gate) {
+        this.geoIpFilter = geoIpFilter;
+        this.gate = gate;
+        this.metrics = geoIpFilter.getResolver().getMetrics();
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext containerRequestContext) {
+        final Object resolved = containerRequestContext.getProperty(MaxMindProperties.RESULT);
+        //Whatever the outcome, the GeoIP filter must not extract, count or resolve the address a second time
+        containerRequestContext.setProperty(MaxMindProperties.GATED, Boolean.TRUE);
+        final GeoGate.Reason reason;
+        if (resolved instanceof MaxMindResult) {
+            reason = gate.check((MaxMindResult) resolved);
+        } else {
+            final InetAddress address = geoIpFilter.clientAddress(containerRequestContext);
+            if (address == null) {
+                reason = gate.check(null);
+            } else {
+                final MaxMindResult result = geoIpFilter.resolve(containerRequestContext, address);
+                //Null when the async lookup timed out or was rejected; the configuration decides whether to fail open
+                reason = result == null ? gate.unavailable() : gate.check(result);
+            }
+        }
+        if (reason != null) {
+            metrics.gateRejected(reason).inc();
+            containerRequestContext.abortWith(Response.status(gate.getStatus()).build());
+        }
+    }
+}
@@ -18,221 +18,190 @@
 package io.dropwizard.maxmind.geoip2.filter;
 
 import com.google.common.base.Strings;
-import com.maxmind.db.CHMCache;
-import com.maxmind.geoip2.DatabaseReader;
-import com.maxmind.geoip2.exception.GeoIp2Exception;
-import com.maxmind.geoip2.model.AnonymousIpResponse;
-import com.maxmind.geoip2.model.CityResponse;
-import com.maxmind.geoip2.model.CountryResponse;
-import com.maxmind.geoip2.model.EnterpriseResponse;
-import com.maxmind.geoip2.record.City;
-import com.maxmind.geoip2.record.Country;
-import com.maxmind.geoip2.record.Location;
-import com.maxmind.geoip2.record.Postal;
-import com.maxmind.geoip2.record.Subdivision;
-import com.maxmind.geoip2.record.Traits;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.maxmind.geoip2.cache.MaxMindResultCache;
 import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindProperties;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.lookup.AsyncResolver;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+import io.dropwizard.maxmind.geoip2.stats.TrafficAggregator;
+import io.dropwizard.maxmind.geoip2.util.ClientAddressExtractor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.validator.routines.InetAddressValidator;
 
 import javax.annotation.Priority;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.ext.Provider;
-import java.io.File;
-import java.io.IOException;
 import java.net.InetAddress;
 
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ANONYMOUS_IP;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ANONYMOUS_VPN;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_CITY;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_CONNECTION_TYPE;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_COUNTRY;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_COUNTRY_ISO;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ISP;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_LATITUDE;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_LOCATION_ACCURACY;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_LONGITUDE;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_MAXMIND_ERROR;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_POSTAL;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_PROXY_LEGAL;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_STATE;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_STATE_ISO;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_TOR;
-import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_USER_TYPE;
-
 /**
+ * Resolves the client address of requests. A filter constructed from a configuration or database builds its own
+ * resolver and must be {@link #stop() stopped} or {@link #close() closed} to release it; a filter given a resolver
+ * leaves it to the caller.
+ *
  * @author phaneesh
  */
 @Slf4j
 @Provider
 @Priority(Priorities.HEADER_DECORATOR)
-public class MaxMindGeoIpRequestFilter implements ContainerRequestFilter {
+public class MaxMindGeoIpRequestFilter implements ContainerRequestFilter, Managed, AutoCloseable {
+
+    private static final String FORWARDED = "Forwarded";
 
     private final MaxMindConfig config;
 
-    private DatabaseReader databaseReader;
+    private final MaxMindResolver resolver;
+
+    private final ClientAddressExtractor extractor;
+
+    //Null unless async mode is enabled
+    private final AsyncResolver asyncResolver;
+
+    //Null unless traffic stats are enabled
+    private final TrafficAggregator traffic;
+
+    //Whether the resolver was built by this filter and is released with it
+    private final boolean ownsResolver;
 
+    /**
+     * Resolves against databases leased from the shared registry by a resolver this filter owns. Close the filter,
+     * e.g. by managing it with the application lifecycle, to release them and stop watching the files.
+     */
     public MaxMindGeoIpRequestFilter(MaxMindConfig config) {
-        this.config = config;
-        try {
-            this.databaseReader = new DatabaseReader.Builder(new File(config.getDatabaseFilePath()))
-                    .withCache(new CHMCache())
-                    .build();
-        } catch (IOException e) {
-            log.error("Error initializing GeoIP database", e);
-        }
+        this(config, new MaxMindResolver(config), null, null, true);
     }
 
-    @Override
-    public void filter(final ContainerRequestContext containerRequestContext) {
-        final String clientAddress = containerRequestContext.getHeaders().getFirst(config.getRemoteIpHeader());
-        if (Strings.isNullOrEmpty(clientAddress)) {
-            return;
-        }
-        if (log.isDebugEnabled())
-            log.debug("Header: {} | Value: {}", config.getRemoteIpHeader(), clientAddress);
-        //Multiple Client ip addresses are being sent in case of multiple people stamping the request
-        final String[] addresses = clientAddress.split(",");
-        InetAddressValidator inetAddressValidator = InetAddressValidator.getInstance();
-        if (!inetAddressValidator.isValid(addresses[0])) {
-            log.warn("Invalid IP Address: {}", addresses[0]);
-            return;
-        }
-        final String clientIp = addresses[0];
-        InetAddress address;
-        if (!Strings.isNullOrEmpty(clientIp)) {
-            try {
-                address = InetAddress.getByName(clientIp);
-            } catch (Exception e) {
-                log.warn("Cannot resolve address: {} | Error: {}", clientIp, e.getMessage());
-                return;
-            }
-            //Short circuit if there is no ip address
-            if (address == null) {
-                log.warn("Cannot resolve address: {}", clientIp);
-                return;
-            }
-            try {
-                if (config.isEnterprise()) {
-                    final EnterpriseResponse enterpriseResponse = databaseReader.enterprise(address);
-                    if (enterpriseResponse == null) return;
-                    addInfo(containerRequestContext, enterpriseResponse.getCountry(), enterpriseResponse.getMostSpecificSubdivision(), enterpriseResponse.getCity(), enterpriseResponse.getPostal(), enterpriseResponse.getLocation());
-                    if (enterpriseResponse.getTraits() != null) {
-                        addTraitsInfo(enterpriseResponse.getTraits(), containerRequestContext);
-                    }
-                    AnonymousIpResponse anonymousIpResponse = databaseReader.anonymousIp(address);
-                    if (anonymousIpResponse != null) {
-                        anonymousInfo(anonymousIpResponse, containerRequestContext);
-                    }
-                } else {
-                    addInfo(containerRequestContext, address);
-                }
-            } catch (Exception e) {
-                log.warn("GeoIP Error: {}", e.getMessage());
-            }
-        }
+    /**
+     * The database stays owned by the caller; closing the filter only detaches from it.
+     */
+    public MaxMindGeoIpRequestFilter(MaxMindConfig config, MaxMindDatabase database) {
+        this(config, new MaxMindResolver(config, database), null, null, true);
     }
 
-    private void addInfo(ContainerRequestContext containerRequestContext, InetAddress address) throws IOException, GeoIp2Exception {
-        switch (config.getType()) {
-            case "country":
-                CountryResponse countryResponse = databaseReader.country(address);
-                if (countryResponse != null && countryResponse.getCountry() != null) {
-                    addCountryInfo(countryResponse.getCountry(), containerRequestContext);
-                }
-                break;
-            case "city":
-                CityResponse cityResponse = databaseReader.city(address);
-                if (cityResponse != null) {
-                    addInfo(containerRequestContext, cityResponse.getCountry(), cityResponse.getMostSpecificSubdivision(), cityResponse.getCity(), cityResponse.getPostal(), cityResponse.getLocation());
-                }
-                break;
-            case "anonymous":
-                AnonymousIpResponse anonymousIpResponse = databaseReader.anonymousIp(address);
-                if (anonymousIpResponse != null) {
-                    anonymousInfo(anonymousIpResponse, containerRequestContext);
-                }
-                break;
-            default:
-                containerRequestContext.getHeaders().putSingle(X_MAXMIND_ERROR, "UNKNOWN_TYPE");
-        }
+    public MaxMindGeoIpRequestFilter(MaxMindConfig config, MaxMindDatabase database, MaxMindMetrics metrics) {
+        this(config, new MaxMindResolver(config, database, metrics), null, null, true);
     }
 
-    private void addInfo(ContainerRequestContext containerRequestContext, Country country, Subdivision mostSpecificSubdivision, City city, Postal postal, Location location) {
-        if (country != null) {
-            addCountryInfo(country, containerRequestContext);
-        }
-        if (mostSpecificSubdivision != null) {
-            addStateInfo(mostSpecificSubdivision, containerRequestContext);
-        }
-        if (city != null) {
-            addCityInfo(city, containerRequestContext);
-        }
-        if (postal != null) {
-            addPostalInfo(postal, containerRequestContext);
-        }
-        if (location != null) {
-            addLocationInfo(location, containerRequestContext);
-        }
+    public MaxMindGeoIpRequestFilter(MaxMindConfig config, MaxMindResolver resolver) {
+        this(config, resolver, null);
     }
 
+    public MaxMindGeoIpRequestFilter(MaxMindConfig config, MaxMindResolver resolver, AsyncResolver asyncResolver) {
+        this(config, resolver, asyncResolver, null);
+    }
+
+    public MaxMindGeoIpRequestFilter(MaxMindConfig config, MaxMindResolver resolver, AsyncResolver asyncResolver,
+                                     TrafficAggregator traffic) {
+        this(config, resolver, asyncResolver, traffic, false);
+    }
 
-    private void addCountryInfo(Country country, final ContainerRequestContext containerRequestContext) {
-        if (!Strings.isNullOrEmpty(country.getName()))
-            containerRequestContext.getHeaders().putSingle(X_COUNTRY, toAscii(country.getName()));
-        if (!Strings.isNullOrEmpty(country.getIsoCode()))
-            containerRequestContext.getHeaders().putSingle(X_COUNTRY_ISO, country.getIsoCode());
+    private MaxMindGeoIpRequestFilter(MaxMindConfig config, MaxMindResolver resolver, AsyncResolver asyncResolver,
+                                      TrafficAggregator traffic, boolean ownsResolver) {
+        this.config = config;
+        this.resolver = resolver;
+        this.asyncResolver = asyncResolver;
+        this.traffic = traffic;
+        this.ownsResolver = ownsResolver;
+        this.extractor = new ClientAddressExtractor(config.getTrustedProxies());
     }
 
-    private void addStateInfo(Subdivision subdivision, final ContainerRequestContext containerRequestContext) {
-        if (!Strings.isNullOrEmpty(subdivision.getName()))
-            containerRequestContext.getHeaders().putSingle(X_STATE, toAscii(subdivision.getName()));
-        if (!Strings.isNullOrEmpty(subdivision.getIsoCode()))
-            containerRequestContext.getHeaders().putSingle(X_STATE_ISO, subdivision.getIsoCode());
+    @Override
+    public void start() {
+        //Resolvers start reloading as they are built
     }
 
-    private void addCityInfo(City city, final ContainerRequestContext containerRequestContext) {
-        if (!Strings.isNullOrEmpty(city.getName()))
-            containerRequestContext.getHeaders().putSingle(X_CITY, toAscii(city.getName()));
+    /**
+     * Releases the resolver if this filter built it. Resolvers passed in are left to their owner.
+     */
+    @Override
+    public void stop() {
+        if (ownsResolver) {
+            resolver.stop();
+        }
     }
 
-    private void addPostalInfo(Postal postal, final ContainerRequestContext containerRequestContext) {
-        if (!Strings.isNullOrEmpty(postal.getCode()))
-            containerRequestContext.getHeaders().putSingle(X_POSTAL, postal.getCode());
+    @Override
+    public void close() {
+        stop();
     }
 
-    private void addLocationInfo(Location location, final ContainerRequestContext containerRequestContext) {
-        if (location.getLatitude() != null)
-            containerRequestContext.getHeaders().putSingle(X_LATITUDE, String.valueOf(location.getLatitude()));
-        if (location.getLongitude() != null)
-            containerRequestContext.getHeaders().putSingle(X_LONGITUDE, String.valueOf(location.getLongitude()));
-        if (location.getAccuracyRadius() != null)
-            containerRequestContext.getHeaders().putSingle(X_LOCATION_ACCURACY, String.valueOf(location.getAccuracyRadius()));
+    public MaxMindResolver getResolver() {
+        return resolver;
     }
 
-    private void addTraitsInfo(Traits traits, final ContainerRequestContext containerRequestContext) {
-        if (!Strings.isNullOrEmpty(traits.getUserType()))
-            containerRequestContext.getHeaders().putSingle(X_USER_TYPE, toAscii(traits.getUserType()));
-        if (!Strings.isNullOrEmpty(traits.getIsp()))
-            containerRequestContext.getHeaders().putSingle(X_ISP, toAscii(traits.getIsp()));
-        if (traits.getConnectionType() != null)
-            containerRequestContext.getHeaders().putSingle(X_CONNECTION_TYPE, toAscii(traits.getConnectionType().name()));
-        containerRequestContext.getHeaders().putSingle(X_PROXY_LEGAL, String.valueOf(traits.isLegitimateProxy()));
+    public MaxMindResultCache getResultCache() {
+        return resolver.getResultCache();
     }
 
-    private void anonymousInfo(AnonymousIpResponse anonymousIpResponse, final ContainerRequestContext containerRequestContext) {
-        containerRequestContext.getHeaders().putSingle(X_ANONYMOUS_IP, String.valueOf(anonymousIpResponse.isAnonymous()));
-        containerRequestContext.getHeaders().putSingle(X_ANONYMOUS_VPN, String.valueOf(anonymousIpResponse.isAnonymousVpn()));
-        containerRequestContext.getHeaders().putSingle(X_TOR, String.valueOf(anonymousIpResponse.isTorExitNode()));
+    @Override
+    public void filter(final ContainerRequestContext containerRequestContext) {
+        if (containerRequestContext.getProperty(MaxMindProperties.RESULT) != null
+                || containerRequestContext.getProperty(MaxMindProperties.GATED) != null) {
+            //Already resolved, or attempted, before resource matching by the geo gate
+            return;
+        }
+        final InetAddress address = clientAddress(containerRequestContext);
+        if (address == null) {
+            return;
+        }
+        if (config.isLazy()) {
+            //Resolution is deferred until a resource asks for MaxMindInfo
+            containerRequestContext.setProperty(MaxMindProperties.CLIENT_ADDRESS, address);
+            return;
+        }
+        resolve(containerRequestContext, address);
     }
 
-    private String toAscii(String input) {
-        if (!Strings.isNullOrEmpty(input)) {
-            return input.replaceAll("[^\\x20-\\x7e]", "");
+    /**
+     * Extracts the client address from the configured forwarding headers.
+     *
+     * @return the address, or null if the header is missing or invalid
+     */
+    public InetAddress clientAddress(final ContainerRequestContext containerRequestContext) {
+        final String forwarded = config.isForwardedHeader()
+                ? containerRequestContext.getHeaderString(FORWARDED) : null;
+        final boolean useForwarded = !Strings.isNullOrEmpty(forwarded);
+        //All values of the header are needed (joined by getHeaderString) to walk the proxy chain from the right
+        final String clientAddress = useForwarded ? forwarded
+                : containerRequestContext.getHeaderString(config.getRemoteIpHeader());
+        if (Strings.isNullOrEmpty(clientAddress)) {
+            resolver.getMetrics().getMissingHeader().inc();
+            return null;
+        }
+        if (log.isDebugEnabled())
+            log.debug("Header: {} | Value: {}", useForwarded ? FORWARDED : config.getRemoteIpHeader(), clientAddress);
+        //Multiple Client ip addresses are being sent in case of multiple people stamping the request
+        final InetAddress address = useForwarded ? extractor.fromForwarded(clientAddress)
+                : extractor.fromList(clientAddress);
+        if (address == null) {
+            resolver.getMetrics().getInvalidIp().inc();
+            log.warn("Invalid IP Address: {}", clientAddress);
         }
-        return input;
+        return address;
     }
 
-}
\ No newline at end of file
+    /**
+     * Resolves the address, attaches the result to the request and stamps it as headers if enabled.
+     *
+     * @return the result, or null if it was not available within the async latency budget
+     */
+    public MaxMindResult resolve(final ContainerRequestContext containerRequestContext, final InetAddress address) {
+        final MaxMindResult result = asyncResolver != null ? asyncResolver.resolve(address) : resolver.resolve(address);
+        if (result == null) {
+            //Latency budget exceeded or lookup pool saturated; go ahead without geo data
+            return null;
+        }
+        containerRequestContext.setProperty(MaxMindProperties.RESULT, result);
+        if (traffic != null) {
+            traffic.record(address, result);
+        }
+        if (config.isStampHeaders()) {
+            result.stamp(containerRequestContext.getHeaders());
+        }
+        return result;
+    }
+}
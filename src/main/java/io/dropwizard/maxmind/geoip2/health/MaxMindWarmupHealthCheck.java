@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import io.dropwizard.maxmind.geoip2.cache.CacheWarmer;
+
+/**
+ * Reports unhealthy until the GeoIP result cache has been warmed up from the snapshot of the previous run.
+ *
+ * @author phaneesh
+ */
+public class MaxMindWarmupHealthCheck extends HealthCheck {
+
+    private final CacheWarmer warmer;
+
+    public MaxMindWarmupHealthCheck(CacheWarmer warmer) {
+        this.warmer = warmer;
+    }
+
+    @Override
+    protected Result check() {
+        if (warmer.isWarmedUp()) {
+            return Result.healthy("Warmed up %d networks", warmer.getReplayed());
+        }
+        return Result.unhealthy("Warming up: %d of %d networks", warmer.getReplayed(), warmer.getTotal());
+    }
+}
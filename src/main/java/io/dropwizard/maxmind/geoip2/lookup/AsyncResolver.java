@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.lookup;
+
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+
+import java.net.InetAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database lookups on a dedicated bounded pool so request threads never block on cold memory mapped pages
+ * for longer than the latency budget. Addresses answered from memory (caches, reserved ranges, country index) are
+ * resolved on the calling thread. A lookup that misses the budget keeps running and still populates the cache for
+ * later requests; the current request goes ahead without geo data. Concurrent requests for an address that is
+ * already being looked up wait for that lookup instead of queueing another one.
+ *
+ * @author phaneesh
+ */
+public class AsyncResolver {
+
+    private final MaxMindResolver resolver;
+
+    private final ExecutorService executor;
+
+    private final long timeoutMillis;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    //Lookups queued or running, by address, shared by every request waiting for the same address
+    private final ConcurrentMap<InetAddress, CompletableFuture<MaxMindResult>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor      bounded pool rejecting work when full
+     * @param queue         work queue of the pool, reported as queue depth
+     * @param timeoutMillis latency budget per request
+     */
+    public AsyncResolver(MaxMindResolver resolver, ExecutorService executor, BlockingQueue<Runnable> queue,
+                         long timeoutMillis) {
+        this.resolver = resolver;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+        resolver.getMetrics().registerAsync(queue::size, inFlight::get);
+    }
+
+    public MaxMindResolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * @return the result, or null if the pool is saturated or shut down or the lookup did not finish within the budget
+     */
+    public MaxMindResult resolve(InetAddress address) {
+        final MaxMindResult cached = resolver.resolveWithoutLookup(address);
+        if (cached != null) {
+            return cached;
+        }
+        final MaxMindMetrics metrics = resolver.getMetrics();
+        if (executor.isShutdown()) {
+            //Lookups still pending may have been dropped with the queue, don't wait for them
+            metrics.getAsyncRejected().inc();
+            return null;
+        }
+        CompletableFuture<MaxMindResult> future = pending.get(address);
+        if (future == null) {
+            final CompletableFuture<MaxMindResult> created = new CompletableFuture<>();
+            future = pending.putIfAbsent(address, created);
+            if (future == null) {
+                future = created;
+                if (!submit(address, created)) {
+                    metrics.getAsyncRejected().inc();
+                    return null;
+                }
+            }
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            metrics.getAsyncTimeouts().inc();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            //resolve never throws; only reached on unexpected errors
+            metrics.getLookupErrors().inc();
+            return null;
+        }
+    }
+
+    /**
+     * @return false if the pool rejected the lookup, in which case requests already waiting for it get no result
+     */
+    private boolean submit(InetAddress address, CompletableFuture<MaxMindResult> future) {
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    final MaxMindResult result = resolver.lookup(address);
+                    pending.remove(address, future);
+                    future.complete(result);
+                } catch (Throwable t) {
+                    pending.remove(address, future);
+                    future.completeExceptionally(t);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            pending.remove(address, future);
+            future.complete(null);
+            return false;
+        }
+    }
+
+    /**
+     * @return addresses with a lookup queued or running
+     */
+    public int getPending() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.lookup;
+
+import com.google.common.base.Strings;
+import com.maxmind.db.DatabaseRecord;
+import com.maxmind.db.InvalidNetworkException;
+import com.maxmind.db.Network;
+import com.maxmind.db.Networks;
+import com.maxmind.db.Reader;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.util.AsciiNames;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Country database flattened into sorted primitive arrays: range starts (IPv4 in an int[], IPv6 as pairs of longs)
+ * mapped to a short[] index into a table of precomputed {@link MaxMindResult}s. A lookup is a binary search over the
+ * range starts. Gaps between networks are stored as explicit ranges without a country.
+ * The IPv6 subtrees an IPv6 database aliases onto its IPv4 data (::/96, ::ffff:0:0/96, Teredo 2001::/32 and
+ * 6to4 2002::/16) are not walked when building; addresses in them are looked up in the IPv4 ranges instead.
+ *
+ * @author phaneesh
+ */
+@Slf4j
+public final class CountryIndex {
+
+    public static final short NOT_FOUND = -1;
+
+    @SuppressWarnings("unchecked")
+    private static final Class<Map<String, Object>> MAP = (Class<Map<String, Object>>) (Class<?>) Map.class;
+
+    //Sign bit flipped so signed comparison matches unsigned address order
+    private final int[] v4Starts;
+
+    private final short[] v4Countries;
+
+    private final long[] v6StartsHigh;
+
+    private final long[] v6StartsLow;
+
+    private final short[] v6Countries;
+
+    private final String[] isoCodes;
+
+    private final String[] names;
+
+    private final MaxMindResult[] results;
+
+    //Whether the database holds IPv6 data with IPv4 in the ::/96 subtree
+    private final boolean ipv6;
+
+    private CountryIndex(int[] v4Starts, short[] v4Countries, long[] v6StartsHigh, long[] v6StartsLow,
+                         short[] v6Countries, String[] isoCodes, String[] names, boolean ipv6) {
+        this(v4Starts, v4Countries, v6StartsHigh, v6StartsLow, v6Countries, isoCodes, names, ipv6, true, true);
+    }
+
+    private CountryIndex(int[] v4Starts, short[] v4Countries, long[] v6StartsHigh, long[] v6StartsLow,
+                         short[] v6Countries, String[] isoCodes, String[] names, boolean ipv6, boolean name,
+                         boolean isoCode) {
+        this.ipv6 = ipv6;
+        this.v4Starts = v4Starts;
+        this.v4Countries = v4Countries;
+        this.v6StartsHigh = v6StartsHigh;
+        this.v6StartsLow = v6StartsLow;
+        this.v6Countries = v6Countries;
+        this.isoCodes = isoCodes;
+        this.names = names;
+        this.results = new MaxMindResult[isoCodes.length];
+        for (int i = 0; i < isoCodes.length; i++) {
+            results[i] = result(isoCode ? isoCodes[i] : null, name ? names[i] : null);
+        }
+    }
+
+    /**
+     * @return an index sharing the ranges of this one whose results only hold the selected headers
+     */
+    public CountryIndex withFields(boolean name, boolean isoCode) {
+        return new CountryIndex(v4Starts, v4Countries, v6StartsHigh, v6StartsLow, v6Countries, isoCodes, names,
+                ipv6, name, isoCode);
+    }
+
+    /**
+     * Walks every network of a country (or city) database and flattens it.
+     */
+    public static CountryIndex build(File file) throws IOException {
+        final long start = System.nanoTime();
+        final Builder builder = new Builder();
+        try (Reader reader = new Reader(file)) {
+            final Networks<Map<String, Object>> networks = reader.networks(MAP);
+            while (networks.hasNext()) {
+                final DatabaseRecord<Map<String, Object>> record = networks.next();
+                builder.add(record.getNetwork(), record.getData());
+            }
+            builder.ipv6 = reader.getMetadata().getIpVersion() == 6;
+        } catch (InvalidNetworkException e) {
+            throw new IOException(e);
+        }
+        final CountryIndex index = builder.build();
+        log.info("Built country index for {} | IPv4 ranges: {} | IPv6 ranges: {} | Countries: {} | Took: {} ms",
+                file, index.v4Starts.length, index.v6Countries.length, index.isoCodes.length,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return index;
+    }
+
+    public short lookup(InetAddress address) {
+        return country(find(address.getAddress()));
+    }
+
+    public short lookup(byte[] address) {
+        return country(find(address));
+    }
+
+    /**
+     * Looks up the country of an address along with the widest network around it the country holds for, derived
+     * from the bounds of its range. Use {@link #country(int)} and {@link #prefixLength(int)} to unpack the result.
+     */
+    public int find(InetAddress address) {
+        return find(address.getAddress());
+    }
+
+    public int find(byte[] address) {
+        if (address.length == 4) {
+            return findV4(toInt(address), 0);
+        }
+        final long high = high(address);
+        final long low = low(address);
+        if (ipv6) {
+            if (high == 0 && (low >>> 32 == 0 || low >>> 32 == 0xffffL)) {
+                //::/96 holds the IPv4 data, ::ffff:0:0/96 aliases it
+                return findV4((int) low, 96);
+            }
+            if (high >>> 32 == 0x20010000L) {
+                //Teredo, 2001::/32 aliased onto the IPv4 data
+                return findV4((int) high, 32);
+            }
+            if (high >>> 48 == 0x2002L) {
+                //6to4, 2002::/16 aliased onto the IPv4 data
+                return findV4((int) (high >>> 16), 16);
+            }
+        }
+        return findV6(high, low);
+    }
+
+    public static short country(int found) {
+        return (short) found;
+    }
+
+    public static int prefixLength(int found) {
+        return found >>> 16;
+    }
+
+    public int size() {
+        return isoCodes.length;
+    }
+
+    public String getIsoCode(short country) {
+        return isoCodes[country];
+    }
+
+    public String getName(short country) {
+        return names[country];
+    }
+
+    /**
+     * @return the shared result holding the country headers, or {@link MaxMindResult#EMPTY} when not found
+     */
+    public MaxMindResult getResult(short country) {
+        return country == NOT_FOUND ? MaxMindResult.EMPTY : results[country];
+    }
+
+    /**
+     * @param offset prefix length of the IPv6 subtree the IPv4 address was found under, if any
+     */
+    private int findV4(int address, int offset) {
+        final int i = Arrays.binarySearch(v4Starts, address ^ Integer.MIN_VALUE);
+        final int range = i >= 0 ? i : -i - 2;
+        //Ranges cover the whole address space from 0.0.0.0 on, so range is never negative
+        final long start = Integer.toUnsignedLong(v4Starts[range] ^ Integer.MIN_VALUE);
+        final long end = range + 1 < v4Starts.length
+                ? Integer.toUnsignedLong(v4Starts[range + 1] ^ Integer.MIN_VALUE) - 1 : 0xFFFFFFFFL;
+        final long value = Integer.toUnsignedLong(address);
+        int prefixLength = 0;
+        while (prefixLength < 32) {
+            final long size = 1L << (32 - prefixLength);
+            final long network = value & -size;
+            if (network >= start && network + size - 1 <= end) {
+                break;
+            }
+            prefixLength++;
+        }
+        return found(v4Countries[range], offset + prefixLength);
+    }
+
+    private int findV6(long high, long low) {
+        int lo = 0;
+        int hi = v6Countries.length - 1;
+        int range = -1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (compareUnsigned(v6StartsHigh[mid], v6StartsLow[mid], high, low) <= 0) {
+                range = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (range < 0) {
+            //IPv4 only databases have no IPv6 ranges
+            return found(NOT_FOUND, 0);
+        }
+        final boolean last = range + 1 == v6Countries.length;
+        //Last address of the range: one before the next range start, or the end of the address space
+        final long endLow = last ? -1L : v6StartsLow[range + 1] - 1;
+        final long endHigh = last ? -1L : v6StartsLow[range + 1] == 0 ? v6StartsHigh[range + 1] - 1 : v6StartsHigh[range + 1];
+        int prefixLength = 0;
+        while (prefixLength < 128) {
+            final long highMask = mask(prefixLength);
+            final long lowMask = mask(prefixLength - 64);
+            final long networkHigh = high & highMask;
+            final long networkLow = low & lowMask;
+            if (compareUnsigned(networkHigh, networkLow, v6StartsHigh[range], v6StartsLow[range]) >= 0
+                    && compareUnsigned(networkHigh | ~highMask, networkLow | ~lowMask, endHigh, endLow) <= 0) {
+                break;
+            }
+            prefixLength++;
+        }
+        return found(v6Countries[range], prefixLength);
+    }
+
+    private static int found(short country, int prefixLength) {
+        return (prefixLength << 16) | (country & 0xffff);
+    }
+
+    //Mask keeping the leading n bits of a 64 bit word
+    private static long mask(int n) {
+        return n <= 0 ? 0 : n >= 64 ? -1L : -1L << (64 - n);
+    }
+
+    private static MaxMindResult result(String isoCode, String name) {
+        //Shared by every lookup of the country, so the header values are rendered once up front
+        final MaxMindResult.Builder builder = MaxMindResult.builder().headers(true);
+        if (!Strings.isNullOrEmpty(name))
+            builder.country(name);
+        if (!Strings.isNullOrEmpty(isoCode))
+            builder.countryIso(isoCode);
+        return builder.build();
+    }
+
+    private static Map<?, ?> country(Map<String, Object> data) {
+        final Object country = data == null ? null : data.get("country");
+        return country instanceof Map ? (Map<?, ?>) country : null;
+    }
+
+    private static String isoCode(Map<String, Object> data) {
+        final Map<?, ?> country = country(data);
+        final Object isoCode = country == null ? null : country.get("iso_code");
+        return isoCode == null ? null : isoCode.toString();
+    }
+
+    private static String name(Map<String, Object> data) {
+        final Map<?, ?> country = country(data);
+        final Object names = country == null ? null : country.get("names");
+        final Object name = names instanceof Map ? ((Map<?, ?>) names).get("en") : null;
+        return name == null ? null : name.toString();
+    }
+
+    private static int toInt(byte[] address) {
+        return ((address[0] & 0xff) << 24) | ((address[1] & 0xff) << 16)
+                | ((address[2] & 0xff) << 8) | (address[3] & 0xff);
+    }
+
+    private static byte[] lastAddress(byte[] first, int prefixLength) {
+        final byte[] last = first.clone();
+        for (int bit = prefixLength; bit < last.length * 8; bit++) {
+            last[bit / 8] |= (byte) (0x80 >>> (bit % 8));
+        }
+        return last;
+    }
+
+    private static long high(byte[] address) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (address[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static long low(byte[] address) {
+        long value = 0;
+        for (int i = 8; i < 16; i++) {
+            value = (value << 8) | (address[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static int compareUnsigned(long high1, long low1, long high2, long low2) {
+        final int high = Long.compareUnsigned(high1, high2);
+        return high != 0 ? high : Long.compareUnsigned(low1, low2);
+    }
+
+    /**
+     * Collects networks, then sorts them and fills the gaps between them.
+     */
+    private static final class Builder {
+
+        private final Map<String, Short> countries = new HashMap<>();
+
+        private final List<String> isoCodes = new ArrayList<>();
+
+        private final List<String> names = new ArrayList<>();
+
+        private final AsciiNames asciiNames = new AsciiNames();
+
+        private final Ranges v4 = new Ranges();
+
+        private final Ranges v6 = new Ranges();
+
+        private boolean ipv6;
+
+        void add(Network network, Map<String, Object> data) {
+            final String isoCode = isoCode(data);
+            short country = NOT_FOUND;
+            if (isoCode != null) {
+                Short existing = countries.get(isoCode);
+                if (existing == null) {
+                    if (isoCodes.size() == Short.MAX_VALUE) {
+                        throw new IllegalStateException("Too many countries in database");
+                    }
+                    existing = (short) isoCodes.size();
+                    countries.put(isoCode, existing);
+                    isoCodes.add(isoCode);
+                    names.add(asciiNames.toAscii(name(data)));
+                }
+                country = existing;
+            }
+            final byte[] first = network.getNetworkAddress().getAddress();
+            final byte[] last = lastAddress(first, network.getPrefixLength());
+            if (first.length == 4) {
+                v4.add(0, Integer.toUnsignedLong(toInt(first)), 0, Integer.toUnsignedLong(toInt(last)), country);
+            } else {
+                v6.add(high(first), low(first), high(last), low(last), country);
+            }
+        }
+
+        CountryIndex build() {
+            final Ranges flatV4 = v4.flatten(0, 0xFFFFFFFFL);
+            final Ranges flatV6 = v6.flatten(-1L, -1L);
+            final int[] v4Starts = new int[flatV4.size];
+            for (int i = 0; i < flatV4.size; i++) {
+                v4Starts[i] = ((int) flatV4.startsLow[i]) ^ Integer.MIN_VALUE;
+            }
+            return new CountryIndex(v4Starts, Arrays.copyOf(flatV4.countries, flatV4.size),
+                    Arrays.copyOf(flatV6.startsHigh, flatV6.size), Arrays.copyOf(flatV6.startsLow, flatV6.size),
+                    Arrays.copyOf(flatV6.countries, flatV6.size),
+                    isoCodes.toArray(new String[0]), names.toArray(new String[0]), ipv6);
+        }
+    }
+
+    /**
+     * Growable arrays of 128 bit ranges; IPv4 ranges use the low word only.
+     */
+    private static final class Ranges {
+
+        private long[] startsHigh = new long[1024];
+
+        private long[] startsLow = new long[1024];
+
+        private long[] endsHigh = new long[1024];
+
+        private long[] endsLow = new long[1024];
+
+        private short[] countries = new short[1024];
+
+        private int size;
+
+        void add(long startHigh, long startLow, long endHigh, long endLow, short country) {
+            if (size == countries.length) {
+                final int capacity = size * 2;
+                startsHigh = Arrays.copyOf(startsHigh, capacity);
+                startsLow = Arrays.copyOf(startsLow, capacity);
+                endsHigh = Arrays.copyOf(endsHigh, capacity);
+                endsLow = Arrays.copyOf(endsLow, capacity);
+                countries = Arrays.copyOf(countries, capacity);
+            }
+            startsHigh[size] = startHigh;
+            startsLow[size] = startLow;
+            endsHigh[size] = endHigh;
+            endsLow[size] = endLow;
+            countries[size] = country;
+            size++;
+        }
+
+        /**
+         * @return range starts only, sorted, with gaps filled as {@link #NOT_FOUND} and adjacent ranges of the same
+         * country merged, covering the whole address space up to {@code maxHigh:maxLow}
+         */
+        Ranges flatten(long maxHigh, long maxLow) {
+            final Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            //Tree traversal is normally already in address order; the sort is a cheap safety net
+            Arrays.sort(order, (a, b) -> compareUnsigned(startsHigh[a], startsLow[a], startsHigh[b], startsLow[b]));
+            final Ranges flat = new Ranges();
+            long nextHigh = 0;
+            long nextLow = 0;
+            boolean exhausted = false;
+            for (int n = 0; n < size && !exhausted; n++) {
+                final int i = order[n];
+                if (compareUnsigned(startsHigh[i], startsLow[i], nextHigh, nextLow) > 0) {
+                    flat.append(nextHigh, nextLow, NOT_FOUND);
+                }
+                flat.append(startsHigh[i], startsLow[i], countries[i]);
+                exhausted = endsHigh[i] == maxHigh && endsLow[i] == maxLow;
+                nextLow = endsLow[i] + 1;
+                nextHigh = nextLow == 0 ? endsHigh[i] + 1 : endsHigh[i];
+            }
+            if (!exhausted) {
+                flat.append(nextHigh, nextLow, NOT_FOUND);
+            }
+            return flat;
+        }
+
+        private void append(long startHigh, long startLow, short country) {
+            if (size > 0 && countries[size - 1] == country) {
+                return;
+            }
+            add(startHigh, startLow, 0, 0, country);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.lookup;
+
+import io.dropwizard.maxmind.geoip2.config.GeoField;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the selected geo fields of a database record into a result. Compiled once at startup from the configured
+ * fields, so fields nobody asked for are never read, converted or stored.
+ *
+ * @author phaneesh
+ */
+@FunctionalInterface
+interface FieldWriter<T> {
+
+    void write(T source, MaxMindResult.Builder result);
+
+    static <T> Builder<T> builder(Set<GeoField> fields) {
+        return new Builder<>(fields);
+    }
+
+    final class Builder<T> {
+
+        private final Set<GeoField> fields;
+
+        private final List<FieldWriter<T>> writers = new ArrayList<>();
+
+        private Builder(Set<GeoField> fields) {
+            this.fields = fields;
+        }
+
+        Builder<T> add(GeoField field, FieldWriter<T> writer) {
+            if (fields.contains(field)) {
+                writers.add(writer);
+            }
+            return this;
+        }
+
+        /**
+         * @return a writer running the selected writers in order, or null if none of the fields were selected
+         */
+        FieldWriter<T> build() {
+            if (writers.isEmpty()) {
+                return null;
+            }
+            if (writers.size() == 1) {
+                return writers.get(0);
+            }
+            final List<FieldWriter<T>> sequence = new ArrayList<>(writers);
+            return (source, result) -> {
+                //Indexed to keep the per record loop free of iterator allocations
+                for (int i = 0; i < sequence.size(); i++) {
+                    sequence.get(i).write(source, result);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,696 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.lookup;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import com.maxmind.db.Network;
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.maxmind.geoip2.model.AbstractCityResponse;
+import com.maxmind.geoip2.model.AbstractCountryResponse;
+import com.maxmind.geoip2.model.AnonymousIpResponse;
+import com.maxmind.geoip2.model.AsnResponse;
+import com.maxmind.geoip2.model.CityResponse;
+import com.maxmind.geoip2.model.ConnectionTypeResponse;
+import com.maxmind.geoip2.model.CountryResponse;
+import com.maxmind.geoip2.model.EnterpriseResponse;
+import com.maxmind.geoip2.model.IspResponse;
+import com.maxmind.geoip2.record.City;
+import com.maxmind.geoip2.record.Country;
+import com.maxmind.geoip2.record.Location;
+import com.maxmind.geoip2.record.Postal;
+import com.maxmind.geoip2.record.Subdivision;
+import com.maxmind.geoip2.record.Traits;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.maxmind.geoip2.cache.MaxMindResultCache;
+import io.dropwizard.maxmind.geoip2.cache.NetworkCache;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.GeoField;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabaseRegistry;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+import io.dropwizard.maxmind.geoip2.util.AsciiNames;
+import io.dropwizard.maxmind.geoip2.util.ReservedNetworks;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+
+/**
+ * Resolves client addresses against the configured GeoIP databases into {@link MaxMindResult}s, cached for the
+ * narrowest network reported by the databases consulted so a single lookup serves the whole block.
+ * Databases are queried in {@link DatabaseType} order: the location edition (enterprise, city or country) first,
+ * then ISP / ASN, connection type and anonymous IP. Each edition is consulted independently: when one has no record
+ * for an address, the network it reports for the miss is remembered in that edition's own negative cache and only
+ * that edition is skipped for the rest of the network. Reserved and private addresses are rejected before any lookup.
+ * Shared by the request filter and the {@link io.dropwizard.maxmind.geoip2.provider.MaxMindInfoProvider}.
+ *
+ * @author phaneesh
+ */
+@Slf4j
+public class MaxMindResolver implements Managed, AutoCloseable {
+
+    private static final MaxMindResult UNKNOWN_TYPE = MaxMindResult.builder()
+            .headers(true)
+            .error("UNKNOWN_TYPE")
+            .build();
+
+    private final MaxMindConfig config;
+
+    //Stands in for the miss caches of uncached lookups
+    private static final NetworkCache<Integer> DISABLED = new NetworkCache<>(0, 0);
+
+    private final MaxMindResultCache resultCache;
+
+    //Networks each database has no record for, mapped to the prefix length the database reported
+    private final Map<DatabaseType, NetworkCache<Integer>> missCaches = new EnumMap<>(DatabaseType.class);
+
+    private final Map<DatabaseType, MaxMindDatabase> databases;
+
+    private final MaxMindMetrics metrics;
+
+    private final AsciiNames asciiNames = new AsciiNames();
+
+    //Location edition consulted first (enterprise, city or country); null if none or no location field is selected
+    private DatabaseType locationType;
+
+    //Lightest response model of the location edition carrying the selected fields
+    private Lookup<? extends AbstractCountryResponse> locationLookup;
+
+    private FieldWriter<Country> countryWriter;
+
+    private FieldWriter<Subdivision> subdivisionWriter;
+
+    private FieldWriter<City> cityWriter;
+
+    private FieldWriter<Postal> postalWriter;
+
+    private FieldWriter<Location> locationWriter;
+
+    private FieldWriter<Traits> traitsWriter;
+
+    private FieldWriter<IspResponse> ispWriter;
+
+    private FieldWriter<AsnResponse> asnWriter;
+
+    private FieldWriter<ConnectionTypeResponse> connectionTypeWriter;
+
+    private FieldWriter<AnonymousIpResponse> anonymousWriter;
+
+    //Compact country lookup table, when enabled and country is the location database
+    private volatile CountryIndex countryIndex;
+
+    //Bumped on every database reload so lookups racing a reload do not repopulate the invalidated cache
+    private final AtomicLong generation = new AtomicLong();
+
+    //Databases acquired from the shared registry by this resolver itself, if any
+    private final MaxMindDatabaseRegistry.Lease lease;
+
+    //Reload listeners, kept to detach from shared databases on stop
+    private final Runnable invalidate;
+
+    private final Runnable rebuildCountryIndex;
+
+    /**
+     * Leases the configured databases from the shared registry and starts them right away, so they reload without
+     * being managed. The resolver owns the lease: it must be {@link #stop() stopped} or {@link #close() closed},
+     * e.g. by managing it with the application lifecycle, to release them.
+     */
+    public MaxMindResolver(MaxMindConfig config) {
+        this(config, MaxMindDatabaseRegistry.shared().lease(config), new MaxMindMetrics(new MetricRegistry()));
+    }
+
+    private MaxMindResolver(MaxMindConfig config, MaxMindDatabaseRegistry.Lease lease, MaxMindMetrics metrics) {
+        this(config, lease.getDatabases(), metrics, lease);
+        lease.start();
+    }
+
+    /**
+     * Single database mode; the database is used as the edition configured by {@code enterprise} / {@code type}.
+     */
+    public MaxMindResolver(MaxMindConfig config, MaxMindDatabase database) {
+        this(config, database, new MaxMindMetrics(new MetricRegistry()));
+    }
+
+    public MaxMindResolver(MaxMindConfig config, MaxMindDatabase database, MaxMindMetrics metrics) {
+        this(config, single(config, database), metrics);
+    }
+
+    public MaxMindResolver(MaxMindConfig config, Map<DatabaseType, MaxMindDatabase> databases, MaxMindMetrics metrics) {
+        this(config, databases, metrics, null);
+    }
+
+    private MaxMindResolver(MaxMindConfig config, Map<DatabaseType, MaxMindDatabase> databases, MaxMindMetrics metrics,
+                            MaxMindDatabaseRegistry.Lease lease) {
+        this.config = config;
+        this.lease = lease;
+        this.resultCache = new MaxMindResultCache(config);
+        this.databases = databases.isEmpty() ? Collections.emptyMap() : new EnumMap<>(databases);
+        for (DatabaseType type : this.databases.keySet()) {
+            missCaches.put(type, new NetworkCache<>(config.getNegativeCacheMaxEntries(), config.getCacheTTL()));
+        }
+        this.metrics = metrics;
+        compileWriters(config.getEffectiveFields());
+        selectLocationModel();
+        final MaxMindDatabase countryDatabase = this.databases.get(DatabaseType.COUNTRY);
+        //Country is only the location edition when no enterprise or city database is configured
+        if (config.isCountryIndex() && locationType == DatabaseType.COUNTRY && countryDatabase.getFile() != null) {
+            this.countryIndex = buildCountryIndex(countryDatabase.getFile());
+            this.rebuildCountryIndex = () -> countryIndex = buildCountryIndex(countryDatabase.getFile());
+            countryDatabase.addReloadListener(rebuildCountryIndex);
+        } else {
+            this.rebuildCountryIndex = null;
+        }
+        this.invalidate = () -> {
+            generation.incrementAndGet();
+            resultCache.invalidateAll();
+            missCaches.values().forEach(NetworkCache::invalidateAll);
+            asciiNames.clear();
+        };
+        for (MaxMindDatabase database : this.databases.values()) {
+            database.addReloadListener(invalidate);
+        }
+        metrics.registerCache(resultCache);
+        missCaches.forEach(metrics::registerMissCache);
+    }
+
+    /**
+     * Opens one database per configured edition, owned by the caller. Nothing is opened for editions that are not
+     * configured. Use {@link io.dropwizard.maxmind.geoip2.database.MaxMindDatabaseRegistry} to share them instead.
+     */
+    public static Map<DatabaseType, MaxMindDatabase> open(MaxMindConfig config) {
+        final Map<DatabaseType, MaxMindDatabase> databases = new EnumMap<>(DatabaseType.class);
+        for (DatabaseConfig database : config.getEffectiveDatabases()) {
+            databases.put(database.getType(),
+                    new MaxMindDatabase(new File(database.getPath()), config.getFileMode(), config.isPreload(),
+                            config.getDatabaseReloadInterval()));
+        }
+        return databases;
+    }
+
+    private static Map<DatabaseType, MaxMindDatabase> single(MaxMindConfig config, MaxMindDatabase database) {
+        final List<DatabaseConfig> configured = config.getEffectiveDatabases();
+        if (configured.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        final Map<DatabaseType, MaxMindDatabase> databases = new EnumMap<>(DatabaseType.class);
+        databases.put(configured.get(0).getType(), database);
+        return databases;
+    }
+
+    private CountryIndex buildCountryIndex(File file) {
+        try {
+            final Set<GeoField> fields = config.getEffectiveFields();
+            return CountryIndex.build(file)
+                    .withFields(fields.contains(GeoField.COUNTRY), fields.contains(GeoField.COUNTRY_ISO));
+        } catch (Exception e) {
+            log.error("Error building country index for {}; falling back to database lookups", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Detaches from the databases, which may be shared with other resolvers and outlive this one, and releases the
+     * databases it acquired itself.
+     */
+    @Override
+    public void stop() {
+        for (MaxMindDatabase database : databases.values()) {
+            database.removeReloadListener(invalidate);
+            if (rebuildCountryIndex != null) {
+                database.removeReloadListener(rebuildCountryIndex);
+            }
+        }
+        if (lease != null) {
+            lease.stop();
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    public MaxMindConfig getConfig() {
+        return config;
+    }
+
+    public Map<DatabaseType, MaxMindDatabase> getDatabases() {
+        return Collections.unmodifiableMap(databases);
+    }
+
+    public MaxMindResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * @return the negative cache of the given edition, or null if it is not configured
+     */
+    public NetworkCache<Integer> getMissCache(DatabaseType type) {
+        return missCaches.get(type);
+    }
+
+    public MaxMindMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Resolves the geo fields for an address, serving from the result cache when possible.
+     * Never throws; lookup failures are logged, counted and yield a partial or empty result.
+     */
+    public MaxMindResult resolve(InetAddress address) {
+        final MaxMindResult cached = resolveWithoutLookup(address);
+        return cached != null ? cached : lookup(address);
+    }
+
+    /**
+     * Answers an address from memory only: reserved ranges, the country index, the result cache and, for addresses
+     * none of the databases has a record for, their negative caches.
+     *
+     * @return the result, or null if resolving it needs a database lookup
+     */
+    public MaxMindResult resolveWithoutLookup(InetAddress address) {
+        final MaxMindResult known = resolveWithoutCache(address);
+        if (known != null) {
+            return known;
+        }
+        final MaxMindResult cached = resultCache.get(address);
+        if (cached != null) {
+            return cached;
+        }
+        for (NetworkCache<Integer> missCache : missCaches.values()) {
+            if (missCache.get(address) == null) {
+                return null;
+            }
+        }
+        metrics.getAddressNotFound().inc();
+        return MaxMindResult.EMPTY;
+    }
+
+    /**
+     * Resolves an address without reading or populating the result and miss caches, for bulk work such as batch
+     * enrichment whose addresses would otherwise evict the working set of the request path.
+     */
+    public MaxMindResult resolveUncached(InetAddress address) {
+        final MaxMindResult known = resolveWithoutCache(address);
+        return known != null ? known : lookup(address, false);
+    }
+
+    /**
+     * @return the result for addresses answered without the databases or caches, otherwise null
+     */
+    private MaxMindResult resolveWithoutCache(InetAddress address) {
+        if (databases.isEmpty()) {
+            metrics.getUnknownType().inc();
+            return UNKNOWN_TYPE;
+        }
+        if (config.isSkipReservedAddresses() && ReservedNetworks.contains(address)) {
+            metrics.getReservedAddress().inc();
+            return MaxMindResult.EMPTY;
+        }
+        final CountryIndex index = countryIndex;
+        if (index != null && databases.size() == 1) {
+            //Country only deployments are served straight from the index's shared results without caching
+            final long start = System.nanoTime();
+            final short country = index.lookup(address);
+            metrics.lookup(DatabaseType.COUNTRY, start);
+            if (country == CountryIndex.NOT_FOUND) {
+                metrics.getAddressNotFound().inc();
+            }
+            return index.getResult(country);
+        }
+        return null;
+    }
+
+    /**
+     * Queries the databases for an address not answered by {@link #resolveWithoutLookup(InetAddress)} and caches
+     * the result. Addresses none of the databases has a record for are left to their negative caches.
+     */
+    public MaxMindResult lookup(InetAddress address) {
+        return lookup(address, true);
+    }
+
+    private MaxMindResult lookup(InetAddress address, boolean cached) {
+        final NetworkScope scope = new NetworkScope(generation.get(), cached);
+        //Header values are only rendered for results that are going to be stamped
+        final MaxMindResult.Builder result = MaxMindResult.builder().headers(config.isStampHeaders());
+        try {
+            if (!addLocationInfo(address, result, scope)) {
+                metrics.getAddressNotFound().inc();
+            }
+            addNetworkInfo(address, result, scope);
+            if (anonymousWriter != null) {
+                final AnonymousIpResponse anonymousIpResponse = lookup(DatabaseType.ANONYMOUS, address,
+                        DatabaseReader::tryAnonymousIp, scope, AnonymousIpResponse::getNetwork);
+                if (anonymousIpResponse != null) {
+                    anonymousWriter.write(anonymousIpResponse, result);
+                }
+            }
+        } catch (DatabaseUnavailableException e) {
+            metrics.getUnresolvedAddress().inc();
+            return result.build();
+        } catch (Exception e) {
+            //Do not cache partial results for transient failures
+            metrics.getLookupErrors().inc();
+            log.warn("GeoIP Error: {}", e.getMessage());
+            return result.build();
+        }
+        final MaxMindResult resolved = result.build();
+        if (cached && (scope.found || !scope.negativelyCached) && generation.get() == scope.generation) {
+            resultCache.put(address, scope.prefixLength, resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * @return false if a location edition is consulted and has no record for the address
+     */
+    private boolean addLocationInfo(InetAddress address, MaxMindResult.Builder result, NetworkScope scope) throws IOException, GeoIp2Exception {
+        if (locationType == null) {
+            return true;
+        }
+        final CountryIndex index = countryIndex;
+        if (index != null) {
+            final long start = System.nanoTime();
+            final int found = index.find(address);
+            metrics.lookup(DatabaseType.COUNTRY, start);
+            scope.narrow(CountryIndex.prefixLength(found));
+            final short country = CountryIndex.country(found);
+            if (country == CountryIndex.NOT_FOUND) {
+                return false;
+            }
+            scope.found = true;
+            index.getResult(country).copyTo(result);
+            return true;
+        }
+        final AbstractCountryResponse response = lookup(locationType, address, locationLookup, scope,
+                location -> location.getTraits().getNetwork());
+        if (response == null) {
+            return false;
+        }
+        if (countryWriter != null && response.getCountry() != null) {
+            countryWriter.write(response.getCountry(), result);
+        }
+        if (response instanceof AbstractCityResponse) {
+            final AbstractCityResponse cityResponse = (AbstractCityResponse) response;
+            if (subdivisionWriter != null && cityResponse.getMostSpecificSubdivision() != null) {
+                subdivisionWriter.write(cityResponse.getMostSpecificSubdivision(), result);
+            }
+            if (cityWriter != null && cityResponse.getCity() != null) {
+                cityWriter.write(cityResponse.getCity(), result);
+            }
+            if (postalWriter != null && cityResponse.getPostal() != null) {
+                postalWriter.write(cityResponse.getPostal(), result);
+            }
+            if (locationWriter != null && cityResponse.getLocation() != null) {
+                locationWriter.write(cityResponse.getLocation(), result);
+            }
+        }
+        if (response instanceof EnterpriseResponse && traitsWriter != null && response.getTraits() != null) {
+            traitsWriter.write(response.getTraits(), result);
+        }
+        return true;
+    }
+
+    private void addNetworkInfo(InetAddress address, MaxMindResult.Builder result, NetworkScope scope) throws IOException, GeoIp2Exception {
+        if (databases.containsKey(DatabaseType.ISP)) {
+            if (ispWriter != null) {
+                final IspResponse ispResponse = lookup(DatabaseType.ISP, address,
+                        DatabaseReader::tryIsp, scope, IspResponse::getNetwork);
+                if (ispResponse != null) {
+                    ispWriter.write(ispResponse, result);
+                }
+            }
+        } else if (asnWriter != null && databases.containsKey(DatabaseType.ASN)) {
+            final AsnResponse asnResponse = lookup(DatabaseType.ASN, address,
+                    DatabaseReader::tryAsn, scope, AsnResponse::getNetwork);
+            if (asnResponse != null) {
+                asnWriter.write(asnResponse, result);
+            }
+        }
+        if (connectionTypeWriter != null && databases.containsKey(DatabaseType.CONNECTION_TYPE)) {
+            final ConnectionTypeResponse connectionTypeResponse = lookup(DatabaseType.CONNECTION_TYPE, address,
+                    DatabaseReader::tryConnectionType, scope, ConnectionTypeResponse::getNetwork);
+            if (connectionTypeResponse != null) {
+                connectionTypeWriter.write(connectionTypeResponse, result);
+            }
+        }
+    }
+
+    /**
+     * Runs a non throwing lookup against the database of the given edition and narrows the scope to the network
+     * the database reports for the address, whether it has a record for it or not. Networks the database has no
+     * record for are remembered in the edition's negative cache and not looked up again.
+     *
+     * @return the response, or null if the edition is not configured or has no record for the address
+     */
+    private <T> T lookup(DatabaseType type, InetAddress address, Lookup<T> lookup, NetworkScope scope,
+                         Function<? super T, Network> network) throws IOException, GeoIp2Exception {
+        final MaxMindDatabase database = databases.get(type);
+        if (database == null) {
+            return null;
+        }
+        final NetworkCache<Integer> missCache = scope.cached ? missCaches.get(type) : DISABLED;
+        final Integer missPrefixLength = missCache.get(address);
+        if (missPrefixLength != null) {
+            scope.narrow(missPrefixLength);
+            scope.negativelyCached = true;
+            return null;
+        }
+        final MaxMindDatabase.Handle handle = database.acquire();
+        if (handle == null) {
+            throw DatabaseUnavailableException.INSTANCE;
+        }
+        final long start = System.nanoTime();
+        try {
+            final T response = lookup.lookup(handle.reader(), address).orElse(null);
+            if (response != null) {
+                scope.narrow(network.apply(response));
+                scope.found = true;
+                return response;
+            }
+            final Network miss = handle.network(address);
+            scope.narrow(miss);
+            if (miss != null && missCache.isEnabled()) {
+                if (generation.get() == scope.generation) {
+                    missCache.put(address, miss.getPrefixLength(), miss.getPrefixLength());
+                }
+                scope.negativelyCached = true;
+            }
+            return null;
+        } finally {
+            metrics.lookup(type, start);
+            handle.release();
+        }
+    }
+
+    /**
+     * Prefix length of the network a result is valid for: the narrowest of the networks reported by every database
+     * consulted. They all contain the address, so the narrowest one is their intersection.
+     */
+    private static final class NetworkScope {
+
+        //Reload generation the lookup started in; nothing is cached if a reload raced it
+        private final long generation;
+
+        //Whether the lookup may read and populate the caches
+        private final boolean cached;
+
+        private int prefixLength;
+
+        //Whether any database had a record for the address
+        private boolean found;
+
+        //Whether a miss was answered by or stored in a negative cache
+        private boolean negativelyCached;
+
+        NetworkScope(long generation, boolean cached) {
+            this.generation = generation;
+            this.cached = cached;
+        }
+
+        void narrow(Network network) {
+            //Unknown networks (externally opened readers) limit the scope to the address itself
+            narrow(network == null ? Integer.MAX_VALUE : network.getPrefixLength());
+        }
+
+        void narrow(int networkPrefixLength) {
+            prefixLength = Math.max(prefixLength, networkPrefixLength);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lookup<T> {
+        Optional<T> lookup(DatabaseReader reader, InetAddress address) throws IOException, GeoIp2Exception;
+    }
+
+    /**
+     * Signals that a configured database could not be loaded. Preallocated and stackless as it is control flow.
+     */
+    private static final class DatabaseUnavailableException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final DatabaseUnavailableException INSTANCE = new DatabaseUnavailableException();
+
+        private DatabaseUnavailableException() {
+            super("GeoIP database unavailable", null, false, false);
+        }
+    }
+
+    /**
+     * Compiles the configured fields into one writer per record type; record types without a selected field get no
+     * writer and are neither read nor, where possible, looked up.
+     */
+    private void compileWriters(Set<GeoField> fields) {
+        countryWriter = FieldWriter.<Country>builder(fields)
+                .add(GeoField.COUNTRY, (country, result) -> {
+                    if (!Strings.isNullOrEmpty(country.getName()))
+                        result.country(toAscii(country.getName()));
+                })
+                .add(GeoField.COUNTRY_ISO, (country, result) -> {
+                    if (!Strings.isNullOrEmpty(country.getIsoCode()))
+                        result.countryIso(country.getIsoCode());
+                })
+                .build();
+        subdivisionWriter = FieldWriter.<Subdivision>builder(fields)
+                .add(GeoField.STATE, (subdivision, result) -> {
+                    if (!Strings.isNullOrEmpty(subdivision.getName()))
+                        result.state(toAscii(subdivision.getName()));
+                })
+                .add(GeoField.STATE_ISO, (subdivision, result) -> {
+                    if (!Strings.isNullOrEmpty(subdivision.getIsoCode()))
+                        result.stateIso(subdivision.getIsoCode());
+                })
+                .build();
+        cityWriter = FieldWriter.<City>builder(fields)
+                .add(GeoField.CITY, (city, result) -> {
+                    if (!Strings.isNullOrEmpty(city.getName()))
+                        result.city(toAscii(city.getName()));
+                })
+                .build();
+        postalWriter = FieldWriter.<Postal>builder(fields)
+                .add(GeoField.POSTAL, (postal, result) -> {
+                    if (!Strings.isNullOrEmpty(postal.getCode()))
+                        result.postal(postal.getCode());
+                })
+                .build();
+        locationWriter = FieldWriter.<Location>builder(fields)
+                .add(GeoField.LATITUDE, (location, result) -> {
+                    if (location.getLatitude() != null)
+                        result.latitude(location.getLatitude());
+                })
+                .add(GeoField.LONGITUDE, (location, result) -> {
+                    if (location.getLongitude() != null)
+                        result.longitude(location.getLongitude());
+                })
+                .add(GeoField.ACCURACY, (location, result) -> {
+                    if (location.getAccuracyRadius() != null)
+                        result.accuracy(location.getAccuracyRadius());
+                })
+                .build();
+        traitsWriter = FieldWriter.<Traits>builder(fields)
+                .add(GeoField.USER_TYPE, (traits, result) -> {
+                    if (!Strings.isNullOrEmpty(traits.getUserType()))
+                        result.userType(toAscii(traits.getUserType()));
+                })
+                .add(GeoField.ISP, (traits, result) -> {
+                    if (!Strings.isNullOrEmpty(traits.getIsp()))
+                        result.isp(toAscii(traits.getIsp()));
+                })
+                .add(GeoField.CONNECTION_TYPE, (traits, result) -> {
+                    if (traits.getConnectionType() != null)
+                        result.connectionType(traits.getConnectionType().name());
+                })
+                .add(GeoField.PROXY_LEGAL, (traits, result) -> result.proxyLegal(traits.isLegitimateProxy()))
+                .build();
+        ispWriter = FieldWriter.<IspResponse>builder(fields)
+                .add(GeoField.ISP, (isp, result) -> {
+                    if (!Strings.isNullOrEmpty(isp.getIsp()))
+                        result.isp(toAscii(isp.getIsp()));
+                })
+                .add(GeoField.ASN, (isp, result) -> {
+                    if (isp.getAutonomousSystemNumber() != null)
+                        result.asn(isp.getAutonomousSystemNumber());
+                })
+                .build();
+        asnWriter = FieldWriter.<AsnResponse>builder(fields)
+                .add(GeoField.ASN, (asn, result) -> {
+                    if (asn.getAutonomousSystemNumber() != null)
+                        result.asn(asn.getAutonomousSystemNumber());
+                })
+                .build();
+        connectionTypeWriter = FieldWriter.<ConnectionTypeResponse>builder(fields)
+                .add(GeoField.CONNECTION_TYPE, (connectionType, result) -> {
+                    if (connectionType.getConnectionType() != null)
+                        result.connectionType(connectionType.getConnectionType().name());
+                })
+                .build();
+        anonymousWriter = FieldWriter.<AnonymousIpResponse>builder(fields)
+                .add(GeoField.ANONYMOUS_IP, (anonymous, result) -> result.anonymousIp(anonymous.isAnonymous()))
+                .add(GeoField.ANONYMOUS_VPN, (anonymous, result) -> result.anonymousVpn(anonymous.isAnonymousVpn()))
+                .add(GeoField.TOR, (anonymous, result) -> result.tor(anonymous.isTorExitNode()))
+                .build();
+    }
+
+    /**
+     * Picks the location edition and the lightest response model that still carries every selected field:
+     * enterprise and city databases also answer city and country lookups, which decode less of each record.
+     */
+    private void selectLocationModel() {
+        final boolean wantsTraits = traitsWriter != null;
+        final boolean wantsCity = subdivisionWriter != null || cityWriter != null || postalWriter != null
+                || locationWriter != null;
+        if (!wantsTraits && !wantsCity && countryWriter == null) {
+            //Nothing location related is wanted; addresses missing from the location edition are not short-circuited
+            locationType = null;
+        } else if (databases.containsKey(DatabaseType.ENTERPRISE)) {
+            locationType = DatabaseType.ENTERPRISE;
+        } else if (databases.containsKey(DatabaseType.CITY)) {
+            locationType = DatabaseType.CITY;
+        } else if (databases.containsKey(DatabaseType.COUNTRY)) {
+            locationType = DatabaseType.COUNTRY;
+        }
+        if (locationType == DatabaseType.ENTERPRISE && wantsTraits) {
+            locationLookup = (Lookup<EnterpriseResponse>) DatabaseReader::tryEnterprise;
+        } else if ((locationType == DatabaseType.ENTERPRISE || locationType == DatabaseType.CITY) && wantsCity) {
+            locationLookup = (Lookup<CityResponse>) DatabaseReader::tryCity;
+        } else {
+            locationLookup = (Lookup<CountryResponse>) DatabaseReader::tryCountry;
+        }
+    }
+
+    private String toAscii(String input) {
+        return asciiNames.toAscii(input);
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.LockFreeExponentiallyDecayingReservoir;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import io.dropwizard.maxmind.geoip2.cache.MaxMindResultCache;
+import io.dropwizard.maxmind.geoip2.cache.NetworkCache;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.filter.GeoGate;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Lookup timers, failure counters and cache gauges of the GeoIP filter, registered under a name, {@value #PREFIX}
+ * by default. Counters are backed by {@link java.util.concurrent.atomic.LongAdder} and timers use a lock free
+ * reservoir, so recording never contends on the request path.
+ *
+ * @author phaneesh
+ */
+@Getter
+public class MaxMindMetrics {
+
+    public static final String PREFIX = "maxmind";
+
+    private final MetricRegistry registry;
+
+    //Name all metrics are registered under
+    private final String name;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<DatabaseType, Timer> lookups = new EnumMap<>(DatabaseType.class);
+
+    @Getter(AccessLevel.NONE)
+    private final Map<GeoGate.Reason, Counter> gateRejections = new EnumMap<>(GeoGate.Reason.class);
+
+    private final Counter missingHeader;
+
+    private final Counter invalidIp;
+
+    private final Counter unresolvedAddress;
+
+    private final Counter addressNotFound;
+
+    private final Counter unknownType;
+
+    private final Counter lookupErrors;
+
+    private final Counter reservedAddress;
+
+    private final Counter asyncTimeouts;
+
+    private final Counter asyncRejected;
+
+    public MaxMindMetrics(MetricRegistry registry) {
+        this(registry, PREFIX);
+    }
+
+    /**
+     * @param name name all metrics are registered under; every bundle or resolver sharing a registry needs its own
+     */
+    public MaxMindMetrics(MetricRegistry registry, String name) {
+        this.registry = registry;
+        this.name = name;
+        for (DatabaseType type : DatabaseType.values()) {
+            lookups.put(type, registry.timer(MetricRegistry.name(name, "lookup", type.getName()),
+                    () -> new Timer(LockFreeExponentiallyDecayingReservoir.builder().build())));
+        }
+        this.missingHeader = registry.counter(MetricRegistry.name(name, "errors", "missingHeader"));
+        this.invalidIp = registry.counter(MetricRegistry.name(name, "errors", "invalidIp"));
+        this.unresolvedAddress = registry.counter(MetricRegistry.name(name, "errors", "unresolvedAddress"));
+        this.addressNotFound = registry.counter(MetricRegistry.name(name, "errors", "addressNotFound"));
+        this.unknownType = registry.counter(MetricRegistry.name(name, "errors", "unknownType"));
+        this.lookupErrors = registry.counter(MetricRegistry.name(name, "errors", "lookup"));
+        this.reservedAddress = registry.counter(MetricRegistry.name(name, "skipped", "reservedAddress"));
+        this.asyncTimeouts = registry.counter(MetricRegistry.name(name, "async", "timeouts"));
+        this.asyncRejected = registry.counter(MetricRegistry.name(name, "async", "rejected"));
+        for (GeoGate.Reason reason : GeoGate.Reason.values()) {
+            gateRejections.put(reason, registry.counter(MetricRegistry.name(name, "gate", "rejected",
+                    reason.name().toLowerCase(Locale.ROOT))));
+        }
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos} against the lookup timer of the given database type.
+     */
+    public void lookup(DatabaseType type, long startNanos) {
+        lookups.get(type).update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Timer getLookups(DatabaseType type) {
+        return lookups.get(type);
+    }
+
+    public Counter gateRejected(GeoGate.Reason reason) {
+        return gateRejections.get(reason);
+    }
+
+    public void registerCache(final MaxMindResultCache cache) {
+        register(MetricRegistry.name(name, "cache", "size"), (Gauge<Long>) cache::size);
+        register(MetricRegistry.name(name, "cache", "evictions"), (Gauge<Long>) cache::evictionCount);
+        register(MetricRegistry.name(name, "cache", "hitRatio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                final long hits = cache.hitCount();
+                return Ratio.of(hits, hits + cache.missCount());
+            }
+        });
+    }
+
+    public void registerMissCache(final DatabaseType type, final NetworkCache<?> cache) {
+        register(MetricRegistry.name(name, "missCache", type.getName(), "size"), (Gauge<Long>) cache::size);
+        register(MetricRegistry.name(name, "missCache", type.getName(), "hitRatio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                final long hits = cache.hitCount();
+                return Ratio.of(hits, hits + cache.missCount());
+            }
+        });
+    }
+
+    public void registerAsync(final IntSupplier queueDepth, final IntSupplier inFlight) {
+        register(MetricRegistry.name(name, "async", "queueDepth"), (Gauge<Integer>) queueDepth::getAsInt);
+        register(MetricRegistry.name(name, "async", "inFlight"), (Gauge<Integer>) inFlight::getAsInt);
+    }
+
+    /**
+     * Registers a gauge of this resolver's caches. Fails rather than keeping another resolver's gauge, so two bundles
+     * or resolvers sharing a registry under one name are noticed at startup instead of reporting only one of them.
+     *
+     * @throws IllegalStateException if a metric of that name is already registered
+     */
+    private void register(String metric, Metric gauge) {
+        try {
+            registry.register(metric, gauge);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Metric " + metric + " is already registered; give every MaxMind bundle or"
+                    + " resolver sharing a metric registry its own metricsName", e);
+        }
+    }
+}
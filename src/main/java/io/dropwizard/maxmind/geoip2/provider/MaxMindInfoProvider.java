@@ -17,12 +17,12 @@
 
 package io.dropwizard.maxmind.geoip2.provider;
 
-import com.google.common.base.Strings;
-import io.dropwizard.maxmind.geoip2.core.MaxMindHeaders;
 import io.dropwizard.maxmind.geoip2.core.MaxMindInfo;
+import io.dropwizard.maxmind.geoip2.core.MaxMindProperties;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
 import lombok.extern.slf4j.Slf4j;
-import org.glassfish.hk2.api.InjectionResolver;
-import org.glassfish.hk2.api.TypeLiteral;
+import org.glassfish.hk2.api.IterableProvider;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.internal.inject.AbstractValueParamProvider;
@@ -34,6 +34,7 @@ import org.glassfish.jersey.server.spi.internal.ValueParamProvider;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
+import java.net.InetAddress;
 import java.util.function.Function;
 
 /**
@@ -43,11 +44,15 @@ import java.util.function.Function;
 @Singleton
 public class MaxMindInfoProvider extends AbstractValueParamProvider {
 
-    public static final String UNKNOWN = "UNKNOWN";
+    public static final String UNKNOWN = MaxMindInfo.UNKNOWN;
 
     /**
      * Injection resolver for {@link MaxMindContext} annotation.
+     *
+     * @deprecated not needed for resource method parameters, which {@link Binder} serves; since Jersey 2.26
+     * {@link ParamInjectionResolver} is a Jersey rather than an HK2 injection resolver, so it cannot be bound as one
      */
+    @Deprecated
     @Singleton
     public static final class MaxMindContextInjectionResolver extends ParamInjectionResolver<MaxMindContext> {
         @Inject
@@ -57,49 +62,55 @@ public class MaxMindInfoProvider extends AbstractValueParamProvider {
         }
     }
 
+    private final MaxMindResolver resolver;
+
     /**
-     * Factory that provides MaxMindInfo instances by extracting headers from the request.
+     * Factory that provides MaxMindInfo instances from the resolved result attached to the request by the filter,
+     * falling back to extracting headers from the request (e.g. when stamped by an upstream proxy).
+     * Public for benchmarks.
      */
-    private static MaxMindInfo createMaxMindInfo(ContainerRequest request) {
-        final String anonymousIp = request.getHeaderString(MaxMindHeaders.X_ANONYMOUS_IP);
-        final String anonymousVpn = request.getHeaderString(MaxMindHeaders.X_ANONYMOUS_VPN);
-        final String tor = request.getHeaderString(MaxMindHeaders.X_TOR);
-        final String city = request.getHeaderString(MaxMindHeaders.X_CITY);
-        final String state = request.getHeaderString(MaxMindHeaders.X_STATE);
-        final String stateIso = request.getHeaderString(MaxMindHeaders.X_STATE_ISO);
-        final String postal = request.getHeaderString(MaxMindHeaders.X_POSTAL);
-        final String connectionType = request.getHeaderString(MaxMindHeaders.X_CONNECTION_TYPE);
-        final String userType = request.getHeaderString(MaxMindHeaders.X_USER_TYPE);
-        final String country = request.getHeaderString(MaxMindHeaders.X_COUNTRY);
-        final String countryIso = request.getHeaderString(MaxMindHeaders.X_COUNTRY_ISO);
-        final String isp = request.getHeaderString(MaxMindHeaders.X_ISP);
-        final String latitude = request.getHeaderString(MaxMindHeaders.X_LATITUDE);
-        final String longitude = request.getHeaderString(MaxMindHeaders.X_LONGITUDE);
-        final String accuracy = request.getHeaderString(MaxMindHeaders.X_LOCATION_ACCURACY);
-
-        return MaxMindInfo.builder()
-                .anonymousIp(!Strings.isNullOrEmpty(anonymousIp) && Boolean.parseBoolean(anonymousIp))
-                .anonymousVpn(!Strings.isNullOrEmpty(anonymousVpn) && Boolean.parseBoolean(anonymousVpn))
-                .tor(!Strings.isNullOrEmpty(tor) && Boolean.parseBoolean(tor))
-                .city(Strings.isNullOrEmpty(city) ? UNKNOWN : city)
-                .state(Strings.isNullOrEmpty(state) ? UNKNOWN : state)
-                .stateIso(Strings.isNullOrEmpty(stateIso) ? UNKNOWN : stateIso)
-                .country(Strings.isNullOrEmpty(country) ? UNKNOWN : country)
-                .countryIso(Strings.isNullOrEmpty(countryIso) ? UNKNOWN : countryIso)
-                .postal(Strings.isNullOrEmpty(postal) ? UNKNOWN : postal)
-                .connectionType(Strings.isNullOrEmpty(connectionType) ? UNKNOWN : connectionType)
-                .userType(Strings.isNullOrEmpty(userType) ? UNKNOWN : userType)
-                .isp(Strings.isNullOrEmpty(isp) ? UNKNOWN : isp)
-                .latitude(Strings.isNullOrEmpty(latitude) ? 0 : Double.parseDouble(latitude))
-                .longitude(Strings.isNullOrEmpty(longitude) ? 0 : Double.parseDouble(longitude))
-                .accuracy(Strings.isNullOrEmpty(accuracy) ? 0 : Integer.parseInt(accuracy))
-                .build();
+    public MaxMindInfo createMaxMindInfo(ContainerRequest request) {
+        final MaxMindResult result = result(request);
+        if (result != null) {
+            return result.getInfo();
+        }
+        return MaxMindInfo.fromHeaders(request::getHeaderString);
     }
 
+    /**
+     * Returns the memoized result of the request, resolving it on first access when the filter runs in lazy mode.
+     * Lazily resolved results are also stamped as headers, if enabled, for anything reading them later in the request.
+     */
+    private MaxMindResult result(ContainerRequest request) {
+        final Object memoized = request.getProperty(MaxMindProperties.RESULT);
+        if (memoized instanceof MaxMindResult) {
+            return (MaxMindResult) memoized;
+        }
+        final Object address = request.getProperty(MaxMindProperties.CLIENT_ADDRESS);
+        if (resolver == null || !(address instanceof InetAddress)) {
+            return null;
+        }
+        final MaxMindResult result = resolver.resolve((InetAddress) address);
+        request.setProperty(MaxMindProperties.RESULT, result);
+        if (resolver.getConfig().isStampHeaders()) {
+            result.stamp(request.getHeaders());
+        }
+        return result;
+    }
 
-    @Inject
     public MaxMindInfoProvider(Provider<MultivaluedParameterExtractorProvider> mpep) {
+        this(mpep, (MaxMindResolver) null);
+    }
+
+    @Inject
+    public MaxMindInfoProvider(Provider<MultivaluedParameterExtractorProvider> mpep,
+                               IterableProvider<MaxMindResolver> resolvers) {
+        this(mpep, resolvers.getSize() == 0 ? null : resolvers.get());
+    }
+
+    public MaxMindInfoProvider(Provider<MultivaluedParameterExtractorProvider> mpep, MaxMindResolver resolver) {
         super(mpep, org.glassfish.jersey.model.Parameter.Source.UNKNOWN);
+        this.resolver = resolver;
     }
 
     @Override
@@ -109,7 +120,7 @@ public class MaxMindInfoProvider extends AbstractValueParamProvider {
             log.warn("MaxMindContext annotation was not placed on correct object type; Injection might not work correctly!");
             return null;
         }
-        return MaxMindInfoProvider::createMaxMindInfo;
+        return this::createMaxMindInfo;
     }
 
 
@@ -118,14 +129,29 @@ public class MaxMindInfoProvider extends AbstractValueParamProvider {
      * This should be registered in your application's Jersey configuration.
      */
     public static class Binder extends AbstractBinder {
+
+        private final MaxMindResolver resolver;
+
+        public Binder() {
+            this(null);
+        }
+
+        /**
+         * @param resolver resolver used to resolve lazily captured client addresses on first access; may be null
+         */
+        public Binder(MaxMindResolver resolver) {
+            this.resolver = resolver;
+        }
+
         @Override
         protected void configure() {
+            if (resolver != null) {
+                bind(resolver).to(MaxMindResolver.class);
+            }
+            //Jersey resolves @MaxMindContext parameters through the value param providers alone
             bind(MaxMindInfoProvider.class)
                     .to(ValueParamProvider.class)
                     .in(Singleton.class);
-            bind(MaxMindContextInjectionResolver.class)
-                    .to(new TypeLiteral<InjectionResolver<MaxMindContext>>() {})
-                    .in(Singleton.class);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.service;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.maxmind.geoip2.core.MaxMindInfo;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Programmatic and batch access to the bundle's databases, for enriching logs and events with the same readers and
+ * metrics the request filter uses. Single lookups share the request path's caches. Batches bypass them, so a bulk
+ * job does not evict the request path's working set. Batches are deduplicated, sorted by address so neighbouring
+ * lookups walk the same part of the memory mapped search tree, and resolved in parallel chunks on a dedicated fork
+ * join pool.
+ *
+ * @author phaneesh
+ */
+@Slf4j
+public class GeoIpLookupService implements Managed {
+
+    //Below this many addresses per chunk the fork join overhead outweighs the parallelism
+    private static final int MIN_CHUNK_SIZE = 256;
+
+    //IPv4 before IPv6, then unsigned byte order, i.e. the order of the database's search tree
+    private static final Comparator<byte[]> ADDRESS_ORDER = (left, right) -> {
+        if (left.length != right.length) {
+            return Integer.compare(left.length, right.length);
+        }
+        for (int i = 0; i < left.length; i++) {
+            final int compare = Integer.compare(left[i] & 0xff, right[i] & 0xff);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return 0;
+    };
+
+    private final MaxMindResolver resolver;
+
+    private final int parallelism;
+
+    private volatile ForkJoinPool pool;
+
+    /**
+     * @param parallelism worker threads used for batches; 0 or less uses one per available processor
+     */
+    public GeoIpLookupService(MaxMindResolver resolver, int parallelism) {
+        this.resolver = resolver;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public void start() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism, pool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("maxmind-batch-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+    }
+
+    @Override
+    public void stop() {
+        final ForkJoinPool current = pool;
+        pool = null;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    public MaxMindInfo lookup(InetAddress address) {
+        return resolver.resolve(address).getInfo();
+    }
+
+    /**
+     * Resolves a batch of addresses without going through the result and miss caches. Duplicates are resolved once.
+     *
+     * @return results keyed by address, in the order the addresses were first seen
+     */
+    public Map<InetAddress, MaxMindInfo> lookup(Collection<InetAddress> addresses) {
+        final InetAddress[] unique = new LinkedHashSet<>(addresses).toArray(new InetAddress[0]);
+        final byte[][] keys = new byte[unique.length][];
+        final Integer[] order = new Integer[unique.length];
+        for (int i = 0; i < unique.length; i++) {
+            keys[i] = unique[i].getAddress();
+            order[i] = i;
+        }
+        Arrays.sort(order, (left, right) -> ADDRESS_ORDER.compare(keys[left], keys[right]));
+        final InetAddress[] sorted = new InetAddress[unique.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = unique[order[i]];
+        }
+        final MaxMindInfo[] resolved = new MaxMindInfo[sorted.length];
+        final ResolveChunk task = new ResolveChunk(sorted, resolved, 0, sorted.length,
+                Math.max(MIN_CHUNK_SIZE, sorted.length / (parallelism * 4)));
+        final ForkJoinPool current = pool;
+        //Not started, e.g. when used outside of the application lifecycle
+        (current == null ? ForkJoinPool.commonPool() : current).invoke(task);
+        final MaxMindInfo[] byInput = new MaxMindInfo[unique.length];
+        for (int i = 0; i < order.length; i++) {
+            byInput[order[i]] = resolved[i];
+        }
+        final Map<InetAddress, MaxMindInfo> results = new LinkedHashMap<>(unique.length * 4 / 3 + 1);
+        for (int i = 0; i < unique.length; i++) {
+            results.put(unique[i], byInput[i]);
+        }
+        return results;
+    }
+
+    public MaxMindResolver getResolver() {
+        return resolver;
+    }
+
+    private final class ResolveChunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final InetAddress[] addresses;
+
+        private final MaxMindInfo[] results;
+
+        private final int from;
+
+        private final int to;
+
+        private final int chunkSize;
+
+        private ResolveChunk(InetAddress[] addresses, MaxMindInfo[] results, int from, int to, int chunkSize) {
+            this.addresses = addresses;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                for (int i = from; i < to; i++) {
+                    results[i] = resolver.resolveUncached(addresses[i]).getInfo();
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new ResolveChunk(addresses, results, from, middle, chunkSize),
+                    new ResolveChunk(addresses, results, middle, to, chunkSize));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.dropwizard.maxmind.geoip2.core.MaxMindInfo;
+import io.dropwizard.maxmind.geoip2.util.IpAddressParser;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin servlet enriching a stream of addresses: POST one address per line and read back one JSON object per line
+ * ({@code application/x-ndjson}) in the same order. Input is consumed and answered in batches, so arbitrarily large
+ * bodies are streamed through with bounded memory.
+ *
+ * @author phaneesh
+ */
+public class GeoIpLookupServlet extends HttpServlet {
+
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient GeoIpLookupService service;
+
+    private final transient ObjectWriter writer;
+
+    private final int batchSize;
+
+    public GeoIpLookupServlet(GeoIpLookupService service, ObjectMapper mapper, int batchSize) {
+        this.service = service;
+        this.writer = mapper.writerFor(Line.class);
+        this.batchSize = batchSize > 0 ? batchSize : 10000;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(CONTENT_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        final BufferedReader reader = request.getReader();
+        final Writer out = response.getWriter();
+        final List<String> batch = new ArrayList<>(batchSize);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            batch.add(line);
+            if (batch.size() == batchSize) {
+                write(batch, out);
+                batch.clear();
+            }
+        }
+        write(batch, out);
+        out.flush();
+    }
+
+    private void write(List<String> batch, Writer out) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final InetAddress[] addresses = new InetAddress[batch.size()];
+        final List<InetAddress> valid = new ArrayList<>(batch.size());
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = IpAddressParser.parseFirst(batch.get(i));
+            if (addresses[i] != null) {
+                valid.add(addresses[i]);
+            }
+        }
+        final Map<InetAddress, MaxMindInfo> results = service.lookup(valid);
+        for (int i = 0; i < addresses.length; i++) {
+            final Line result = addresses[i] == null
+                    ? new Line(batch.get(i), null, "INVALID_IP")
+                    : new Line(batch.get(i), results.get(addresses[i]), null);
+            out.write(writer.writeValueAsString(result));
+            out.write('\n');
+        }
+        //Hand each batch to the client as soon as it is resolved
+        out.flush();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class Line {
+
+        private String ip;
+
+        private MaxMindInfo info;
+
+        private String error;
+    }
+}
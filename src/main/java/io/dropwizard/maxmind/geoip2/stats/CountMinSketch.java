@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.stats;
+
+/**
+ * Count-Min sketch over long keys: {@code depth} rows of {@code width} counters, each key incrementing one counter per
+ * row. Estimates never undercount and overcount by at most total / width with high probability. Lock free and of
+ * fixed size: the counters are {@link StripedCounters}, so the few counters heavy keys hit from every thread are
+ * not written by all of them on the same cache line.
+ *
+ * @author phaneesh
+ */
+public final class CountMinSketch {
+
+    private static final long[] SEEDS = {
+            0x9e3779b97f4a7c15L, 0xc2b2ae3d27d4eb4fL, 0x165667b19e3779f9L, 0xd6e8feb86659fd93L
+    };
+
+    private final StripedCounters counters;
+
+    private final int mask;
+
+    private final int shift;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     */
+    public CountMinSketch(int width) {
+        final int rowWidth = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.counters = new StripedCounters(rowWidth * SEEDS.length);
+        this.mask = rowWidth - 1;
+        this.shift = Integer.numberOfTrailingZeros(rowWidth);
+    }
+
+    /**
+     * Counts one occurrence of the key. Only the calling thread's stripe is read, nothing is summed.
+     *
+     * @return the estimate of the key in the calling thread's stripe including this occurrence, a lower bound of
+     * what {@link #estimate(long)} would return
+     */
+    public long add(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < SEEDS.length; row++) {
+            estimate = Math.min(estimate, counters.increment(slot(row, key)));
+        }
+        return estimate;
+    }
+
+    public long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < SEEDS.length; row++) {
+            estimate = Math.min(estimate, counters.sum(slot(row, key)));
+        }
+        return estimate;
+    }
+
+    public void reset() {
+        counters.reset();
+    }
+
+    private int slot(int row, long key) {
+        return (row << shift) | (int) (mix(key * SEEDS[row]) & mask);
+    }
+
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+}
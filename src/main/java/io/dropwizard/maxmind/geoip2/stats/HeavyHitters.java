@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate top-k of non negative long keys: a {@link CountMinSketch} counts every key, and a fixed open addressed
+ * table keeps the candidates with the highest estimates, evicting the smallest candidate of a probe window when a
+ * heavier key arrives. Slots are claimed with CAS only; racing updates can at worst drop or duplicate a light
+ * candidate, which the snapshot tolerates. The table is only consulted on a sample of a key's occurrences: the first
+ * {@value #SAMPLE} counted by a thread, then every {@value #SAMPLE}th, so a hot key neither sums the sketch nor reads
+ * the table on every request. A tracked key's estimate is only republished once it grew by a sixteenth.
+ *
+ * @author phaneesh
+ */
+public final class HeavyHitters {
+
+    private static final int PROBES = 8;
+
+    private static final int SAMPLE = 16;
+
+    private final CountMinSketch sketch;
+
+    //Key + 1 per slot, 0 when empty
+    private final AtomicLongArray keys;
+
+    private final AtomicLongArray estimates;
+
+    private final int mask;
+
+    /**
+     * @param capacity    heavy hitters to track; the candidate table holds four times as many
+     * @param sketchWidth counters per sketch row
+     */
+    public HeavyHitters(int capacity, int sketchWidth) {
+        final int slots = Integer.highestOneBit(Math.max(PROBES, capacity * 4 - 1) << 1);
+        this.sketch = new CountMinSketch(sketchWidth);
+        this.keys = new AtomicLongArray(slots);
+        this.estimates = new AtomicLongArray(slots);
+        this.mask = slots - 1;
+    }
+
+    public void add(long key) {
+        final long counted = sketch.add(key);
+        if (counted > SAMPLE && (counted & (SAMPLE - 1)) != 0) {
+            return;
+        }
+        final long estimate = sketch.estimate(key);
+        final long stored = key + 1;
+        final int start = (int) CountMinSketch.mix(key) & mask;
+        int lightest = -1;
+        long lightestEstimate = Long.MAX_VALUE;
+        for (int probe = 0; probe < PROBES; probe++) {
+            final int slot = (start + probe) & mask;
+            long current = keys.get(slot);
+            if (current == 0 && keys.compareAndSet(slot, 0, stored)) {
+                estimates.set(slot, estimate);
+                return;
+            }
+            current = keys.get(slot);
+            final long slotEstimate = estimates.get(slot);
+            if (current == stored) {
+                if (estimate - slotEstimate > slotEstimate >>> 4) {
+                    estimates.set(slot, estimate);
+                }
+                return;
+            }
+            if (slotEstimate < lightestEstimate) {
+                lightest = slot;
+                lightestEstimate = slotEstimate;
+            }
+        }
+        if (estimate > lightestEstimate) {
+            final long evicted = keys.get(lightest);
+            if (keys.compareAndSet(lightest, evicted, stored)) {
+                estimates.set(lightest, estimate);
+            }
+        }
+    }
+
+    /**
+     * @return up to {@code limit} keys with their current estimates, heaviest first
+     */
+    public List<Map.Entry<Long, Long>> top(int limit) {
+        final Map<Long, Long> candidates = new HashMap<>();
+        for (int slot = 0; slot < keys.length(); slot++) {
+            final long stored = keys.get(slot);
+            if (stored != 0) {
+                candidates.put(stored - 1, sketch.estimate(stored - 1));
+            }
+        }
+        final List<Map.Entry<Long, Long>> top = new ArrayList<>(candidates.entrySet());
+        top.sort(Map.Entry.<Long, Long>comparingByValue().reversed());
+        return top.size() > limit ? new ArrayList<>(top.subList(0, limit)) : top;
+    }
+
+    public void reset() {
+        for (int slot = 0; slot < keys.length(); slot++) {
+            keys.set(slot, 0);
+            estimates.set(slot, 0);
+        }
+        sketch.reset();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed block of long counters striped by thread. Each thread increments its stripe's copy of a counter, so threads
+ * of different stripes never write the same cache line, and reads sum the stripes. Unlike {@link
+ * java.util.concurrent.atomic.LongAdder}s, the whole block is allocated up front and never grows under contention.
+ *
+ * @author phaneesh
+ */
+final class StripedCounters {
+
+    private static final int MAX_STRIPES = 8;
+
+    private final AtomicLongArray counters;
+
+    //Distance between a counter's copies, padded so small blocks of different stripes do not share cache lines
+    private final int stride;
+
+    private final int stripeMask;
+
+    StripedCounters(int size) {
+        this(size, Math.min(MAX_STRIPES, Integer.highestOneBit(
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1)));
+    }
+
+    /**
+     * @param stripes a power of two
+     */
+    StripedCounters(int size, int stripes) {
+        this.stride = (size + 15) & ~15;
+        this.stripeMask = stripes - 1;
+        this.counters = new AtomicLongArray(stride * stripes);
+    }
+
+    /**
+     * @return the count of the calling thread's stripe after the increment, a lower bound of {@link #sum(int)}
+     */
+    long increment(int index) {
+        return counters.incrementAndGet(stripe() * stride + index);
+    }
+
+    long sum(int index) {
+        long sum = 0;
+        for (int offset = index; offset < counters.length(); offset += stride) {
+            sum += counters.get(offset);
+        }
+        return sum;
+    }
+
+    void reset() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private int stripe() {
+        return (int) Thread.currentThread().getId() & stripeMask;
+    }
+}
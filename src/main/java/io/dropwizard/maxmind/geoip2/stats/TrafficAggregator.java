@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.stats;
+
+import io.dropwizard.maxmind.geoip2.core.MaxMindInfo;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.util.CountryCodes;
+
+import java.net.InetAddress;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates resolved requests by country, anonymity, ASN and client network in fixed memory without locking:
+ * {@link StripedCounters} per country code and flag, and {@link HeavyHitters} sketches for ASNs and networks, whose
+ * cardinality is unbounded.
+ *
+ * @author phaneesh
+ */
+public class TrafficAggregator {
+
+    private static final long IPV4 = 1L << 56;
+
+    private static final long IPV6 = 2L << 56;
+
+    private static final long PREFIX = (1L << 56) - 1;
+
+    //Counters after the one per country code
+    private static final int UNKNOWN_COUNTRY = CountryCodes.COUNT;
+
+    private static final int TOTAL = CountryCodes.COUNT + 1;
+
+    private static final int ANONYMOUS = CountryCodes.COUNT + 2;
+
+    private static final int ANONYMOUS_VPN = CountryCodes.COUNT + 3;
+
+    private static final int TOR = CountryCodes.COUNT + 4;
+
+    private final StripedCounters counters = new StripedCounters(CountryCodes.COUNT + 5);
+
+    private final HeavyHitters asns;
+
+    private final HeavyHitters networks;
+
+    private volatile long since = System.currentTimeMillis();
+
+    /**
+     * @param topK        ASNs and networks tracked
+     * @param sketchWidth counters per Count-Min sketch row
+     */
+    public TrafficAggregator(int topK, int sketchWidth) {
+        this.asns = new HeavyHitters(topK, sketchWidth);
+        this.networks = new HeavyHitters(topK, sketchWidth);
+    }
+
+    public void record(InetAddress address, MaxMindResult result) {
+        final MaxMindInfo info = result.getInfo();
+        counters.increment(TOTAL);
+        final int country = info.getCountryIndex();
+        counters.increment(country == CountryCodes.NONE ? UNKNOWN_COUNTRY : country);
+        if (info.isAnonymousIp()) {
+            counters.increment(ANONYMOUS);
+        }
+        if (info.isAnonymousVpn()) {
+            counters.increment(ANONYMOUS_VPN);
+        }
+        if (info.isTor()) {
+            counters.increment(TOR);
+        }
+        final long asn = result.getAsn();
+        if (asn > 0) {
+            asns.add(asn);
+        }
+        networks.add(network(address.getAddress()));
+    }
+
+    /**
+     * @param limit ASNs and networks to include
+     */
+    public TrafficSnapshot snapshot(int limit) {
+        final List<Map.Entry<Integer, Long>> byCountry = new ArrayList<>();
+        for (int i = 0; i < CountryCodes.COUNT; i++) {
+            final long count = counters.sum(i);
+            if (count > 0) {
+                byCountry.add(new AbstractMap.SimpleImmutableEntry<>(i, count));
+            }
+        }
+        byCountry.sort(Map.Entry.<Integer, Long>comparingByValue().reversed());
+        final Map<String, Long> countryCounts = new LinkedHashMap<>();
+        byCountry.forEach(e -> countryCounts.put(CountryCodes.code(e.getKey()), e.getValue()));
+        final List<TrafficSnapshot.Entry> topAsns = new ArrayList<>();
+        asns.top(limit).forEach(e -> topAsns.add(new TrafficSnapshot.Entry(String.valueOf(e.getKey()), e.getValue())));
+        final List<TrafficSnapshot.Entry> topNetworks = new ArrayList<>();
+        networks.top(limit).forEach(e -> topNetworks.add(new TrafficSnapshot.Entry(networkName(e.getKey()),
+                e.getValue())));
+        return new TrafficSnapshot(since, counters.sum(TOTAL), countryCounts, counters.sum(UNKNOWN_COUNTRY),
+                counters.sum(ANONYMOUS), counters.sum(ANONYMOUS_VPN), counters.sum(TOR), topAsns, topNetworks);
+    }
+
+    /**
+     * Starts a new aggregation window. Requests recorded concurrently may be counted in either window.
+     */
+    public void reset() {
+        counters.reset();
+        asns.reset();
+        networks.reset();
+        since = System.currentTimeMillis();
+    }
+
+    //IPv4 addresses are keyed by /24 and IPv6 by /48, tagged with the family above the prefix bits
+    private static long network(byte[] address) {
+        long prefix = 0;
+        final int bytes = address.length == 4 ? 3 : 6;
+        for (int i = 0; i < bytes; i++) {
+            prefix = (prefix << 8) | (address[i] & 0xff);
+        }
+        return (address.length == 4 ? IPV4 : IPV6) | prefix;
+    }
+
+    private static String networkName(long key) {
+        final long prefix = key & PREFIX;
+        if ((key & ~PREFIX) == IPV4) {
+            return String.format("%d.%d.%d.0/24", (prefix >>> 16) & 0xff, (prefix >>> 8) & 0xff, prefix & 0xff);
+        }
+        return String.format("%x:%x:%x::/48", (prefix >>> 32) & 0xffff, (prefix >>> 16) & 0xffff, prefix & 0xffff);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point in time view of {@link TrafficAggregator}, served as JSON on the admin port.
+ *
+ * @author phaneesh
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TrafficSnapshot {
+
+    //Start of the aggregation window in epoch milliseconds
+    private long since;
+
+    private long total;
+
+    //Requests per ISO country code, busiest first
+    private Map<String, Long> countries;
+
+    private long unknownCountry;
+
+    private long anonymous;
+
+    private long anonymousVpn;
+
+    private long tor;
+
+    //Estimated busiest autonomous systems
+    private List<Entry> asns;
+
+    //Estimated busiest client networks (/24 for IPv4, /48 for IPv6)
+    private List<Entry> networks;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Entry {
+
+        private String key;
+
+        private long count;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.stats;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Admin servlet serving the traffic aggregation as JSON: GET reads the current window, POST reads it and starts a new
+ * one. The {@code limit} parameter caps the ASNs and networks returned.
+ *
+ * @author phaneesh
+ */
+public class TrafficStatsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient TrafficAggregator aggregator;
+
+    private final transient ObjectWriter writer;
+
+    private final int defaultLimit;
+
+    public TrafficStatsServlet(TrafficAggregator aggregator, ObjectMapper mapper, int defaultLimit) {
+        this.aggregator = aggregator;
+        this.writer = mapper.writerFor(TrafficSnapshot.class).withDefaultPrettyPrinter();
+        this.defaultLimit = defaultLimit;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        write(aggregator.snapshot(limit(request)), response);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final TrafficSnapshot snapshot = aggregator.snapshot(limit(request));
+        aggregator.reset();
+        write(snapshot, response);
+    }
+
+    private int limit(HttpServletRequest request) {
+        final String limit = request.getParameter("limit");
+        if (limit == null) {
+            return defaultLimit;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(limit));
+        } catch (NumberFormatException e) {
+            return defaultLimit;
+        }
+    }
+
+    private void write(TrafficSnapshot snapshot, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        writer.writeValue(response.getWriter(), snapshot);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.util;
+
+import com.google.common.base.Strings;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interning table of header safe (printable ASCII) forms of database names such as countries, cities and ISPs.
+ * The set of distinct names is small and fixed per database release, so each raw name is sanitized once and every
+ * later request gets the same canonical String instance back. Clear it whenever a new database is loaded.
+ *
+ * @author phaneesh
+ */
+public class AsciiNames {
+
+    private static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private final ConcurrentMap<String, String> names = new ConcurrentHashMap<>();
+
+    private final int maxEntries;
+
+    public AsciiNames() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries upper bound of interned names; beyond it names are sanitized without being stored
+     */
+    public AsciiNames(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public String toAscii(String input) {
+        if (Strings.isNullOrEmpty(input)) {
+            return input;
+        }
+        final String interned = names.get(input);
+        if (interned != null) {
+            return interned;
+        }
+        final String sanitized = sanitize(input);
+        if (names.size() >= maxEntries) {
+            return sanitized;
+        }
+        final String existing = names.putIfAbsent(input, sanitized);
+        return existing != null ? existing : sanitized;
+    }
+
+    public void clear() {
+        names.clear();
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Drops every character outside 0x20-0x7e. Returns the input itself when nothing needs to be dropped.
+     */
+    public static String sanitize(String input) {
+        final int length = input.length();
+        int i = 0;
+        while (i < length && isPrintableAscii(input.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return input;
+        }
+        final StringBuilder builder = new StringBuilder(length - 1);
+        builder.append(input, 0, i);
+        for (i++; i < length; i++) {
+            final char c = input.charAt(i);
+            if (isPrintableAscii(c)) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean isPrintableAscii(char c) {
+        return c >= 0x20 && c <= 0x7e;
+    }
+}
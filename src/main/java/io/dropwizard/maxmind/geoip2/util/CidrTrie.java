@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.util;
+
+import java.util.Arrays;
+
+/**
+ * Binary prefix trie of IPv4 and IPv6 networks answering "is this address inside any of the networks".
+ * Nodes live in flat int arrays so matching walks at most 32 / 128 bits without allocating.
+ *
+ * @author phaneesh
+ */
+public final class CidrTrie {
+
+    private final Bits v4 = new Bits();
+
+    private final Bits v6 = new Bits();
+
+    /**
+     * Adds a network in CIDR notation, e.g. {@code 10.0.0.0/8} or {@code 2001:db8::/32}.
+     * An address without a prefix length is added as a single host.
+     *
+     * @throws IllegalArgumentException if the value is not a valid network
+     */
+    public CidrTrie add(String cidr) {
+        final int slash = cidr.indexOf('/');
+        final byte[] address = IpAddressParser.parseBytes(cidr, 0, slash < 0 ? cidr.length() : slash);
+        if (address == null) {
+            throw new IllegalArgumentException("Invalid network: " + cidr);
+        }
+        final int bits = address.length * 8;
+        int prefixLength = bits;
+        if (slash >= 0) {
+            try {
+                prefixLength = Integer.parseInt(cidr.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid network: " + cidr, e);
+            }
+            if (prefixLength < 0 || prefixLength > bits) {
+                throw new IllegalArgumentException("Invalid prefix length: " + cidr);
+            }
+        }
+        add(address, prefixLength);
+        return this;
+    }
+
+    public CidrTrie add(byte[] address, int prefixLength) {
+        if (address.length == 16 && isIpv4Mapped(address, 16) && prefixLength >= 96) {
+            v4.insert(address, 12, prefixLength - 96);
+        } else {
+            (address.length == 4 ? v4 : v6).insert(address, 0, prefixLength);
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return v4.empty() && v6.empty();
+    }
+
+    /**
+     * @param address address bytes as produced by {@link IpAddressParser#parseInto(String, int, int, byte[])}
+     * @param length  4 or 16
+     */
+    public boolean contains(byte[] address, int length) {
+        if (length == 4) {
+            return v4.matches(address, 0, 32);
+        }
+        if (isIpv4Mapped(address, length)) {
+            return v4.matches(address, 12, 32);
+        }
+        return v6.matches(address, 0, 128);
+    }
+
+    private static boolean isIpv4Mapped(byte[] address, int length) {
+        if (length != 16) {
+            return false;
+        }
+        for (int i = 0; i < 10; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return address[10] == (byte) 0xff && address[11] == (byte) 0xff;
+    }
+
+    private static int bit(byte[] address, int offset, int index) {
+        return (address[offset + (index >>> 3)] >>> (7 - (index & 7))) & 1;
+    }
+
+    /**
+     * Trie over one address family. Node 0 is the root; a child index of 0 means no child.
+     */
+    private static final class Bits {
+
+        private int[] children = new int[64];
+
+        private boolean[] terminal = new boolean[32];
+
+        private int nodes = 1;
+
+        void insert(byte[] address, int offset, int prefixLength) {
+            int node = 0;
+            for (int i = 0; i < prefixLength && !terminal[node]; i++) {
+                final int slot = node * 2 + bit(address, offset, i);
+                if (children[slot] == 0) {
+                    //newNode() may grow the arrays, so it must run before children is dereferenced
+                    final int child = newNode();
+                    children[slot] = child;
+                }
+                node = children[slot];
+            }
+            terminal[node] = true;
+        }
+
+        boolean matches(byte[] address, int offset, int bits) {
+            int node = 0;
+            for (int i = 0; ; i++) {
+                if (terminal[node]) {
+                    return true;
+                }
+                if (i == bits) {
+                    return false;
+                }
+                node = children[node * 2 + bit(address, offset, i)];
+                if (node == 0) {
+                    return false;
+                }
+            }
+        }
+
+        boolean empty() {
+            return nodes == 1 && !terminal[0];
+        }
+
+        private int newNode() {
+            if (nodes == terminal.length) {
+                terminal = Arrays.copyOf(terminal, nodes * 2);
+                children = Arrays.copyOf(children, nodes * 4);
+            }
+            return nodes++;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Picks the client address out of forwarding headers. Without trusted proxies the first (leftmost) entry is used.
+ * With trusted proxies the list is walked from the right, skipping hops inside the trusted networks, and the first
+ * untrusted hop is the client; entries left of it are attacker controlled and ignored.
+ * Supports comma separated lists (X-Forwarded-For and similar) and RFC 7239 {@code Forwarded} {@code for=} values.
+ *
+ * @author phaneesh
+ */
+public class ClientAddressExtractor {
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[16]);
+
+    private final CidrTrie trustedProxies;
+
+    public ClientAddressExtractor(List<String> trustedProxies) {
+        this.trustedProxies = new CidrTrie();
+        if (trustedProxies != null) {
+            trustedProxies.forEach(this.trustedProxies::add);
+        }
+    }
+
+    /**
+     * @param value comma separated address list, e.g. {@code client, proxy1, proxy2}
+     * @return the client address or null if it is not a valid IP literal
+     */
+    public InetAddress fromList(String value) {
+        return extract(value, IpAddressParser::parseInto);
+    }
+
+    /**
+     * @param value RFC 7239 Forwarded header, e.g. {@code for=192.0.2.60;proto=http, for="[2001:db8::1]:4711"}
+     * @return the client address or null if it is missing, obfuscated ({@code unknown}, {@code _hidden}) or invalid
+     */
+    public InetAddress fromForwarded(String value) {
+        return extract(value, ClientAddressExtractor::parseForwardedFor);
+    }
+
+    /**
+     * Empty list elements (e.g. from a trailing comma) are not hops and are skipped, with or without trusted proxies.
+     * When every hop is trusted the leftmost one is the client.
+     */
+    private InetAddress extract(String value, ElementParser parser) {
+        if (value == null) {
+            return null;
+        }
+        final byte[] buffer = BUFFER.get();
+        if (trustedProxies.isEmpty()) {
+            int start = 0;
+            while (true) {
+                final int comma = value.indexOf(',', start);
+                final int end = comma < 0 ? value.length() : comma;
+                if (!isBlank(value, start, end)) {
+                    final int length = parser.parse(value, start, end, buffer);
+                    return length == 0 ? null : toAddress(buffer, length);
+                }
+                if (comma < 0) {
+                    return null;
+                }
+                start = comma + 1;
+            }
+        }
+        int end = value.length();
+        int length = 0;
+        while (true) {
+            final int start = value.lastIndexOf(',', end - 1) + 1;
+            if (!isBlank(value, start, end)) {
+                length = parser.parse(value, start, end, buffer);
+                if (length == 0) {
+                    return null;
+                }
+                if (!trustedProxies.contains(buffer, length)) {
+                    return toAddress(buffer, length);
+                }
+            }
+            if (start == 0) {
+                //The buffer still holds the leftmost hop, all of them are trusted
+                return length == 0 ? null : toAddress(buffer, length);
+            }
+            end = start - 1;
+        }
+    }
+
+    /**
+     * Parses the {@code for=} parameter of one Forwarded element into the buffer.
+     *
+     * @return 4 or 16, or 0 if the element has no usable address
+     */
+    private static int parseForwardedFor(String value, int from, int to, byte[] buffer) {
+        int pair = from;
+        while (pair < to) {
+            int pairEnd = value.indexOf(';', pair);
+            if (pairEnd < 0 || pairEnd > to) {
+                pairEnd = to;
+            }
+            int i = pair;
+            while (i < pairEnd && (value.charAt(i) == ' ' || value.charAt(i) == '\t')) {
+                i++;
+            }
+            if (pairEnd - i > 4 && value.regionMatches(true, i, "for=", 0, 4)) {
+                return parseNode(value, i + 4, pairEnd, buffer);
+            }
+            pair = pairEnd + 1;
+        }
+        return 0;
+    }
+
+    private static int parseNode(String value, int from, int to, byte[] buffer) {
+        while (to > from && (value.charAt(to - 1) == ' ' || value.charAt(to - 1) == '\t')) {
+            to--;
+        }
+        if (to - from >= 2 && value.charAt(from) == '"' && value.charAt(to - 1) == '"') {
+            from++;
+            to--;
+        }
+        if (from < to && value.charAt(from) == '[') {
+            final int close = value.indexOf(']', from);
+            if (close < 0 || close >= to) {
+                return 0;
+            }
+            final int length = IpAddressParser.parseInto(value, from + 1, close, buffer);
+            return length == 16 ? length : 0;
+        }
+        //IPv4 with an optional port
+        final int colon = value.indexOf(':', from);
+        final int length = IpAddressParser.parseInto(value, from, colon < 0 || colon >= to ? to : colon, buffer);
+        return length == 4 ? length : 0;
+    }
+
+    private static boolean isBlank(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            final char c = value.charAt(i);
+            if (c != ' ' && c != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static InetAddress toAddress(byte[] buffer, int length) {
+        try {
+            return InetAddress.getByAddress(Arrays.copyOf(buffer, length));
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private interface ElementParser {
+
+        /**
+         * @return number of address bytes written (4 or 16), or 0 if the element has no usable address
+         */
+        int parse(String value, int from, int to, byte[] buffer);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.util;
+
+/**
+ * Dense index of ISO 3166-1 alpha-2 codes over the 26 x 26 letter pairs, for flat arrays and bitsets keyed by country.
+ *
+ * @author phaneesh
+ */
+public final class CountryCodes {
+
+    public static final int COUNT = 26 * 26;
+
+    public static final int NONE = -1;
+
+    //Every code up front, so looking one up never allocates
+    private static final String[] CODES = new String[COUNT];
+
+    static {
+        for (int index = 0; index < COUNT; index++) {
+            CODES[index] = new String(new char[]{(char) ('A' + index / 26), (char) ('A' + index % 26)}).intern();
+        }
+    }
+
+    private CountryCodes() {
+    }
+
+    /**
+     * @param isoCode upper case two letter code
+     * @return index in [0, {@link #COUNT}), or {@link #NONE} if the code is missing or malformed
+     */
+    public static int index(String isoCode) {
+        if (isoCode == null || isoCode.length() != 2) {
+            return NONE;
+        }
+        final int first = isoCode.charAt(0) - 'A';
+        final int second = isoCode.charAt(1) - 'A';
+        if (first < 0 || first >= 26 || second < 0 || second >= 26) {
+            return NONE;
+        }
+        return first * 26 + second;
+    }
+
+    /**
+     * @param index index in [0, {@link #COUNT})
+     * @return the shared two letter code
+     */
+    public static String code(int index) {
+        return CODES[index];
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+/**
+ * Single pass parser for IPv4 and IPv6 literals embedded in forwarding headers.
+ * Parses straight into the address bytes without splitting, regex validation or name resolution;
+ * anything that is not a literal address is rejected instead of being looked up in DNS.
+ *
+ * @author phaneesh
+ */
+public final class IpAddressParser {
+
+    private IpAddressParser() {
+    }
+
+    /**
+     * Parses the first entry of a comma separated address list such as X-Forwarded-For.
+     *
+     * @return the address or null if the first entry is not a valid IP literal
+     */
+    public static InetAddress parseFirst(String value) {
+        if (value == null) {
+            return null;
+        }
+        int end = value.indexOf(',');
+        return parse(value, 0, end < 0 ? value.length() : end);
+    }
+
+    /**
+     * Parses {@code value[from, to)} ignoring surrounding whitespace. IPv6 zone ids are accepted and dropped.
+     *
+     * @return the address or null if the range is not a valid IP literal
+     */
+    public static InetAddress parse(String value, int from, int to) {
+        final byte[] bytes = parseBytes(value, from, to);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            //IPv4 mapped IPv6 addresses come back as Inet4Address, same as InetAddress.getByName
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 4 or 16 address bytes, or null if {@code value[from, to)} is not a valid IP literal
+     */
+    public static byte[] parseBytes(String value, int from, int to) {
+        final byte[] bytes = new byte[16];
+        final int length = parseInto(value, from, to, bytes);
+        return length == 0 ? null : length == 16 ? bytes : Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * Allocation free variant of {@link #parseBytes(String, int, int)} writing into a caller supplied buffer.
+     *
+     * @param out buffer of at least 16 bytes
+     * @return number of address bytes written (4 or 16), or 0 if {@code value[from, to)} is not a valid IP literal
+     */
+    public static int parseInto(String value, int from, int to, byte[] out) {
+        while (from < to && isWhitespace(value.charAt(from))) {
+            from++;
+        }
+        while (to > from && isWhitespace(value.charAt(to - 1))) {
+            to--;
+        }
+        if (from == to) {
+            return 0;
+        }
+        for (int i = from; i < to; i++) {
+            final char c = value.charAt(i);
+            if (c == ':') {
+                return parseIpv6(value, from, to, out) ? 16 : 0;
+            }
+            if (c == '.') {
+                return parseIpv4(value, from, to, out, 0) ? 4 : 0;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean parseIpv4(String value, int from, int to, byte[] bytes, int offset) {
+        int octets = 0;
+        int i = from;
+        while (octets < 4) {
+            final int start = i;
+            int octet = 0;
+            while (i < to && i - start < 3) {
+                final int digit = value.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                octet = octet * 10 + digit;
+                i++;
+            }
+            final int digits = i - start;
+            //Leading zeros are rejected as they are ambiguous (octal in some parsers)
+            if (digits == 0 || octet > 255 || (digits > 1 && value.charAt(start) == '0')) {
+                return false;
+            }
+            bytes[offset + octets++] = (byte) octet;
+            if (octets < 4) {
+                if (i >= to || value.charAt(i) != '.') {
+                    return false;
+                }
+                i++;
+            }
+        }
+        return i == to;
+    }
+
+    private static boolean parseIpv6(String value, int from, int to, byte[] bytes) {
+        final int zone = value.indexOf('%', from);
+        if (zone >= 0 && zone < to) {
+            if (zone == to - 1 || !isValidZone(value, zone + 1, to)) {
+                return false;
+            }
+            to = zone;
+        }
+        if (to - from < 2) {
+            return false;
+        }
+        int groups = 0;
+        int compressAt = -1;
+        int i = from;
+        if (value.charAt(i) == ':') {
+            if (value.charAt(i + 1) != ':') {
+                return false;
+            }
+            compressAt = 0;
+            i += 2;
+        }
+        while (i < to) {
+            if (groups == 8) {
+                return false;
+            }
+            final int start = i;
+            int group = 0;
+            while (i < to && i - start < 4) {
+                final int digit = hexDigit(value.charAt(i));
+                if (digit < 0) {
+                    break;
+                }
+                group = (group << 4) | digit;
+                i++;
+            }
+            if (i < to && value.charAt(i) == '.') {
+                //Embedded IPv4 tail, e.g. ::ffff:10.0.0.1
+                if (groups > 6 || !parseIpv4(value, start, to, bytes, groups * 2)) {
+                    return false;
+                }
+                groups += 2;
+                i = to;
+                break;
+            }
+            if (i == start) {
+                return false;
+            }
+            bytes[groups * 2] = (byte) (group >>> 8);
+            bytes[groups * 2 + 1] = (byte) group;
+            groups++;
+            if (i == to) {
+                break;
+            }
+            if (value.charAt(i) != ':') {
+                return false;
+            }
+            i++;
+            if (i < to && value.charAt(i) == ':') {
+                if (compressAt >= 0) {
+                    return false;
+                }
+                compressAt = groups;
+                i++;
+            } else if (i == to) {
+                //Trailing single colon
+                return false;
+            }
+        }
+        if (compressAt < 0) {
+            return groups == 8;
+        }
+        if (groups == 8) {
+            return false;
+        }
+        //Shift the groups after "::" to the end and zero fill the gap
+        final int tail = (groups - compressAt) * 2;
+        System.arraycopy(bytes, compressAt * 2, bytes, 16 - tail, tail);
+        for (int b = compressAt * 2; b < 16 - tail; b++) {
+            bytes[b] = 0;
+        }
+        return true;
+    }
+
+    private static boolean isValidZone(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            final char c = value.charAt(i);
+            if (isWhitespace(c) || c == '/' || c == '%') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //ASCII only; Character.digit would also accept other Unicode digits
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.util;
+
+import java.net.InetAddress;
+
+/**
+ * Special purpose address ranges (RFC 6890 and friends) that are never routed on the public internet and so never
+ * have a record in the GeoIP databases: private, loopback, link local, CGNAT, documentation, multicast and reserved.
+ *
+ * @author phaneesh
+ */
+public final class ReservedNetworks {
+
+    private static final CidrTrie NETWORKS = new CidrTrie()
+            .add("0.0.0.0/8")
+            .add("10.0.0.0/8")
+            .add("100.64.0.0/10")
+            .add("127.0.0.0/8")
+            .add("169.254.0.0/16")
+            .add("172.16.0.0/12")
+            .add("192.0.0.0/24")
+            .add("192.0.2.0/24")
+            .add("192.168.0.0/16")
+            .add("198.18.0.0/15")
+            .add("198.51.100.0/24")
+            .add("203.0.113.0/24")
+            .add("224.0.0.0/4")
+            .add("240.0.0.0/4")
+            .add("::/128")
+            .add("::1/128")
+            .add("100::/64")
+            .add("2001:db8::/32")
+            .add("fc00::/7")
+            .add("fe80::/10")
+            .add("ff00::/8");
+
+    private ReservedNetworks() {
+    }
+
+    public static boolean contains(InetAddress address) {
+        final byte[] bytes = address.getAddress();
+        return NETWORKS.contains(bytes, bytes.length);
+    }
+}
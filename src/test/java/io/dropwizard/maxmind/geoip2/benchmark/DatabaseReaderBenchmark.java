@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.benchmark;
+
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.model.AnonymousIpResponse;
+import com.maxmind.geoip2.model.CityResponse;
+import com.maxmind.geoip2.model.CountryResponse;
+import com.maxmind.geoip2.model.EnterpriseResponse;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw {@link DatabaseReader} lookups without a node cache, the floor every request pays on a result cache miss.
+ *
+ * @author phaneesh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseReaderBenchmark {
+
+    private static final int ADDRESSES = 1 << 12;
+
+    private DatabaseReader country;
+
+    private DatabaseReader city;
+
+    private DatabaseReader enterprise;
+
+    private DatabaseReader anonymous;
+
+    private InetAddress[] addresses;
+
+    private InetAddress[] anonymousAddresses;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        country = new DatabaseReader.Builder(SyntheticDatabases.shared(SyntheticDatabases.COUNTRY)).build();
+        city = new DatabaseReader.Builder(SyntheticDatabases.shared(SyntheticDatabases.CITY)).build();
+        enterprise = new DatabaseReader.Builder(SyntheticDatabases.shared(SyntheticDatabases.ENTERPRISE)).build();
+        anonymous = new DatabaseReader.Builder(SyntheticDatabases.shared(SyntheticDatabases.ANONYMOUS)).build();
+        final Random random = new Random(42);
+        final List<SyntheticDatabases.Block> blocks = SyntheticDatabases.blocks();
+        final List<SyntheticDatabases.Block> anonymousBlocks = new ArrayList<>();
+        for (SyntheticDatabases.Block block : blocks) {
+            if (block.anonymous) {
+                anonymousBlocks.add(block);
+            }
+        }
+        addresses = new InetAddress[ADDRESSES];
+        anonymousAddresses = new InetAddress[ADDRESSES];
+        for (int i = 0; i < ADDRESSES; i++) {
+            addresses[i] = blocks.get(random.nextInt(blocks.size())).randomAddress(random);
+            anonymousAddresses[i] = anonymousBlocks.get(random.nextInt(anonymousBlocks.size())).randomAddress(random);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        country.close();
+        city.close();
+        enterprise.close();
+        anonymous.close();
+    }
+
+    @Benchmark
+    public Optional<CountryResponse> country(Cursor cursor) throws Exception {
+        return country.tryCountry(addresses[cursor.next++ & (ADDRESSES - 1)]);
+    }
+
+    @Benchmark
+    public Optional<CityResponse> city(Cursor cursor) throws Exception {
+        return city.tryCity(addresses[cursor.next++ & (ADDRESSES - 1)]);
+    }
+
+    @Benchmark
+    public Optional<EnterpriseResponse> enterprise(Cursor cursor) throws Exception {
+        return enterprise.tryEnterprise(addresses[cursor.next++ & (ADDRESSES - 1)]);
+    }
+
+    @Benchmark
+    public Optional<AnonymousIpResponse> anonymous(Cursor cursor) throws Exception {
+        return anonymous.tryAnonymousIp(anonymousAddresses[cursor.next++ & (ADDRESSES - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<EnterpriseResponse> enterpriseContended(Cursor cursor) throws Exception {
+        return enterprise.tryEnterprise(addresses[cursor.next++ & (ADDRESSES - 1)]);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindInfo;
+import io.dropwizard.maxmind.geoip2.core.MaxMindProperties;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+import io.dropwizard.maxmind.geoip2.provider.MaxMindInfoProvider;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MaxMindInfoProvider#createMaxMindInfo} for a result attached by the filter, a lazily captured address
+ * (resolved from a hot result cache) and headers stamped by an upstream proxy.
+ *
+ * @author phaneesh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MaxMindInfoProviderBenchmark {
+
+    @Param({"attached", "lazy", "headers"})
+    public String source;
+
+    private Map<DatabaseType, MaxMindDatabase> databases;
+
+    private MaxMindInfoProvider provider;
+
+    private ContainerRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        final MaxMindConfig config = MaxMindConfig.builder()
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.CITY,
+                        SyntheticDatabases.shared(SyntheticDatabases.CITY).getPath())))
+                .build();
+        databases = MaxMindResolver.open(config);
+        final MaxMindResolver resolver = new MaxMindResolver(config, databases,
+                new MaxMindMetrics(new MetricRegistry()));
+        provider = new MaxMindInfoProvider(null, resolver);
+        request = new ContainerRequest(URI.create("http://localhost/"), URI.create("http://localhost/geo"), "GET",
+                null, new MapPropertiesDelegate(), null);
+        final InetAddress address = SyntheticDatabases.blocks().get(0).randomAddress(new Random(3));
+        final MaxMindResult result = resolver.resolve(address);
+        switch (source) {
+            case "attached":
+                request.setProperty(MaxMindProperties.RESULT, result);
+                break;
+            case "lazy":
+                request.setProperty(MaxMindProperties.CLIENT_ADDRESS, address);
+                break;
+            default:
+                result.stamp(request.getHeaders());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        for (MaxMindDatabase database : databases.values()) {
+            database.stop();
+        }
+    }
+
+    @Benchmark
+    public MaxMindInfo createMaxMindInfo() {
+        if ("lazy".equals(source)) {
+            //Every request starts unresolved
+            request.removeProperty(MaxMindProperties.RESULT);
+        }
+        return provider.createMaxMindInfo(request);
+    }
+}
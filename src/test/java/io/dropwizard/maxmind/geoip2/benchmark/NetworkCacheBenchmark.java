@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.benchmark;
+
+import io.dropwizard.maxmind.geoip2.cache.NetworkCache;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit rate of the result cache keyed per address against keyed per network, on mobile / CGNAT like traffic: a few
+ * hot networks with clients rotating through their whole range. Compare {@code hits} with {@code misses} per mode;
+ * the cache is bounded well below the number of distinct addresses, as in production.
+ *
+ * @author phaneesh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NetworkCacheBenchmark {
+
+    private static final int ADDRESSES = 1 << 18;
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    @Param({"address", "network"})
+    public String keying;
+
+    private NetworkCache<Boolean> cache;
+
+    private InetAddress[] addresses;
+
+    private int[] prefixLengths;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+
+        public long hits;
+
+        public long misses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        cache = new NetworkCache<>(MAX_ENTRIES, 3600);
+        final Random random = new Random(42);
+        final List<SyntheticDatabases.Block> blocks = SyntheticDatabases.blocks();
+        addresses = new InetAddress[ADDRESSES];
+        prefixLengths = new int[ADDRESSES];
+        for (int i = 0; i < ADDRESSES; i++) {
+            //Heavily skewed towards the first networks, each client anywhere in its network's range
+            final SyntheticDatabases.Block block = blocks.get((int) (blocks.size() * Math.pow(random.nextDouble(), 4)));
+            addresses[i] = block.randomAddress(random);
+            prefixLengths[i] = "network".equals(keying) ? block.prefixLength : 128;
+        }
+    }
+
+    @Benchmark
+    public Boolean lookup(Cursor cursor, Counters counters) {
+        final int i = cursor.next++ & (ADDRESSES - 1);
+        final Boolean cached = cache.get(addresses[i]);
+        if (cached != null) {
+            counters.hits++;
+            return cached;
+        }
+        counters.misses++;
+        cache.put(addresses[i], prefixLengths[i], Boolean.TRUE);
+        return Boolean.TRUE;
+    }
+}
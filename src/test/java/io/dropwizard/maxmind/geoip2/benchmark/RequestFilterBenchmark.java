@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindProperties;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.filter.MaxMindGeoIpRequestFilter;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+import io.dropwizard.maxmind.geoip2.testing.StubRequestContext;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MaxMindGeoIpRequestFilter#filter} end to end on an enterprise plus anonymous IP deployment: header parsing,
+ * caches, lookups, result building and header stamping. A hot run cycles through a few hundred clients with the
+ * caches enabled; a cold run spreads over many networks with the caches disabled, so every request is looked up.
+ *
+ * @author phaneesh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestFilterBenchmark {
+
+    @Param({"hot", "cold"})
+    public String cache;
+
+    private MaxMindConfig config;
+
+    private Map<DatabaseType, MaxMindDatabase> databases;
+
+    private MaxMindGeoIpRequestFilter filter;
+
+    private String[] headers;
+
+    private int mask;
+
+    @State(Scope.Thread)
+    public static class Request {
+
+        private final StubRequestContext context = new StubRequestContext();
+
+        private int next;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        final boolean hot = "hot".equals(cache);
+        config = MaxMindConfig.builder()
+                .databases(Arrays.asList(
+                        new DatabaseConfig(DatabaseType.ENTERPRISE,
+                                SyntheticDatabases.shared(SyntheticDatabases.ENTERPRISE).getPath()),
+                        new DatabaseConfig(DatabaseType.ANONYMOUS,
+                                SyntheticDatabases.shared(SyntheticDatabases.ANONYMOUS).getPath())))
+                .cacheMaxEntries(hot ? 100_000 : 0)
+                .negativeCacheMaxEntries(hot ? 10_000 : 0)
+                .build();
+        databases = MaxMindResolver.open(config);
+        filter = new MaxMindGeoIpRequestFilter(config,
+                new MaxMindResolver(config, databases, new MaxMindMetrics(new MetricRegistry())));
+        headers = headers(hot ? 256 : 1 << 16);
+        mask = headers.length - 1;
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        for (MaxMindDatabase database : databases.values()) {
+            database.stop();
+        }
+    }
+
+    @Benchmark
+    public Object filter(Request request) {
+        return run(request);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object filterContended(Request request) {
+        return run(request);
+    }
+
+    private Object run(Request request) {
+        final StubRequestContext context = request.context.reset()
+                .header(config.getRemoteIpHeader(), headers[request.next++ & mask]);
+        filter.filter(context);
+        return context.getProperty(MaxMindProperties.RESULT);
+    }
+
+    /**
+     * X-Forwarded-For values of clients behind one or two proxies.
+     */
+    static String[] headers(int count) {
+        final Random random = new Random(7);
+        final List<SyntheticDatabases.Block> blocks = SyntheticDatabases.blocks();
+        final String[] headers = new String[count];
+        for (int i = 0; i < count; i++) {
+            final String client = blocks.get(random.nextInt(blocks.size())).randomAddress(random).getHostAddress();
+            headers[i] = random.nextBoolean() ? client + ", 10.0.0.1" : client + ", 10.0.0.1, 10.0.0.2";
+        }
+        return headers;
+    }
+}
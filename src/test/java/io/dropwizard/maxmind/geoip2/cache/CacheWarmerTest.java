@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.cache;
+
+import com.codahale.metrics.MetricRegistry;
+import com.maxmind.db.Network;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+import io.dropwizard.maxmind.geoip2.testing.MmdbWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class CacheWarmerTest {
+
+    private static final int NETWORKS = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Map<DatabaseType, MaxMindDatabase> databases;
+
+    private MaxMindResolver resolver;
+
+    private File snapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        final File country = folder.newFile("GeoIP2-Country.mmdb");
+        final MmdbWriter writer = new MmdbWriter("GeoIP2-Country");
+        final Map<String, Object> countryRecord = new LinkedHashMap<>();
+        countryRecord.put("iso_code", "DE");
+        countryRecord.put("names", Collections.singletonMap("en", "Germany"));
+        for (int i = 1; i <= NETWORKS; i++) {
+            writer.insert(InetAddress.getByName((20 + i) + ".0.0.0"), 16, Collections.singletonMap("country", countryRecord));
+        }
+        writer.write(country);
+        final MaxMindConfig config = MaxMindConfig.builder()
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.COUNTRY, country.getPath())))
+                .build();
+        databases = MaxMindResolver.open(config);
+        resolver = new MaxMindResolver(config, databases, new MaxMindMetrics(new MetricRegistry()));
+        snapshot = new File(folder.getRoot(), "snapshot.bin");
+        final List<Network> networks = new ArrayList<>();
+        for (int i = 1; i <= NETWORKS; i++) {
+            networks.add(new Network(InetAddress.getByName((20 + i) + ".0.0.0"), 16));
+        }
+        new CacheWarmer(resolver, snapshot, 1000).write(networks);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        resolver.stop();
+        for (MaxMindDatabase database : databases.values()) {
+            database.stop();
+        }
+    }
+
+    @Test
+    public void replaysTheSnapshot() throws Exception {
+        final CacheWarmer warmer = new CacheWarmer(resolver, snapshot, 1000);
+        warmer.replay();
+        assertTrue(warmer.isWarmedUp());
+        assertEquals(NETWORKS, warmer.getReplayed());
+        assertEquals(NETWORKS, resolver.getResultCache().size());
+        resolver.getResultCache().invalidateAll();
+        resolver.resolve(InetAddress.getByName("21.0.0.1"));
+        warmer.stop();
+        //Replayed in full, so the new working set replaces it
+        assertEquals(1, count(snapshot));
+    }
+
+    @Test
+    public void keepsTheSnapshotWhenStoppedDuringReplay() throws Exception {
+        final CacheWarmer warmer = new CacheWarmer(resolver, snapshot, 1000);
+        Thread.currentThread().interrupt();
+        try {
+            warmer.replay();
+        } finally {
+            Thread.interrupted();
+        }
+        assertTrue(warmer.isWarmedUp());
+        assertTrue(warmer.getReplayed() < NETWORKS);
+        warmer.stop();
+        assertEquals(NETWORKS, count(snapshot));
+    }
+
+    @Test
+    public void replacesAnUnfinishedSnapshotWithALargerOne() throws Exception {
+        final CacheWarmer warmer = new CacheWarmer(resolver, snapshot, 1000);
+        warmer.write(Collections.singletonList(new Network(InetAddress.getByName("21.0.0.0"), 16)));
+        Thread.currentThread().interrupt();
+        try {
+            warmer.replay();
+        } finally {
+            Thread.interrupted();
+        }
+        for (int i = 1; i <= NETWORKS; i++) {
+            resolver.resolve(InetAddress.getByName((20 + i) + ".0.0.1"));
+        }
+        warmer.stop();
+        assertEquals(NETWORKS, count(snapshot));
+    }
+
+    private static int count(File snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(snapshot.toPath()))) {
+            in.readInt();
+            in.readInt();
+            return in.readInt();
+        }
+    }
+}
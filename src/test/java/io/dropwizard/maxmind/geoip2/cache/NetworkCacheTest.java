@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.cache;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author phaneesh
+ */
+public class NetworkCacheTest {
+
+    @Test
+    public void servesEveryAddressOfTheNetwork() throws Exception {
+        final NetworkCache<String> cache = new NetworkCache<>(100, 60);
+        cache.put(InetAddress.getByName("81.2.69.160"), 24, "a");
+        assertEquals("a", cache.get(InetAddress.getByName("81.2.69.1")));
+        assertEquals("a", cache.get(InetAddress.getByName("81.2.69.255")));
+        assertNull(cache.get(InetAddress.getByName("81.2.70.1")));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void prefersTheLongestPrefix() throws Exception {
+        final NetworkCache<String> cache = new NetworkCache<>(100, 60);
+        cache.put(InetAddress.getByName("10.0.0.0"), 8, "wide");
+        cache.put(InetAddress.getByName("10.1.2.0"), 24, "narrow");
+        cache.put(InetAddress.getByName("10.1.2.3"), 64, "address");
+        assertEquals("address", cache.get(InetAddress.getByName("10.1.2.3")));
+        assertEquals("narrow", cache.get(InetAddress.getByName("10.1.2.4")));
+        assertEquals("wide", cache.get(InetAddress.getByName("10.200.2.4")));
+    }
+
+    @Test
+    public void keepsAddressFamiliesApart() throws Exception {
+        final NetworkCache<String> cache = new NetworkCache<>(100, 60);
+        cache.put(InetAddress.getByName("0.0.0.0"), 0, "v4");
+        cache.put(InetAddress.getByName("2001:db8::"), 32, "v6");
+        assertEquals("v4", cache.get(InetAddress.getByName("1.2.3.4")));
+        assertEquals("v6", cache.get(InetAddress.getByName("2001:db8:ffff::1")));
+        assertNull(cache.get(InetAddress.getByName("::1.2.3.4")));
+        assertNull(cache.get(InetAddress.getByName("2001:db9::1")));
+    }
+
+    @Test
+    public void matchesAcrossTheWordBoundary() throws Exception {
+        final NetworkCache<String> cache = new NetworkCache<>(100, 60);
+        cache.put(InetAddress.getByName("2001:db8:1:2:8000::"), 65, "v6");
+        assertEquals("v6", cache.get(InetAddress.getByName("2001:db8:1:2:ffff::1")));
+        assertNull(cache.get(InetAddress.getByName("2001:db8:1:2:7fff::1")));
+        assertEquals(1, cache.networks(10).size());
+        assertEquals(65, cache.networks(10).get(0).getPrefixLength());
+    }
+
+    @Test
+    public void invalidatesEverything() throws Exception {
+        final NetworkCache<String> cache = new NetworkCache<>(100, 60);
+        cache.put(InetAddress.getByName("81.2.69.0"), 24, "a");
+        cache.invalidateAll();
+        assertNull(cache.get(InetAddress.getByName("81.2.69.1")));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void disabledCacheStoresNothing() throws Exception {
+        final NetworkCache<String> cache = new NetworkCache<>(0, 60);
+        assertFalse(cache.isEnabled());
+        cache.put(InetAddress.getByName("81.2.69.0"), 24, "a");
+        assertNull(cache.get(InetAddress.getByName("81.2.69.1")));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.config;
+
+import io.dropwizard.validation.BaseValidator;
+import org.junit.Test;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class MaxMindConfigTest {
+
+    private final Validator validator = BaseValidator.newValidator();
+
+    @Test
+    public void acceptsMinimalConfig() {
+        assertTrue(validator.validate(config().build()).isEmpty());
+    }
+
+    @Test
+    public void rejectsLazyWithoutMaxMindContext() {
+        final Set<ConstraintViolation<MaxMindConfig>> violations = validator.validate(config().lazy(true).build());
+        assertEquals(1, violations.size());
+        assertEquals("lazyResolvable", violations.iterator().next().getPropertyPath().toString());
+        assertTrue(validator.validate(config().lazy(true).maxMindContext(true).build()).isEmpty());
+    }
+
+    @Test
+    public void rejectsGateListsNothingResolves() {
+        final GateConfig asns = GateConfig.builder().denyAsns(Collections.singletonList(64496L)).build();
+        assertEquals(Collections.singleton("gateResolvable"), properties(config().gate(asns).build()));
+        assertTrue(validator.validate(config().gate(asns).databases(Arrays.asList(
+                new DatabaseConfig(DatabaseType.CITY, "/tmp/GeoIP2-City.mmdb"),
+                new DatabaseConfig(DatabaseType.ASN, "/tmp/GeoLite2-ASN.mmdb")))
+                .build()).isEmpty());
+
+        final GateConfig tor = GateConfig.builder().denyTor(true).build();
+        assertEquals(Collections.singleton("gateResolvable"), properties(config().gate(tor).build()));
+    }
+
+    @Test
+    public void rejectsGateListsWhoseFieldsAreNotSelected() {
+        final GateConfig countries = GateConfig.builder().allowCountries(Collections.singletonList("US")).build();
+        assertTrue(validator.validate(config().gate(countries).build()).isEmpty());
+        assertEquals(Collections.singleton("gateResolvable"),
+                properties(config().gate(countries).fields(Collections.singletonList(GeoField.CITY)).build()));
+        assertTrue(validator.validate(config().gate(countries).fields(Collections.singletonList(GeoField.COUNTRY_ISO)).build())
+                .isEmpty());
+    }
+
+    @Test
+    public void rejectsTrafficStatsWithoutCountries() {
+        assertTrue(validator.validate(config().trafficStats(true).build()).isEmpty());
+        assertEquals(Collections.singleton("trafficStatsResolvable"), properties(config().trafficStats(true)
+                .fields(Collections.singletonList(GeoField.ASN)).build()));
+        assertEquals(Collections.singleton("trafficStatsResolvable"), properties(MaxMindConfig.builder()
+                .trafficStats(true)
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.ASN, "/tmp/GeoLite2-ASN.mmdb")))
+                .build()));
+    }
+
+    private Set<String> properties(MaxMindConfig config) {
+        final Set<String> properties = new HashSet<>();
+        for (ConstraintViolation<MaxMindConfig> violation : validator.validate(config)) {
+            properties.add(violation.getPropertyPath().toString());
+        }
+        return properties;
+    }
+
+    static MaxMindConfig.MaxMindConfigBuilder config() {
+        return MaxMindConfig.builder().databaseFilePath("/tmp/GeoIP2-City.mmdb").type("city");
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.maxmind.geoip2.util.CountryCodes;
+import org.junit.Test;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class MaxMindInfoTest {
+
+    @Test
+    public void keepsUnrecognisedValues() {
+        final MaxMindInfo info = MaxMindInfo.builder()
+                .countryIso("XK1")
+                .connectionType("Cable/DSL")
+                .userType("satellite_operator")
+                .build();
+        assertEquals("XK1", info.getCountryIso());
+        assertEquals("Cable/DSL", info.getConnectionType());
+        assertEquals("satellite_operator", info.getUserType());
+        assertNull(info.getConnectionTypeValue());
+        assertNull(info.getUserTypeValue());
+        assertSame(info, info.toBuilder().build());
+        assertNotEquals(info, info.toBuilder().connectionType("Dialup").build());
+    }
+
+    @Test
+    public void mapsRecognisedAndMissingValues() {
+        final MaxMindInfo info = MaxMindInfo.builder()
+                .countryIso("IN")
+                .connectionType("CELLULAR")
+                .userType("residential")
+                .build();
+        assertEquals("IN", info.getCountryIso());
+        assertEquals(MaxMindConnectionType.CELLULAR, info.getConnectionTypeValue());
+        assertEquals(MaxMindUserType.RESIDENTIAL, info.getUserTypeValue());
+
+        final MaxMindInfo empty = MaxMindInfo.builder().countryIso("").build();
+        assertEquals(MaxMindInfo.UNKNOWN, empty.getCountryIso());
+        assertEquals(MaxMindInfo.UNKNOWN, empty.getConnectionType());
+        assertEquals(MaxMindInfo.UNKNOWN, empty.getUserType());
+        assertSame(empty, MaxMindInfo.builder().countryIso(MaxMindInfo.UNKNOWN).build());
+    }
+
+    @Test
+    public void roundTripsThroughJson() throws Exception {
+        final ObjectMapper mapper = Jackson.newObjectMapper();
+        final MaxMindInfo info = MaxMindInfo.builder()
+                .countryIso("XK1")
+                .country("Kosovo")
+                .connectionType("Cable/DSL")
+                .userType("business")
+                .anonymousVpn(true)
+                .latitude(42.6)
+                .build();
+        assertSame(info, mapper.readValue(mapper.writeValueAsString(info), MaxMindInfo.class));
+    }
+
+    @Test
+    public void footprint() {
+        final long instance = ClassLayout.parseClass(MaxMindInfo.class).instanceSize();
+        assertTrue("instance size " + instance, instance <= 80);
+
+        //Resolutions of the same data share one instance and its names, however many there are
+        final List<MaxMindInfo> resolutions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            resolutions.add(MaxMindInfo.builder()
+                    .countryIso("IN")
+                    .country(new String("India"))
+                    .city(new String("Bengaluru"))
+                    .isp(new String("Example Telecom"))
+                    .connectionType(new String("Cable/DSL"))
+                    .userType("residential")
+                    .build());
+        }
+        final long single = GraphLayout.parseInstance(resolutions.get(0)).totalSize();
+        assertEquals(single, GraphLayout.parseInstance(resolutions.toArray()).totalSize());
+    }
+
+    @Test
+    public void sharesCountryCodes() {
+        final int index = CountryCodes.index("IN");
+        assertSame(CountryCodes.code(index), CountryCodes.code(index));
+        assertEquals("IN", CountryCodes.code(index));
+        assertEquals("AA", CountryCodes.code(0));
+        assertEquals("ZZ", CountryCodes.code(CountryCodes.COUNT - 1));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void keepsAllArgsConstructor() {
+        final MaxMindInfo info = new MaxMindInfo(false, true, false, "Bengaluru", "Karnataka", "KA",
+                "India", "IN", "560001", "residential", "Cable/DSL", "Example Telecom", 12.97, 77.59, 5);
+        assertEquals(MaxMindInfo.builder()
+                .anonymousVpn(true)
+                .city("Bengaluru")
+                .state("Karnataka")
+                .stateIso("KA")
+                .country("India")
+                .countryIso("IN")
+                .postal("560001")
+                .userType("residential")
+                .connectionType("Cable/DSL")
+                .isp("Example Telecom")
+                .latitude(12.97)
+                .longitude(77.59)
+                .accuracy(5)
+                .build(), info);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.core;
+
+import org.junit.Test;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ANONYMOUS_IP;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ASN;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_CITY;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_COUNTRY_ISO;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_LATITUDE;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_LOCATION_ACCURACY;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_TOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class MaxMindResultTest {
+
+    @Test
+    public void fillsTypedFieldsWithoutHeaders() {
+        final MaxMindResult result = typed(false);
+        final MaxMindInfo info = result.getInfo();
+        assertEquals("IN", info.getCountryIso());
+        assertEquals("Bengaluru", info.getCity());
+        assertEquals(12.97, info.getLatitude(), 0);
+        assertEquals(20, info.getAccuracy());
+        assertTrue(info.isAnonymousIp());
+        assertEquals(24560, result.getAsn());
+        //Header values are rendered on demand when they were not rendered at build
+        assertEquals("IN", result.get(X_COUNTRY_ISO));
+        assertEquals("12.97", result.get(X_LATITUDE));
+        assertEquals("20", result.get(X_LOCATION_ACCURACY));
+        assertEquals("24560", result.get(X_ASN));
+        assertEquals("true", result.get(X_ANONYMOUS_IP));
+        assertNull(result.get(X_TOR));
+    }
+
+    @Test
+    public void rendersTheSameHeadersEitherWay() {
+        final MultivaluedMap<String, String> rendered = new MultivaluedHashMap<>();
+        typed(true).stamp(rendered);
+        final MultivaluedMap<String, String> onDemand = new MultivaluedHashMap<>();
+        typed(false).stamp(onDemand);
+        assertEquals(rendered, onDemand);
+        assertEquals(6, rendered.size());
+        assertEquals(typed(true), typed(false));
+    }
+
+    @Test
+    public void parsesHeaderValues() {
+        final MaxMindResult result = MaxMindResult.builder()
+                .put(X_COUNTRY_ISO, "IN")
+                .put(X_CITY, "Bengaluru")
+                .put(X_LATITUDE, "12.97")
+                .put(X_LOCATION_ACCURACY, "20")
+                .put(X_ASN, "24560")
+                .put(X_ANONYMOUS_IP, "true")
+                .build();
+        assertEquals(typed(false), result);
+        final MaxMindResult.Builder copy = MaxMindResult.builder();
+        result.copyTo(copy);
+        assertEquals(result, copy.build());
+    }
+
+    @Test
+    public void emptyResult() {
+        assertSame(MaxMindResult.EMPTY, MaxMindResult.builder().build());
+        assertTrue(MaxMindResult.EMPTY.isEmpty());
+        assertFalse(typed(false).isEmpty());
+        assertEquals(-1, MaxMindResult.EMPTY.getAsn());
+        assertEquals(MaxMindInfo.UNKNOWN, MaxMindResult.EMPTY.getInfo().getCountryIso());
+    }
+
+    private static MaxMindResult typed(boolean headers) {
+        return MaxMindResult.builder()
+                .headers(headers)
+                .countryIso("IN")
+                .city("Bengaluru")
+                .latitude(12.97)
+                .accuracy(20)
+                .asn(24560)
+                .anonymousIp(true)
+                .build();
+    }
+}
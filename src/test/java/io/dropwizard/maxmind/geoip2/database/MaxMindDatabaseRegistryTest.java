@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.database;
+
+import com.maxmind.db.Reader;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.filter.MaxMindGeoIpRequestFilter;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.testing.MmdbWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class MaxMindDatabaseRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MaxMindDatabaseRegistry registry = new MaxMindDatabaseRegistry();
+
+    @Test
+    public void sharesOpenDatabases() throws Exception {
+        final File file = database("GeoIP2-Country.mmdb");
+        final MaxMindDatabase first = registry.acquire(file, Reader.FileMode.MEMORY_MAPPED, false, 0);
+        final MaxMindDatabase second = registry.acquire(file, Reader.FileMode.MEMORY_MAPPED, false, 0);
+        assertSame(first, second);
+        assertEquals(1, registry.size());
+        registry.release(first);
+        assertTrue(first.isLoaded());
+        registry.release(second);
+        assertFalse(first.isLoaded());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void doesNotShareDatabasesThatFailedToOpen() throws Exception {
+        final File file = new File(folder.getRoot(), "GeoIP2-Country.mmdb");
+        final MaxMindDatabase broken = registry.acquire(file, Reader.FileMode.MEMORY_MAPPED, false, 0);
+        assertFalse(broken.isLoaded());
+        assertEquals(0, registry.size());
+
+        //The next consumer retries rather than inheriting the failure
+        database(file.getName());
+        final MaxMindDatabase loaded = registry.acquire(file, Reader.FileMode.MEMORY_MAPPED, false, 0);
+        assertNotSame(broken, loaded);
+        assertTrue(loaded.isLoaded());
+        assertEquals(1, registry.size());
+
+        registry.release(broken);
+        assertEquals(1, registry.size());
+        registry.release(loaded);
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void resolverReleasesItsLeaseWhenClosed() throws Exception {
+        final File file = database("GeoIP2-Country.mmdb");
+        final MaxMindConfig config = MaxMindConfig.builder()
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.COUNTRY, file.getPath())))
+                .build();
+        final int shared = MaxMindDatabaseRegistry.shared().size();
+        final MaxMindDatabase database;
+        try (MaxMindResolver resolver = new MaxMindResolver(config)) {
+            assertEquals(shared + 1, MaxMindDatabaseRegistry.shared().size());
+            database = resolver.getDatabases().get(DatabaseType.COUNTRY);
+            assertTrue(database.isLoaded());
+        }
+        assertEquals(shared, MaxMindDatabaseRegistry.shared().size());
+        assertFalse(database.isLoaded());
+    }
+
+    @Test
+    public void filterReleasesItsLeaseWhenClosed() throws Exception {
+        final File file = database("GeoIP2-Country.mmdb");
+        final MaxMindConfig config = MaxMindConfig.builder()
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.COUNTRY, file.getPath())))
+                .databaseReloadInterval(60)
+                .build();
+        final int shared = MaxMindDatabaseRegistry.shared().size();
+        final MaxMindDatabase database;
+        try (MaxMindGeoIpRequestFilter filter = new MaxMindGeoIpRequestFilter(config)) {
+            assertEquals(shared + 1, MaxMindDatabaseRegistry.shared().size());
+            database = filter.getResolver().getDatabases().get(DatabaseType.COUNTRY);
+            assertTrue(database.isLoaded());
+        }
+        assertEquals(shared, MaxMindDatabaseRegistry.shared().size());
+        assertFalse(database.isLoaded());
+
+        //A resolver passed in stays with its owner
+        try (MaxMindResolver resolver = new MaxMindResolver(config)) {
+            new MaxMindGeoIpRequestFilter(config, resolver).close();
+            assertTrue(resolver.getDatabases().get(DatabaseType.COUNTRY).isLoaded());
+        }
+    }
+
+    private File database(String name) throws Exception {
+        final File file = new File(folder.getRoot(), name);
+        new MmdbWriter("GeoIP2-Country")
+                .insert(InetAddress.getByName("1.0.0.0"), 16, Collections.singletonMap("country",
+                        Collections.singletonMap("iso_code", "DE")))
+                .write(file);
+        return file;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.database;
+
+import com.maxmind.db.ClosedDatabaseException;
+import com.maxmind.db.Reader;
+import io.dropwizard.maxmind.geoip2.testing.MmdbWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author phaneesh
+ */
+public class MaxMindDatabaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsLeasedReaderUsableAcrossReload() throws Exception {
+        final File file = new File(folder.getRoot(), "GeoIP2-Country.mmdb");
+        write(file, "DE");
+        final MaxMindDatabase database = new MaxMindDatabase(file, Reader.FileMode.MEMORY_MAPPED, false, 0);
+        final MaxMindDatabase.Handle leased = database.acquire();
+        final InetAddress hit = InetAddress.getByName("1.0.1.1");
+        final InetAddress miss = InetAddress.getByName("1.2.0.1");
+        assertEquals("DE", country(leased, hit));
+
+        replace(file, "FR");
+        database.reloadIfChanged();
+        final MaxMindDatabase.Handle current = database.acquire();
+        assertNotSame(leased, current);
+        assertEquals("FR", country(current, hit));
+
+        //The replaced reader, and the networks it reports, stay usable until its last lease is released
+        assertEquals("DE", country(leased, hit));
+        assertEquals(15, leased.network(miss).getPrefixLength());
+        leased.release();
+        try {
+            leased.reader().country(hit);
+            fail("released reader is still open");
+        } catch (ClosedDatabaseException e) {
+            //expected
+        }
+        assertEquals("FR", country(current, hit));
+        current.release();
+        database.stop();
+    }
+
+    @Test
+    public void retriesReloadAfterFailedOpen() throws Exception {
+        final File file = new File(folder.getRoot(), "GeoIP2-Country.mmdb");
+        write(file, "DE");
+        final MaxMindDatabase database = new MaxMindDatabase(file, Reader.FileMode.MEMORY_MAPPED, false, 0);
+        final long modified = file.lastModified();
+        final MaxMindDatabase.Handle original = database.acquire();
+        original.release();
+
+        //A half written file fails to open and keeps the current reader
+        final File partial = folder.newFile();
+        Files.write(partial.toPath(), "not a database".getBytes(StandardCharsets.US_ASCII));
+        Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(file.setLastModified(modified + 2000));
+        database.reloadIfChanged();
+        final MaxMindDatabase.Handle unchanged = database.acquire();
+        assertSame(original, unchanged);
+        unchanged.release();
+
+        //Completing it with the same length and timestamp as the failed attempt is still picked up
+        final byte[] complete = bytes("FR");
+        final File rewritten = folder.newFile();
+        Files.write(rewritten.toPath(), complete);
+        Files.move(rewritten.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(file.setLastModified(modified + 2000));
+        database.reloadIfChanged();
+        final MaxMindDatabase.Handle reloaded = database.acquire();
+        assertEquals("FR", country(reloaded, InetAddress.getByName("1.0.1.1")));
+        reloaded.release();
+        database.stop();
+    }
+
+    @Test
+    public void readsNetworksFromHeapInMemoryMode() throws Exception {
+        final File file = new File(folder.getRoot(), "GeoIP2-Country.mmdb");
+        write(file, "DE");
+        final MaxMindDatabase database = new MaxMindDatabase(file, Reader.FileMode.MEMORY, false, 0);
+        //Nothing is mapped or reopened from the path once loaded
+        assertTrue(file.delete());
+        final MaxMindDatabase.Handle handle = database.acquire();
+        assertEquals(15, handle.network(InetAddress.getByName("1.2.0.1")).getPrefixLength());
+        assertEquals(16, handle.network(InetAddress.getByName("1.0.1.1")).getPrefixLength());
+        handle.release();
+        database.stop();
+    }
+
+    private static String country(MaxMindDatabase.Handle handle, InetAddress address) throws Exception {
+        return handle.reader().country(address).getCountry().getIsoCode();
+    }
+
+    private void replace(File file, String isoCode) throws Exception {
+        final File replacement = folder.newFile();
+        Files.write(replacement.toPath(), bytes(isoCode));
+        Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void write(File file, String isoCode) throws Exception {
+        Files.write(file.toPath(), bytes(isoCode));
+    }
+
+    private byte[] bytes(String isoCode) throws Exception {
+        final File file = folder.newFile();
+        new MmdbWriter("GeoIP2-Country")
+                .insert(InetAddress.getByName("1.0.0.0"), 16, Collections.singletonMap("country",
+                        Collections.singletonMap("iso_code", isoCode)))
+                .write(file);
+        return Files.readAllBytes(file.toPath());
+    }
+}
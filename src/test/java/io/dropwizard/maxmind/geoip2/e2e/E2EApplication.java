@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.e2e;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.Application;
+import io.dropwizard.Configuration;
+import io.dropwizard.jetty.HttpConnectorFactory;
+import io.dropwizard.logging.DefaultLoggingFactory;
+import io.dropwizard.maxmind.geoip2.MaxMindBundle;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindHeaders;
+import io.dropwizard.maxmind.geoip2.core.MaxMindInfo;
+import io.dropwizard.maxmind.geoip2.filter.MaxMindLookup;
+import io.dropwizard.maxmind.geoip2.provider.MaxMindContext;
+import io.dropwizard.request.logging.LogbackAccessRequestLogFactory;
+import io.dropwizard.server.DefaultServerFactory;
+import io.dropwizard.setup.Environment;
+
+import javax.validation.Valid;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import java.util.Collections;
+
+/**
+ * Minimal service for the end to end suite: one trivial resource, with the bundle run only when the configuration
+ * carries a {@link MaxMindConfig}, and a resource injecting {@link MaxMindInfo} when maxMindContext is on. With the
+ * bundle, resources opted in and out with {@link MaxMindLookup} echo the country header stamped on the request.
+ *
+ * @author phaneesh
+ */
+public class E2EApplication extends Application<E2EApplication.E2EConfiguration> {
+
+    public static final String PLAIN = "/plain";
+
+    public static final String CONTEXT = "/context";
+
+    //Echo the country header stamped on the request, or NONE
+    public static final String HEADERS = "/headers";
+
+    public static final String SKIPPED = "/skipped";
+
+    public static final String ANNOTATED = "/annotated";
+
+    public static final String NONE = "-";
+
+    private final MaxMindBundle<E2EConfiguration> bundle = new MaxMindBundle<E2EConfiguration>() {
+        @Override
+        public MaxMindConfig getMaxMindConfig(E2EConfiguration configuration) {
+            return configuration.getMaxmind();
+        }
+    };
+
+    @Override
+    public void run(E2EConfiguration configuration, Environment environment) {
+        environment.jersey().register(new PlainResource());
+        if (configuration.getMaxmind() != null) {
+            //Bundles are added before the configuration is known, so this one is run only when configured
+            bundle.run(configuration, environment);
+            environment.jersey().register(new HeadersResource());
+            environment.jersey().register(new SkippedResource());
+            environment.jersey().register(new AnnotatedResource());
+            if (configuration.getMaxmind().isMaxMindContext()) {
+                environment.jersey().register(new ContextResource());
+            }
+        }
+    }
+
+    /**
+     * @param maxmind bundle configuration, or null to run without the bundle
+     * @return a configuration on random ports without request or info logging
+     */
+    public static E2EConfiguration configuration(MaxMindConfig maxmind) {
+        final E2EConfiguration configuration = new E2EConfiguration();
+        configuration.setMaxmind(maxmind);
+        final DefaultServerFactory server = (DefaultServerFactory) configuration.getServerFactory();
+        ((HttpConnectorFactory) server.getApplicationConnectors().get(0)).setPort(0);
+        ((HttpConnectorFactory) server.getAdminConnectors().get(0)).setPort(0);
+        final LogbackAccessRequestLogFactory requestLog = new LogbackAccessRequestLogFactory();
+        requestLog.setAppenders(Collections.emptyList());
+        server.setRequestLogFactory(requestLog);
+        ((DefaultLoggingFactory) configuration.getLoggingFactory()).setLevel("WARN");
+        return configuration;
+    }
+
+    public static class E2EConfiguration extends Configuration {
+
+        @Valid
+        private MaxMindConfig maxmind;
+
+        @JsonProperty
+        public MaxMindConfig getMaxmind() {
+            return maxmind;
+        }
+
+        @JsonProperty
+        public void setMaxmind(MaxMindConfig maxmind) {
+            this.maxmind = maxmind;
+        }
+    }
+
+    @Path(PLAIN)
+    @Produces(MediaType.TEXT_PLAIN)
+    public static class PlainResource {
+
+        @GET
+        public String get() {
+            return "ok";
+        }
+    }
+
+    @Path(CONTEXT)
+    @Produces(MediaType.TEXT_PLAIN)
+    public static class ContextResource {
+
+        @GET
+        public String get(@MaxMindContext MaxMindInfo info) {
+            return info.getCountryIso();
+        }
+
+        //The headers are read after MaxMindInfo was injected
+        @GET
+        @Path("headers")
+        public String headers(@MaxMindContext MaxMindInfo info, @Context HttpHeaders headers) {
+            return info.getCountryIso() + " " + country(headers);
+        }
+    }
+
+    @Path(HEADERS)
+    @Produces(MediaType.TEXT_PLAIN)
+    public static class HeadersResource {
+
+        @GET
+        public String get(@Context HttpHeaders headers) {
+            return country(headers);
+        }
+    }
+
+    @Path(SKIPPED)
+    @Produces(MediaType.TEXT_PLAIN)
+    @MaxMindLookup(false)
+    public static class SkippedResource {
+
+        @GET
+        public String get(@Context HttpHeaders headers) {
+            return country(headers);
+        }
+
+        @GET
+        @Path("included")
+        @MaxMindLookup
+        public String included(@Context HttpHeaders headers) {
+            return country(headers);
+        }
+    }
+
+    @Path(ANNOTATED)
+    @Produces(MediaType.TEXT_PLAIN)
+    @MaxMindLookup
+    public static class AnnotatedResource {
+
+        @GET
+        public String get(@Context HttpHeaders headers) {
+            return country(headers);
+        }
+    }
+
+    private static String country(HttpHeaders headers) {
+        final String country = headers.getHeaderString(MaxMindHeaders.X_COUNTRY_ISO);
+        return country == null ? NONE : country;
+    }
+}
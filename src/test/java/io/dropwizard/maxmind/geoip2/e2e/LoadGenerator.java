@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.e2e;
+
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed loop load generator: each thread sends GET requests back to back over a keep-alive connection, replaying
+ * X-Forwarded-For values, and records latencies after the warm-up into its own {@link Histogram}. Being closed loop, a
+ * stalled response delays the requests behind it instead of queueing them, so tails are a lower bound.
+ *
+ * @author phaneesh
+ */
+public final class LoadGenerator {
+
+    private static final long MAX_LATENCY = TimeUnit.SECONDS.toNanos(60);
+
+    private final int threads;
+
+    public LoadGenerator(int threads) {
+        this.threads = threads;
+    }
+
+    public static final class Result {
+
+        public final long requests;
+
+        public final long errors;
+
+        public final double seconds;
+
+        //Nanoseconds
+        public final Histogram latency;
+
+        Result(long requests, long errors, double seconds, Histogram latency) {
+            this.requests = requests;
+            this.errors = errors;
+            this.seconds = seconds;
+            this.latency = latency;
+        }
+
+        public double throughput() {
+            return requests / seconds;
+        }
+
+        /**
+         * @return this and the other measurement combined, as if they were one window
+         */
+        public Result merge(Result other) {
+            final Histogram merged = latency.copy();
+            merged.add(other.latency);
+            return new Result(requests + other.requests, errors + other.errors, seconds + other.seconds, merged);
+        }
+    }
+
+    /**
+     * Sends requests for the warm-up, then records them for the measurement window.
+     */
+    public Result run(URL url, String header, String[] values, long warmupMillis, long measureMillis)
+            throws Exception {
+        final long warmupNanos = TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        final long measureNanos = TimeUnit.MILLISECONDS.toNanos(measureMillis);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final long start = System.nanoTime();
+        final long measureFrom = start + warmupNanos;
+        final long end = measureFrom + measureNanos;
+        try {
+            final List<Future<long[]>> futures = new ArrayList<>();
+            final List<Histogram> histograms = new ArrayList<>();
+            //Each run starts elsewhere in the replayed values
+            final int shift = ThreadLocalRandom.current().nextInt(values.length);
+            for (int t = 0; t < threads; t++) {
+                final Histogram histogram = new Histogram(MAX_LATENCY, 3);
+                final int offset = (shift + t * (values.length / threads)) % values.length;
+                histograms.add(histogram);
+                futures.add(executor.submit(() -> drive(url, header, values, offset, measureFrom, end, histogram)));
+            }
+            final Histogram latency = new Histogram(MAX_LATENCY, 3);
+            long errors = 0;
+            for (int t = 0; t < threads; t++) {
+                errors += futures.get(t).get()[0];
+                latency.add(histograms.get(t));
+            }
+            return new Result(latency.getTotalCount(), errors, measureNanos / 1e9, latency);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //Returns the failed requests inside the measurement window
+    private static long[] drive(URL url, String header, String[] values, int offset, long measureFrom, long end,
+                                Histogram histogram) {
+        final byte[] buffer = new byte[256];
+        long errors = 0;
+        for (int i = offset; ; i++) {
+            final long started = System.nanoTime();
+            if (started >= end) {
+                return new long[]{errors};
+            }
+            boolean ok;
+            try {
+                ok = get(url, header, values[i % values.length], buffer);
+            } catch (IOException e) {
+                ok = false;
+            }
+            final long finished = System.nanoTime();
+            if (started >= measureFrom && finished <= end) {
+                if (ok) {
+                    histogram.recordValue(Math.min(finished - started, MAX_LATENCY));
+                } else {
+                    errors++;
+                }
+            }
+        }
+    }
+
+    private static boolean get(URL url, String header, String value, byte[] buffer) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (value != null) {
+            connection.setRequestProperty(header, value);
+        }
+        final int status = connection.getResponseCode();
+        //Drain and close so the connection goes back to the keep-alive cache
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (body != null) {
+                while (body.read(buffer) >= 0) {
+                    //Discard
+                }
+            }
+        }
+        return status == 200;
+    }
+
+    /**
+     * X-Forwarded-For values of a public service: client popularity is heavily skewed, so a few networks send most
+     * requests over a long tail; most clients come through a private load balancer hop, some through a public CDN or
+     * proxy first, a few over IPv6, and a small share carry a private, malformed or no header (null).
+     */
+    public static String[] forwardedFor(int count, long seed) {
+        final Random random = new Random(seed);
+        final List<SyntheticDatabases.Block> blocks = SyntheticDatabases.blocks();
+        final List<SyntheticDatabases.Block> v4 = new ArrayList<>();
+        final List<SyntheticDatabases.Block> v6 = new ArrayList<>();
+        for (SyntheticDatabases.Block block : blocks) {
+            (block.network.getAddress().length == 4 ? v4 : v6).add(block);
+        }
+        //A fixed client population, drawn from with a power law so the first clients dominate
+        final String[] clients = new String[Math.max(1, count / 4)];
+        for (int i = 0; i < clients.length; i++) {
+            final List<SyntheticDatabases.Block> family = random.nextInt(100) < 5 && !v6.isEmpty() ? v6 : v4;
+            clients[i] = family.get(random.nextInt(family.size())).randomAddress(random).getHostAddress();
+        }
+        final String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            final String client = clients[(int) (clients.length * Math.pow(random.nextDouble(), 4))];
+            final int shape = random.nextInt(100);
+            if (shape < 60) {
+                values[i] = client + ", 10.0." + random.nextInt(4) + "." + (1 + random.nextInt(8));
+            } else if (shape < 80) {
+                values[i] = client;
+            } else if (shape < 95) {
+                final String proxy = v4.get(random.nextInt(v4.size())).randomAddress(random).getHostAddress();
+                values[i] = client + ", " + proxy + ", 10.0.0." + (1 + random.nextInt(8));
+            } else if (shape < 97) {
+                values[i] = "192.168." + random.nextInt(256) + "." + (1 + random.nextInt(254));
+            } else if (shape < 98) {
+                values[i] = "unknown";
+            } else {
+                values[i] = null;
+            }
+        }
+        return values;
+    }
+}
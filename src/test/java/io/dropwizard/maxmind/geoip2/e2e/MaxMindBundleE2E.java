@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.e2e;
+
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * What the bundle costs a service: the same trivial endpoint served without the bundle, with it, and with
+ * {@code maxMindContext} injecting {@link io.dropwizard.maxmind.geoip2.core.MaxMindInfo}, each under the same replayed
+ * X-Forwarded-For load. The three applications run side by side; each is warmed up, then measured in interleaved
+ * rounds so JIT and host drift land on every setup alike. Reports throughput and p50 / p99 / p999 latency per setup and fails when the bundle's
+ * throughput or p99 overhead over the bare service exceeds the configured percentage. Run with {@code mvn -Pe2e test}.
+ *
+ * @author phaneesh
+ */
+public class MaxMindBundleE2E {
+
+    private static final String HEADER = "X-Forwarded-For";
+
+    private final int threads = Integer.getInteger("maxmind.e2e.threads", 4);
+
+    private final int warmupSeconds = Integer.getInteger("maxmind.e2e.warmupSeconds", 5);
+
+    private final int measureSeconds = Integer.getInteger("maxmind.e2e.measureSeconds", 10);
+
+    private final int rounds = Integer.getInteger("maxmind.e2e.rounds", 5);
+
+    private final int maxThroughputOverhead = Integer.getInteger("maxmind.e2e.maxThroughputOverhead", 30);
+
+    private final int maxP99Overhead = Integer.getInteger("maxmind.e2e.maxP99Overhead", 100);
+
+    @Test
+    public void overheadWithinThreshold() throws Exception {
+        final String[] values = LoadGenerator.forwardedFor(1 << 16, 23);
+        final LoadGenerator generator = new LoadGenerator(threads);
+        final Map<String, URL> setups = new LinkedHashMap<>();
+        final List<DropwizardTestSupport<E2EApplication.E2EConfiguration>> applications = new ArrayList<>();
+        final Map<String, LoadGenerator.Result> results = new LinkedHashMap<>();
+        try {
+            setups.put("bundle off", start(applications, null, E2EApplication.PLAIN));
+            setups.put("bundle on", start(applications, maxmind(false), E2EApplication.PLAIN));
+            setups.put("maxMindContext", start(applications, maxmind(true), E2EApplication.CONTEXT));
+            for (URL url : setups.values()) {
+                generator.run(url, HEADER, values, TimeUnit.SECONDS.toMillis(warmupSeconds), 0);
+            }
+            final long roundMillis = TimeUnit.SECONDS.toMillis(measureSeconds) / rounds;
+            for (int round = 0; round < rounds; round++) {
+                for (Map.Entry<String, URL> setup : setups.entrySet()) {
+                    final LoadGenerator.Result result = generator.run(setup.getValue(), HEADER, values, 0,
+                            roundMillis);
+                    results.merge(setup.getKey(), result, LoadGenerator.Result::merge);
+                }
+            }
+        } finally {
+            for (DropwizardTestSupport<E2EApplication.E2EConfiguration> application : applications) {
+                application.after();
+            }
+        }
+
+        final LoadGenerator.Result off = results.get("bundle off");
+        final StringBuilder report = new StringBuilder(String.format("%n%-16s %10s %10s %10s %10s %10s %12s %10s%n",
+                "setup", "requests", "req/s", "p50 us", "p99 us", "p999 us", "throughput", "p99"));
+        for (Map.Entry<String, LoadGenerator.Result> entry : results.entrySet()) {
+            final LoadGenerator.Result result = entry.getValue();
+            report.append(String.format("%-16s %10d %10.0f %10.1f %10.1f %10.1f %11.1f%% %9.1f%%%n", entry.getKey(),
+                    result.requests, result.throughput(), micros(result, 50), micros(result, 99),
+                    micros(result, 99.9), throughputOverhead(off, result), p99Overhead(off, result)));
+        }
+        System.out.println(report);
+
+        for (Map.Entry<String, LoadGenerator.Result> entry : results.entrySet()) {
+            final LoadGenerator.Result result = entry.getValue();
+            assertEquals(entry.getKey() + " failed requests", 0, result.errors);
+            assertTrue(entry.getKey() + " served nothing", result.requests > 0);
+            if (result == off) {
+                continue;
+            }
+            assertTrue(entry.getKey() + " throughput overhead over " + maxThroughputOverhead + "%" + report,
+                    throughputOverhead(off, result) <= maxThroughputOverhead);
+            assertTrue(entry.getKey() + " p99 overhead over " + maxP99Overhead + "%" + report,
+                    p99Overhead(off, result) <= maxP99Overhead);
+        }
+    }
+
+    private static URL start(List<DropwizardTestSupport<E2EApplication.E2EConfiguration>> applications,
+                             MaxMindConfig maxmind, String path) throws Exception {
+        final DropwizardTestSupport<E2EApplication.E2EConfiguration> application =
+                new DropwizardTestSupport<>(E2EApplication.class, E2EApplication.configuration(maxmind));
+        application.before();
+        applications.add(application);
+        return new URL("http://127.0.0.1:" + application.getLocalPort() + path);
+    }
+
+    //Enterprise and anonymous databases behind a private load balancer tier, with the default caches
+    private static MaxMindConfig maxmind(boolean maxMindContext) throws IOException {
+        return MaxMindConfig.builder()
+                .databases(Arrays.asList(
+                        new DatabaseConfig(DatabaseType.ENTERPRISE,
+                                SyntheticDatabases.shared(SyntheticDatabases.ENTERPRISE).getPath()),
+                        new DatabaseConfig(DatabaseType.ANONYMOUS,
+                                SyntheticDatabases.shared(SyntheticDatabases.ANONYMOUS).getPath())))
+                .remoteIpHeader(HEADER)
+                .trustedProxies(Collections.singletonList("10.0.0.0/8"))
+                .maxMindContext(maxMindContext)
+                .build();
+    }
+
+    private static double micros(LoadGenerator.Result result, double percentile) {
+        return result.latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static double throughputOverhead(LoadGenerator.Result off, LoadGenerator.Result result) {
+        return (off.throughput() / result.throughput() - 1) * 100;
+    }
+
+    private static double p99Overhead(LoadGenerator.Result off, LoadGenerator.Result result) {
+        return ((double) result.latency.getValueAtPercentile(99) / off.latency.getValueAtPercentile(99) - 1) * 100;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.filter;
+
+import io.dropwizard.maxmind.geoip2.config.GateConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ANONYMOUS_VPN;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ASN;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_COUNTRY_ISO;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_TOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author phaneesh
+ */
+public class GeoGateTest {
+
+    @Test
+    public void appliesCountryLists() {
+        final GeoGate allow = new GeoGate(GateConfig.builder().allowCountries(Arrays.asList("us", " CA")).build());
+        assertNull(allow.check(result(X_COUNTRY_ISO, "US")));
+        assertNull(allow.check(result(X_COUNTRY_ISO, "CA")));
+        assertEquals(GeoGate.Reason.COUNTRY, allow.check(result(X_COUNTRY_ISO, "DE")));
+        final GeoGate deny = new GeoGate(GateConfig.builder().denyCountries(Collections.singletonList("KP")).build());
+        assertEquals(GeoGate.Reason.COUNTRY, deny.check(result(X_COUNTRY_ISO, "KP")));
+        assertNull(deny.check(result(X_COUNTRY_ISO, "DE")));
+    }
+
+    @Test
+    public void appliesAsnLists() {
+        final GeoGate gate = new GeoGate(GateConfig.builder().denyAsns(Arrays.asList(64496L, 64497L)).build());
+        assertEquals(GeoGate.Reason.ASN, gate.check(result(X_ASN, "64497")));
+        assertNull(gate.check(result(X_ASN, "15169")));
+        assertNull(gate.check(MaxMindResult.EMPTY));
+    }
+
+    @Test
+    public void appliesAnonymityFlags() {
+        final GeoGate gate = new GeoGate(GateConfig.builder().denyTor(true).build());
+        assertEquals(GeoGate.Reason.ANONYMOUS, gate.check(result(X_TOR, "true")));
+        assertNull(gate.check(result(X_ANONYMOUS_VPN, "true")));
+    }
+
+    @Test
+    public void rejectsUnresolvedOnlyWhenAllowListsRequireIt() {
+        final GateConfig.GateConfigBuilder config = GateConfig.builder().allowCountries(Collections.singletonList("US"));
+        //Unresolved requests must not bypass an allow list unless explicitly admitted
+        assertEquals(GeoGate.Reason.UNRESOLVED, new GeoGate(config.build()).check(null));
+        assertEquals(GeoGate.Reason.UNRESOLVED, new GeoGate(config.build()).check(MaxMindResult.EMPTY));
+        assertNull(new GeoGate(config.allowUnresolved(true).build()).check(null));
+        assertNull(new GeoGate(GateConfig.builder().denyCountries(Collections.singletonList("KP")).build())
+                .check(null));
+    }
+
+    @Test
+    public void failsOpenOrClosedAsConfigured() {
+        final GateConfig.GateConfigBuilder config = GateConfig.builder().denyCountries(Collections.singletonList("KP"));
+        assertNull(new GeoGate(config.build()).unavailable());
+        assertEquals(GeoGate.Reason.UNAVAILABLE, new GeoGate(config.failOpen(false).build()).unavailable());
+        //Failing open still honours allow lists that do not admit unresolved requests
+        assertEquals(GeoGate.Reason.UNRESOLVED, new GeoGate(GateConfig.builder()
+                .allowCountries(Collections.singletonList("US")).allowUnresolved(false).build()).unavailable());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidCountryCodes() {
+        new GeoGate(GateConfig.builder().denyCountries(Collections.singletonList("USA")).build());
+    }
+
+    private static MaxMindResult result(String header, String value) {
+        return MaxMindResult.builder().put(header, value).build();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.filter;
+
+import com.codahale.metrics.Timer;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.e2e.E2EApplication;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+
+import static io.dropwizard.maxmind.geoip2.e2e.E2EApplication.ANNOTATED;
+import static io.dropwizard.maxmind.geoip2.e2e.E2EApplication.CONTEXT;
+import static io.dropwizard.maxmind.geoip2.e2e.E2EApplication.HEADERS;
+import static io.dropwizard.maxmind.geoip2.e2e.E2EApplication.NONE;
+import static io.dropwizard.maxmind.geoip2.e2e.E2EApplication.SKIPPED;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Which resources the bundle resolves for, and when, in a running application.
+ *
+ * @author phaneesh
+ */
+public class MaxMindFeatureTest {
+
+    private final SyntheticDatabases.Block block = SyntheticDatabases.blocks().get(0);
+
+    private final String client = block.randomAddress(new Random(11)).getHostAddress();
+
+    private DropwizardTestSupport<E2EApplication.E2EConfiguration> application;
+
+    @After
+    public void tearDown() {
+        if (application != null) {
+            application.after();
+        }
+    }
+
+    @Test
+    public void resolvesAllResourcesNotOptedOut() throws Exception {
+        start(MaxMindConfig.builder());
+        assertEquals(block.isoCode(), get(HEADERS));
+        assertEquals(block.isoCode(), get(ANNOTATED));
+        assertEquals(NONE, get(SKIPPED));
+        //The method annotation takes precedence over the class
+        assertEquals(block.isoCode(), get(SKIPPED + "/included"));
+    }
+
+    @Test
+    public void skipsTheLookupOfOptedOutResources() throws Exception {
+        start(MaxMindConfig.builder());
+        final long lookups = lookups().getCount();
+        assertEquals(NONE, get(SKIPPED));
+        assertEquals(lookups, lookups().getCount());
+    }
+
+    @Test
+    public void resolvesOnlyAnnotatedResourcesWhenAnnotatedOnly() throws Exception {
+        start(MaxMindConfig.builder().annotatedOnly(true));
+        assertEquals(NONE, get(HEADERS));
+        assertEquals(NONE, get(SKIPPED));
+        assertEquals(block.isoCode(), get(ANNOTATED));
+        assertEquals(block.isoCode(), get(SKIPPED + "/included"));
+    }
+
+    @Test
+    public void resolvesLazilyOnFirstContextAccess() throws Exception {
+        start(MaxMindConfig.builder().lazy(true).maxMindContext(true));
+        //Nothing asks for MaxMindInfo, so nothing is looked up or stamped
+        assertEquals(NONE, get(HEADERS));
+        assertEquals(0, lookups().getCount());
+
+        //Injection resolves and stamps the headers for whatever reads them afterwards
+        assertEquals(block.isoCode() + " " + block.isoCode(), get(CONTEXT + "/headers"));
+        assertEquals(1, lookups().getCount());
+        //Cached for the next request of the network
+        assertEquals(block.isoCode(), get(CONTEXT));
+        assertEquals(1, lookups().getCount());
+    }
+
+    @Test
+    public void skipsStampingLazyResultsWhenDisabled() throws Exception {
+        start(MaxMindConfig.builder().lazy(true).maxMindContext(true).stampHeaders(false));
+        assertEquals(block.isoCode() + " " + NONE, get(CONTEXT + "/headers"));
+    }
+
+    private void start(MaxMindConfig.MaxMindConfigBuilder config) throws Exception {
+        application = new DropwizardTestSupport<>(E2EApplication.class, E2EApplication.configuration(config
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.CITY,
+                        SyntheticDatabases.shared(SyntheticDatabases.CITY).getPath())))
+                .build()));
+        application.before();
+    }
+
+    private Timer lookups() {
+        return application.getEnvironment().metrics().timer("maxmind.lookup.city");
+    }
+
+    private String get(String path) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:"
+                + application.getLocalPort() + path).openConnection();
+        connection.setRequestProperty("X-Forwarded-For", client);
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream body = connection.getInputStream()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[256];
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
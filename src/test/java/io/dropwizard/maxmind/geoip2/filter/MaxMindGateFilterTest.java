@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.filter;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.GateConfig;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindProperties;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.lookup.AsyncResolver;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+import io.dropwizard.maxmind.geoip2.testing.BlockingResolver;
+import io.dropwizard.maxmind.geoip2.testing.StubRequestContext;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The gate in front of the GeoIP filter, as the bundle registers them.
+ *
+ * @author phaneesh
+ */
+public class MaxMindGateFilterTest {
+
+    private static final String HEADER = "X-Forwarded-For";
+
+    //Replaced with the resolver on every start, each resolver registers its own gauges
+    private MaxMindMetrics metrics;
+
+    private final List<MaxMindDatabase> opened = new ArrayList<>();
+
+    private final List<MaxMindResolver> resolvers = new ArrayList<>();
+
+    private ThreadPoolExecutor executor;
+
+    private MaxMindGeoIpRequestFilter geoIpFilter;
+
+    private MaxMindGateFilter gateFilter;
+
+    @After
+    public void tearDown() throws Exception {
+        for (MaxMindResolver resolver : resolvers) {
+            if (resolver instanceof BlockingResolver) {
+                ((BlockingResolver) resolver).release();
+            }
+            resolver.stop();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        for (MaxMindDatabase database : opened) {
+            database.stop();
+        }
+    }
+
+    @Test
+    public void rejectsWithConfiguredStatusAndCountsReason() throws Exception {
+        final SyntheticDatabases.Block block = SyntheticDatabases.blocks().get(0);
+        final String other = block.isoCode().equals("US") ? "IN" : "US";
+        start(GateConfig.builder().allowCountries(Collections.singletonList(other)).status(451).build(), false);
+
+        final StubRequestContext rejected = request(address(block));
+        run(rejected);
+        assertEquals(451, rejected.getAbortedWith().getStatus());
+        assertEquals(1, metrics.gateRejected(GeoGate.Reason.COUNTRY).getCount());
+
+        start(GateConfig.builder().allowCountries(Collections.singletonList(block.isoCode())).build(), false);
+        final StubRequestContext admitted = request(address(block));
+        run(admitted);
+        assertNull(admitted.getAbortedWith());
+    }
+
+    @Test
+    public void resolvesOnceAndReusesTheResult() throws Exception {
+        final SyntheticDatabases.Block block = SyntheticDatabases.blocks().get(0);
+        start(GateConfig.builder().denyTor(true).build(), false);
+        final StubRequestContext context = request(address(block));
+        gateFilter.filter(context);
+        final Object result = context.getProperty(MaxMindProperties.RESULT);
+        assertNotNull(result);
+        final long lookups = metrics.getLookups(DatabaseType.CITY).getCount();
+        geoIpFilter.filter(context);
+        assertSame(result, context.getProperty(MaxMindProperties.RESULT));
+        assertEquals(lookups, metrics.getLookups(DatabaseType.CITY).getCount());
+        assertEquals(block.isoCode(), ((MaxMindResult) result).getInfo().getCountryIso());
+    }
+
+    @Test
+    public void countsUnresolvableRequestsOnce() throws Exception {
+        start(GateConfig.builder().allowCountries(Collections.singletonList("US")).build(), false);
+
+        final StubRequestContext missing = new StubRequestContext();
+        run(missing);
+        assertEquals(1, metrics.getMissingHeader().getCount());
+
+        final StubRequestContext invalid = request("not-an-address");
+        run(invalid);
+        assertEquals(1, metrics.getInvalidIp().getCount());
+
+        //Private addresses resolve to nothing and must not get past an allow list by default
+        final StubRequestContext reserved = request("10.0.0.1");
+        run(reserved);
+        assertEquals(1, metrics.getReservedAddress().getCount());
+
+        assertEquals(3, metrics.gateRejected(GeoGate.Reason.UNRESOLVED).getCount());
+        assertEquals(403, reserved.getAbortedWith().getStatus());
+    }
+
+    @Test
+    public void failsOpenOnTimeoutWithoutWaitingTwice() throws Exception {
+        start(GateConfig.builder().denyCountries(Collections.singletonList("KP")).build(), true);
+        final StubRequestContext context = request(address(SyntheticDatabases.blocks().get(0)));
+        final long start = System.nanoTime();
+        run(context);
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertNull(context.getAbortedWith());
+        assertNull(context.getProperty(MaxMindProperties.RESULT));
+        assertEquals(1, metrics.getAsyncTimeouts().getCount());
+        assertEquals(1, ((BlockingResolver) resolvers.get(0)).getLookups());
+        assertTrue(elapsed + " ms", elapsed < 2 * 200);
+    }
+
+    @Test
+    public void failsClosedOnTimeoutWhenConfigured() throws Exception {
+        start(GateConfig.builder().denyCountries(Collections.singletonList("KP")).failOpen(false).build(), true);
+        final StubRequestContext context = request(address(SyntheticDatabases.blocks().get(0)));
+        run(context);
+        assertEquals(403, context.getAbortedWith().getStatus());
+        assertEquals(1, metrics.gateRejected(GeoGate.Reason.UNAVAILABLE).getCount());
+        assertEquals(1, metrics.getAsyncTimeouts().getCount());
+    }
+
+    //The gate runs before resource matching, the GeoIP filter after it unless the request was aborted
+    private void run(StubRequestContext context) {
+        gateFilter.filter(context);
+        if (context.getAbortedWith() == null) {
+            geoIpFilter.filter(context);
+        }
+    }
+
+    private void start(GateConfig gate, boolean blocking) throws Exception {
+        final MaxMindConfig config = MaxMindConfig.builder()
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.CITY,
+                        SyntheticDatabases.shared(SyntheticDatabases.CITY).getPath())))
+                .remoteIpHeader(HEADER)
+                .gate(gate)
+                .build();
+        final Map<DatabaseType, MaxMindDatabase> databases = MaxMindResolver.open(config);
+        opened.addAll(databases.values());
+        metrics = new MaxMindMetrics(new MetricRegistry());
+        AsyncResolver asyncResolver = null;
+        final MaxMindResolver resolver;
+        if (blocking) {
+            resolver = new BlockingResolver(config, databases, metrics);
+            final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(4);
+            executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue);
+            asyncResolver = new AsyncResolver(resolver, executor, queue, 200);
+        } else {
+            resolver = new MaxMindResolver(config, databases, metrics);
+        }
+        resolvers.add(resolver);
+        geoIpFilter = new MaxMindGeoIpRequestFilter(config, resolver, asyncResolver);
+        gateFilter = new MaxMindGateFilter(geoIpFilter, new GeoGate(gate));
+    }
+
+    private static StubRequestContext request(String forwardedFor) {
+        return new StubRequestContext().header(HEADER, forwardedFor);
+    }
+
+    private static String address(SyntheticDatabases.Block block) {
+        final InetAddress address = block.randomAddress(new Random(5));
+        return address.getHostAddress();
+    }
+}
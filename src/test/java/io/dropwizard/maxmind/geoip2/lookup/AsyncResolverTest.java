@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.lookup;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+import io.dropwizard.maxmind.geoip2.testing.BlockingResolver;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class AsyncResolverTest {
+
+    private final MetricRegistry registry = new MetricRegistry();
+
+    private final MaxMindMetrics metrics = new MaxMindMetrics(registry);
+
+    private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(1);
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue);
+
+    private Map<DatabaseType, MaxMindDatabase> databases;
+
+    private BlockingResolver resolver;
+
+    private AsyncResolver asyncResolver;
+
+    @Before
+    public void setUp() throws Exception {
+        final MaxMindConfig config = MaxMindConfig.builder()
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.CITY,
+                        SyntheticDatabases.shared(SyntheticDatabases.CITY).getPath())))
+                .build();
+        databases = MaxMindResolver.open(config);
+        resolver = new BlockingResolver(config, databases, metrics);
+        asyncResolver = new AsyncResolver(resolver, executor, queue, 100);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        resolver.release();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        resolver.close();
+        for (MaxMindDatabase database : databases.values()) {
+            database.stop();
+        }
+    }
+
+    @Test
+    public void countsTimeoutsAndCachesTheLateResult() throws Exception {
+        final InetAddress address = address(0);
+        assertNull(asyncResolver.resolve(address));
+        assertEquals(1, metrics.getAsyncTimeouts().getCount());
+        assertEquals(1, gauge("inFlight"));
+
+        resolver.release();
+        awaitIdle();
+        //The lookup that missed the budget still populated the cache
+        final MaxMindResult result = asyncResolver.resolve(address);
+        assertNotNull(result);
+        assertSame(result, asyncResolver.resolve(address));
+        assertEquals(1, resolver.getLookups());
+        assertEquals(1, metrics.getAsyncTimeouts().getCount());
+    }
+
+    @Test
+    public void coalescesConcurrentLookupsOfAnAddress() throws Exception {
+        final InetAddress address = address(0);
+        assertNull(asyncResolver.resolve(address));
+        assertNull(asyncResolver.resolve(address));
+        assertNull(asyncResolver.resolve(InetAddress.getByAddress(address.getAddress())));
+        //Every request timed out waiting for the one lookup
+        assertEquals(3, metrics.getAsyncTimeouts().getCount());
+        assertEquals(1, resolver.getLookups());
+        assertEquals(1, asyncResolver.getPending());
+        assertEquals(0, gauge("queueDepth"));
+
+        resolver.release();
+        awaitIdle();
+        assertEquals(0, asyncResolver.getPending());
+        assertNotNull(asyncResolver.resolve(address));
+        assertEquals(1, resolver.getLookups());
+    }
+
+    @Test
+    public void rejectsWhenSaturated() throws Exception {
+        assertNull(asyncResolver.resolve(address(0)));
+        assertNull(asyncResolver.resolve(address(1)));
+        assertEquals(1, gauge("queueDepth"));
+        assertEquals(2, gauge("inFlight"));
+
+        //One running and one queued fill the pool
+        assertNull(asyncResolver.resolve(address(2)));
+        assertEquals(1, metrics.getAsyncRejected().getCount());
+        assertEquals(2, metrics.getAsyncTimeouts().getCount());
+        assertEquals(2, asyncResolver.getPending());
+
+        resolver.release();
+        awaitIdle();
+        assertEquals(0, gauge("queueDepth"));
+        //A rejected address is not left pending and is looked up by the next request
+        assertNotNull(asyncResolver.resolve(address(2)));
+        assertEquals(3, resolver.getLookups());
+    }
+
+    @Test
+    public void rejectsAfterShutdown() throws Exception {
+        final InetAddress running = address(0);
+        final InetAddress queued = address(1);
+        assertNull(asyncResolver.resolve(running));
+        assertNull(asyncResolver.resolve(queued));
+        executor.shutdownNow();
+
+        //Requests for a dropped lookup are not left waiting for it
+        assertNull(asyncResolver.resolve(queued));
+        assertNull(asyncResolver.resolve(address(2)));
+        assertEquals(2, metrics.getAsyncRejected().getCount());
+        assertEquals(2, metrics.getAsyncTimeouts().getCount());
+
+        resolver.release();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, gauge("queueDepth"));
+        //Resolved from memory without the pool once cached
+        assertNotNull(asyncResolver.resolve(running));
+        assertEquals(1, resolver.getLookups());
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gauge("inFlight") > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, gauge("inFlight"));
+    }
+
+    private int gauge(String name) {
+        final Gauge<?> gauge = registry.getGauges().get(MetricRegistry.name(MaxMindMetrics.PREFIX, "async", name));
+        return (Integer) gauge.getValue();
+    }
+
+    private static InetAddress address(int block) {
+        return SyntheticDatabases.blocks().get(block * 7).randomAddress(new Random(block));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.lookup;
+
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.model.CountryResponse;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the index against the database it was built from, including the IPv6 subtrees aliased onto IPv4.
+ *
+ * @author phaneesh
+ */
+public class CountryIndexTest {
+
+    private static final int SAMPLES = 20_000;
+
+    private static DatabaseReader reader;
+
+    private static CountryIndex index;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        final File file = SyntheticDatabases.shared(SyntheticDatabases.COUNTRY);
+        reader = new DatabaseReader.Builder(file).build();
+        index = CountryIndex.build(file);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        reader.close();
+    }
+
+    @Test
+    public void matchesTheDatabase() throws Exception {
+        final Random random = new Random(11);
+        final List<SyntheticDatabases.Block> blocks = SyntheticDatabases.blocks();
+        for (int i = 0; i < SAMPLES; i++) {
+            assertMatches(blocks.get(random.nextInt(blocks.size())).randomAddress(random));
+            //Anywhere, including unassigned and reserved ranges
+            final byte[] v4 = new byte[4];
+            random.nextBytes(v4);
+            assertMatches(InetAddress.getByAddress(v4));
+            final byte[] v6 = new byte[16];
+            random.nextBytes(v6);
+            v6[0] = (byte) (0x20 + random.nextInt(16));
+            assertMatches(InetAddress.getByAddress(v6));
+        }
+    }
+
+    @Test
+    public void matchesTheDatabaseInAliasedSubtrees() throws Exception {
+        final Random random = new Random(13);
+        final List<SyntheticDatabases.Block> blocks = SyntheticDatabases.blocks();
+        for (int i = 0; i < SAMPLES; i++) {
+            final InetAddress address = blocks.get(random.nextInt(blocks.size())).randomAddress(random);
+            final byte[] v4 = address.getAddress();
+            if (v4.length != 4) {
+                continue;
+            }
+            final byte[] compatible = new byte[16];
+            System.arraycopy(v4, 0, compatible, 12, 4);
+            final byte[] teredo = new byte[16];
+            teredo[0] = 0x20;
+            teredo[1] = 0x01;
+            System.arraycopy(v4, 0, teredo, 4, 4);
+            final byte[] sixToFour = new byte[16];
+            sixToFour[0] = 0x20;
+            sixToFour[1] = 0x02;
+            System.arraycopy(v4, 0, sixToFour, 2, 4);
+            final short expected = index.lookup(v4);
+            for (byte[] alias : new byte[][]{compatible, teredo, sixToFour}) {
+                final InetAddress aliased = InetAddress.getByAddress(alias);
+                assertEquals(aliased.getHostAddress(), expected, index.lookup(aliased));
+                assertMatches(aliased);
+            }
+        }
+    }
+
+    @Test
+    public void mappedAddressesMatchTheirIpv4Form() throws Exception {
+        final byte[] mapped = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, 1, 2, 3, 4};
+        assertEquals(index.lookup(new byte[]{1, 2, 3, 4}), index.lookup(mapped));
+        assertEquals(96 + CountryIndex.prefixLength(index.find(new byte[]{1, 2, 3, 4})),
+                CountryIndex.prefixLength(index.find(mapped)));
+    }
+
+    /**
+     * The country must match the database, and every address of the network derived from the range bounds must
+     * resolve to the same country, at both of its ends.
+     */
+    private static void assertMatches(InetAddress address) throws Exception {
+        final int found = index.find(address);
+        final short country = CountryIndex.country(found);
+        assertEquals(address.getHostAddress(), isoCode(address), isoCode(country));
+        final byte[] bytes = address.getAddress();
+        final int prefixLength = CountryIndex.prefixLength(found);
+        assertTrue(address.getHostAddress(), prefixLength <= bytes.length * 8);
+        final byte[] first = bytes.clone();
+        final byte[] last = bytes.clone();
+        for (int bit = prefixLength; bit < bytes.length * 8; bit++) {
+            first[bit / 8] &= (byte) ~(0x80 >>> (bit % 8));
+            last[bit / 8] |= (byte) (0x80 >>> (bit % 8));
+        }
+        assertEquals(address.getHostAddress() + "/" + prefixLength, isoCode(address),
+                isoCode(InetAddress.getByAddress(first)));
+        assertEquals(address.getHostAddress() + "/" + prefixLength, isoCode(address),
+                isoCode(InetAddress.getByAddress(last)));
+    }
+
+    private static String isoCode(InetAddress address) throws Exception {
+        final Optional<CountryResponse> response = reader.tryCountry(address);
+        return response.map(country -> country.getCountry().getIsoCode()).orElse(null);
+    }
+
+    private static String isoCode(short country) {
+        return country == CountryIndex.NOT_FOUND ? null : index.getIsoCode(country);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.lookup;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+import io.dropwizard.maxmind.geoip2.testing.MmdbWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_ASN;
+import static io.dropwizard.maxmind.geoip2.core.MaxMindHeaders.X_COUNTRY_ISO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class MaxMindResolverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MaxMindConfig config;
+
+    private Map<DatabaseType, MaxMindDatabase> databases;
+
+    private MaxMindResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        //1.0.0.0/16 is in both databases, 2.0.0.0/16 only in the ASN one and 3.0.0.0/16 in neither;
+        //the private 10.0.0.0/16 has a record to tell skipped reserved addresses from misses
+        final File country = folder.newFile("GeoIP2-Country.mmdb");
+        new MmdbWriter("GeoIP2-Country")
+                .insert(InetAddress.getByName("1.0.0.0"), 16, country("DE"))
+                .insert(InetAddress.getByName("10.0.0.0"), 16, country("ZZ"))
+                .write(country);
+        final File asn = folder.newFile("GeoLite2-ASN.mmdb");
+        new MmdbWriter("GeoLite2-ASN")
+                .insert(InetAddress.getByName("1.0.0.0"), 16, asn(1001))
+                .insert(InetAddress.getByName("2.0.0.0"), 16, asn(2002))
+                .write(asn);
+        config = MaxMindConfig.builder()
+                .databases(Arrays.asList(new DatabaseConfig(DatabaseType.COUNTRY, country.getPath()),
+                        new DatabaseConfig(DatabaseType.ASN, asn.getPath())))
+                .build();
+        databases = MaxMindResolver.open(config);
+        resolver = new MaxMindResolver(config, databases, new MaxMindMetrics(new MetricRegistry()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        resolver.stop();
+        for (MaxMindDatabase database : databases.values()) {
+            database.stop();
+        }
+    }
+
+    @Test
+    public void resolvesEveryDatabase() throws Exception {
+        final MaxMindResult result = resolver.resolve(InetAddress.getByName("1.0.3.4"));
+        assertEquals("DE", result.get(X_COUNTRY_ISO));
+        assertEquals("1001", result.get(X_ASN));
+    }
+
+    @Test
+    public void locationMissDoesNotSkipOtherDatabases() throws Exception {
+        final MaxMindResult result = resolver.resolve(InetAddress.getByName("2.0.3.4"));
+        assertNull(result.get(X_COUNTRY_ISO));
+        assertEquals("2002", result.get(X_ASN));
+        assertEquals(1, resolver.getMissCache(DatabaseType.COUNTRY).size());
+        assertEquals(0, resolver.getMissCache(DatabaseType.ASN).size());
+        assertEquals(1, resolver.getMetrics().getAddressNotFound().getCount());
+
+        //Another address of the network is served from the result cache
+        assertEquals("2002", resolver.resolve(InetAddress.getByName("2.0.200.1")).get(X_ASN));
+        assertEquals(1, resolver.getResultCache().size());
+    }
+
+    @Test
+    public void missingEverywhereIsLeftToTheMissCaches() throws Exception {
+        assertTrue(resolver.resolve(InetAddress.getByName("3.0.3.4")).isEmpty());
+        assertEquals(1, resolver.getMissCache(DatabaseType.COUNTRY).size());
+        assertEquals(1, resolver.getMissCache(DatabaseType.ASN).size());
+        assertEquals(0, resolver.getResultCache().size());
+
+        final long asnLookups = resolver.getMetrics().getLookups(DatabaseType.ASN).getCount();
+        assertSame(MaxMindResult.EMPTY, resolver.resolve(InetAddress.getByName("3.0.99.1")));
+        assertEquals(asnLookups, resolver.getMetrics().getLookups(DatabaseType.ASN).getCount());
+        assertEquals(1, resolver.getMissCache(DatabaseType.ASN).hitCount());
+    }
+
+    @Test
+    public void skipsReservedAddressesWithoutLookup() throws Exception {
+        for (String address : new String[]{"10.0.3.4", "::ffff:10.0.3.4", "127.0.0.1", "fe80::1"}) {
+            assertSame(address, MaxMindResult.EMPTY, resolver.resolve(InetAddress.getByName(address)));
+        }
+        assertEquals(4, resolver.getMetrics().getReservedAddress().getCount());
+        assertEquals(0, resolver.getMetrics().getLookups(DatabaseType.COUNTRY).getCount());
+        assertEquals(0, resolver.getMetrics().getLookups(DatabaseType.ASN).getCount());
+        assertEquals(0, resolver.getResultCache().size());
+        assertEquals(0, resolver.getMissCache(DatabaseType.COUNTRY).size());
+    }
+
+    @Test
+    public void looksUpReservedAddressesWhenNotSkipped() throws Exception {
+        final MaxMindConfig lookupAll = MaxMindConfig.builder()
+                .databases(config.getDatabases())
+                .skipReservedAddresses(false)
+                .build();
+        final MaxMindResolver unfiltered = new MaxMindResolver(lookupAll, databases,
+                new MaxMindMetrics(new MetricRegistry()));
+        try {
+            assertEquals("ZZ", unfiltered.resolve(InetAddress.getByName("10.0.3.4")).get(X_COUNTRY_ISO));
+            assertEquals(0, unfiltered.getMetrics().getReservedAddress().getCount());
+            assertEquals(1, unfiltered.getMetrics().getLookups(DatabaseType.COUNTRY).getCount());
+        } finally {
+            unfiltered.stop();
+        }
+    }
+
+    private static Map<String, Object> country(String isoCode) {
+        final Map<String, Object> country = new LinkedHashMap<>();
+        country.put("iso_code", isoCode);
+        country.put("names", Collections.singletonMap("en", isoCode));
+        return Collections.singletonMap("country", country);
+    }
+
+    private static Map<String, Object> asn(long number) {
+        final Map<String, Object> record = new LinkedHashMap<>();
+        record.put("autonomous_system_number", number);
+        record.put("autonomous_system_organization", "AS" + number);
+        return record;
+    }
+}
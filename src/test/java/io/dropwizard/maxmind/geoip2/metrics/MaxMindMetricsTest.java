@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author phaneesh
+ */
+public class MaxMindMetricsTest {
+
+    private final MetricRegistry registry = new MetricRegistry();
+
+    private MaxMindConfig config;
+
+    private Map<DatabaseType, MaxMindDatabase> databases;
+
+    @Before
+    public void setUp() throws Exception {
+        config = MaxMindConfig.builder()
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.COUNTRY,
+                        SyntheticDatabases.shared(SyntheticDatabases.COUNTRY).getPath())))
+                .build();
+        databases = MaxMindResolver.open(config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (MaxMindDatabase database : databases.values()) {
+            database.stop();
+        }
+    }
+
+    @Test
+    public void namespacesEveryBundle() {
+        final MaxMindResolver first = new MaxMindResolver(config, databases, new MaxMindMetrics(registry));
+        final MaxMindResolver second = new MaxMindResolver(config, databases,
+                new MaxMindMetrics(registry, "maxmind.internal"));
+        assertTrue(registry.getGauges().containsKey("maxmind.cache.size"));
+        assertTrue(registry.getGauges().containsKey("maxmind.internal.cache.size"));
+        assertTrue(registry.getGauges().containsKey("maxmind.internal.missCache.country.hitRatio"));
+        assertNotSame(first.getMetrics().getInvalidIp(), second.getMetrics().getInvalidIp());
+        assertSame(second.getMetrics().getInvalidIp(), registry.counter("maxmind.internal.errors.invalidIp"));
+        assertEquals("maxmind.internal", second.getMetrics().getName());
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void failsOnSecondBundleUnderOneName() {
+        final MaxMindResolver first = new MaxMindResolver(config, databases, new MaxMindMetrics(registry));
+        try {
+            new MaxMindResolver(config, databases, new MaxMindMetrics(registry));
+            fail("second resolver registered under the same name");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("maxmind.cache.size"));
+        }
+        first.close();
+    }
+}
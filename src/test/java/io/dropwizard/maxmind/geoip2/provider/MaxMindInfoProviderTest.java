@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.provider;
+
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.e2e.E2EApplication;
+import io.dropwizard.maxmind.geoip2.testing.SyntheticDatabases;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author phaneesh
+ */
+public class MaxMindInfoProviderTest {
+
+    private DropwizardTestSupport<E2EApplication.E2EConfiguration> application;
+
+    @Before
+    public void setUp() throws Exception {
+        application = new DropwizardTestSupport<>(E2EApplication.class, E2EApplication.configuration(
+                MaxMindConfig.builder()
+                        .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.COUNTRY,
+                                SyntheticDatabases.shared(SyntheticDatabases.COUNTRY).getPath())))
+                        .maxMindContext(true)
+                        .build()));
+        application.before();
+    }
+
+    @After
+    public void tearDown() {
+        application.after();
+    }
+
+    @Test
+    public void injectsMaxMindInfoIntoResourceMethods() throws IOException {
+        final SyntheticDatabases.Block block = SyntheticDatabases.blocks().get(0);
+        assertEquals(block.isoCode(), get(block.randomAddress(new Random(3)).getHostAddress()));
+        assertEquals(MaxMindInfoProvider.UNKNOWN, get("10.0.0.1"));
+    }
+
+    private String get(String forwardedFor) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:"
+                + application.getLocalPort() + E2EApplication.CONTEXT).openConnection();
+        connection.setRequestProperty("X-Forwarded-For", forwardedFor);
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream body = connection.getInputStream()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[256];
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
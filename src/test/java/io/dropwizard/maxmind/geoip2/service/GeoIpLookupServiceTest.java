@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.service;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindInfo;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+import io.dropwizard.maxmind.geoip2.testing.MmdbWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author phaneesh
+ */
+public class GeoIpLookupServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Map<DatabaseType, MaxMindDatabase> databases;
+
+    private MaxMindResolver resolver;
+
+    private GeoIpLookupService service;
+
+    @Before
+    public void setUp() throws Exception {
+        final File country = folder.newFile("GeoIP2-Country.mmdb");
+        new MmdbWriter("GeoIP2-Country")
+                .insert(InetAddress.getByName("1.0.0.0"), 16, country("DE"))
+                .insert(InetAddress.getByName("2.0.0.0"), 16, country("FR"))
+                .write(country);
+        final MaxMindConfig config = MaxMindConfig.builder()
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.COUNTRY, country.getPath())))
+                .build();
+        databases = MaxMindResolver.open(config);
+        resolver = new MaxMindResolver(config, databases, new MaxMindMetrics(new MetricRegistry()));
+        service = new GeoIpLookupService(resolver, 2);
+        service.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        service.stop();
+        resolver.stop();
+        for (MaxMindDatabase database : databases.values()) {
+            database.stop();
+        }
+    }
+
+    @Test
+    public void resolvesBatchesInInputOrder() throws Exception {
+        final List<InetAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            addresses.add(InetAddress.getByName((i % 3 + 1) + ".0." + (i / 256 % 256) + "." + i % 256));
+        }
+        final Map<InetAddress, MaxMindInfo> results = service.lookup(addresses);
+        assertEquals(addresses.size(), results.size());
+        int i = 0;
+        for (Map.Entry<InetAddress, MaxMindInfo> result : results.entrySet()) {
+            assertEquals(addresses.get(i), result.getKey());
+            assertEquals(i % 3 == 0 ? "DE" : i % 3 == 1 ? "FR" : "UNKNOWN", result.getValue().getCountryIso());
+            i++;
+        }
+    }
+
+    @Test
+    public void batchesBypassTheCaches() throws Exception {
+        service.lookup(Arrays.asList(InetAddress.getByName("1.0.0.1"), InetAddress.getByName("3.0.0.1")));
+        assertEquals(0, resolver.getResultCache().size());
+        assertEquals(0, resolver.getMissCache(DatabaseType.COUNTRY).size());
+        assertNull(resolver.resolveWithoutLookup(InetAddress.getByName("1.0.0.1")));
+
+        assertEquals("DE", service.lookup(InetAddress.getByName("1.0.0.1")).getCountryIso());
+        assertEquals(1, resolver.getResultCache().size());
+    }
+
+    private static Map<String, Object> country(String isoCode) {
+        final Map<String, Object> country = new LinkedHashMap<>();
+        country.put("iso_code", isoCode);
+        country.put("names", Collections.singletonMap("en", isoCode));
+        return Collections.singletonMap("country", country);
+    }
+}
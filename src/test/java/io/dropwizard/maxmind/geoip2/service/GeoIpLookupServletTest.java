@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.maxmind.geoip2.config.DatabaseConfig;
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindInfo;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+import io.dropwizard.maxmind.geoip2.testing.MmdbWriter;
+import io.dropwizard.maxmind.geoip2.testing.ServletServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class GeoIpLookupServletTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = Jackson.newObjectMapper();
+
+    //Addresses handed to the service per batch
+    private final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+
+    private Map<DatabaseType, MaxMindDatabase> databases;
+
+    private MaxMindResolver resolver;
+
+    private GeoIpLookupService service;
+
+    private ServletServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        final File country = folder.newFile("GeoIP2-Country.mmdb");
+        new MmdbWriter("GeoIP2-Country")
+                .insert(InetAddress.getByName("1.0.0.0"), 16, country("DE"))
+                .insert(InetAddress.getByName("2.0.0.0"), 16, country("FR"))
+                .write(country);
+        final MaxMindConfig config = MaxMindConfig.builder()
+                .databases(Collections.singletonList(new DatabaseConfig(DatabaseType.COUNTRY, country.getPath())))
+                .build();
+        databases = MaxMindResolver.open(config);
+        resolver = new MaxMindResolver(config, databases, new MaxMindMetrics(new MetricRegistry()));
+        service = new GeoIpLookupService(resolver, 2) {
+            @Override
+            public Map<InetAddress, MaxMindInfo> lookup(Collection<InetAddress> addresses) {
+                batches.add(addresses.size());
+                return super.lookup(addresses);
+            }
+        };
+        service.start();
+        server = new ServletServer(new GeoIpLookupServlet(service, mapper, 3), "/maxmind/lookup");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        service.stop();
+        resolver.stop();
+        for (MaxMindDatabase database : databases.values()) {
+            database.stop();
+        }
+    }
+
+    @Test
+    public void answersEveryAddressInOrder() throws Exception {
+        final ServletServer.Response response = server.post(null,
+                "1.0.0.1\n\nbogus\r\n2.0.0.1\n   \n1.0.0.2\n3.0.0.1\n 2.0.0.2 \n1.0.0.3");
+        assertEquals(200, response.getStatus());
+        assertTrue(response.getContentType(), response.getContentType().startsWith(GeoIpLookupServlet.CONTENT_TYPE));
+
+        final List<JsonNode> lines = lines(response.getBody());
+        assertEquals(Arrays.asList("1.0.0.1", "bogus", "2.0.0.1", "1.0.0.2", "3.0.0.1", "2.0.0.2", "1.0.0.3"),
+                field(lines, "ip"));
+        assertEquals(Arrays.asList("DE", null, "FR", "DE", MaxMindInfo.UNKNOWN, "FR", "DE"), countries(lines));
+        assertEquals("INVALID_IP", lines.get(1).get("error").asText());
+        assertFalse(lines.get(1).has("info"));
+        assertFalse(lines.get(0).has("error"));
+    }
+
+    @Test
+    public void resolvesInBatchesOfTheConfiguredSize() throws Exception {
+        server.post(null, "1.0.0.1\nbogus\n2.0.0.1\n\n1.0.0.2\n3.0.0.1\n2.0.0.2\n1.0.0.3\n");
+        //Batches of three non empty lines; invalid ones are answered without a lookup
+        assertEquals(Arrays.asList(2, 3, 1), batches);
+    }
+
+    @Test
+    public void answersEmptyBodiesWithNothing() throws Exception {
+        final ServletServer.Response response = server.post(null, "\n \n");
+        assertEquals(200, response.getStatus());
+        assertEquals("", response.getBody());
+        assertTrue(batches.isEmpty());
+    }
+
+    @Test
+    public void acceptsOnlyPost() throws Exception {
+        assertEquals(405, server.get(null).getStatus());
+    }
+
+    private List<JsonNode> lines(String body) throws Exception {
+        final List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            lines.add(mapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private static List<String> field(List<JsonNode> lines, String name) {
+        final List<String> values = new ArrayList<>();
+        lines.forEach(line -> values.add(line.get(name).asText()));
+        return values;
+    }
+
+    private static List<String> countries(List<JsonNode> lines) {
+        final List<String> values = new ArrayList<>();
+        lines.forEach(line -> values.add(line.has("info") ? line.get("info").get("countryIso").asText() : null));
+        return values;
+    }
+
+    private static Map<String, Object> country(String isoCode) {
+        final Map<String, Object> country = new LinkedHashMap<>();
+        country.put("iso_code", isoCode);
+        country.put("names", Collections.singletonMap("en", isoCode));
+        return Collections.singletonMap("country", country);
+    }
+}
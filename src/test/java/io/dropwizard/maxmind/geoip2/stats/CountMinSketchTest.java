@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.stats;
+
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class CountMinSketchTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ADDS = 20_000;
+
+    @Test
+    public void countsHotKeyExactlyUnderContention() throws Exception {
+        final CountMinSketch sketch = new CountMinSketch(1024);
+        concurrently(thread -> {
+            for (int i = 0; i < ADDS; i++) {
+                sketch.add(42L);
+                sketch.add(thread * 1_000_000L + i);
+            }
+        });
+        final long estimate = sketch.estimate(42L);
+        assertTrue(estimate >= (long) THREADS * ADDS);
+        //Overcount bounded by total / width with high probability
+        assertTrue(estimate <= (long) THREADS * ADDS + 2L * THREADS * ADDS * 2 / 1024);
+        sketch.reset();
+        assertEquals(0, sketch.estimate(42L));
+    }
+
+    @Test
+    public void keepsFixedMemoryUnderContention() throws Exception {
+        final HeavyHitters hitters = new HeavyHitters(16, 1024);
+        final long before = GraphLayout.parseInstance(hitters).totalSize();
+        concurrently(thread -> {
+            for (int i = 0; i < ADDS; i++) {
+                hitters.add(42L);
+                hitters.add(thread * 1_000_000L + i);
+            }
+        });
+        assertEquals(before, GraphLayout.parseInstance(hitters).totalSize());
+        assertEquals(42L, (long) hitters.top(1).get(0).getKey());
+    }
+
+    @Test
+    public void tracksHeavyHittersUnderContention() throws Exception {
+        final HeavyHitters hitters = new HeavyHitters(4, 1024);
+        concurrently(thread -> {
+            for (int i = 0; i < ADDS; i++) {
+                hitters.add(i % 4);
+                hitters.add(100 + thread * ADDS + i);
+            }
+        });
+        final List<Map.Entry<Long, Long>> top = hitters.top(4);
+        assertEquals(4, top.size());
+        final List<Long> keys = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : top) {
+            keys.add(entry.getKey());
+            assertTrue(entry.getValue() >= (long) THREADS * ADDS / 4);
+        }
+        assertTrue(keys.containsAll(Arrays.asList(0L, 1L, 2L, 3L)));
+        hitters.reset();
+        assertTrue(hitters.top(4).isEmpty());
+    }
+
+    private static void concurrently(Worker worker) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                worker.run(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+}
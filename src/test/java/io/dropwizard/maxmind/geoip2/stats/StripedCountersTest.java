@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.stats;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class StripedCountersTest {
+
+    @Test
+    public void sumsEveryStripe() throws Exception {
+        final StripedCounters counters = new StripedCounters(3, 4);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    final long counted = counters.increment(1);
+                    assertTrue(counted > 0 && counted <= 8000);
+                }
+                counters.increment(2);
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, counters.sum(0));
+        assertEquals(8000, counters.sum(1));
+        assertEquals(8, counters.sum(2));
+        counters.reset();
+        assertEquals(0, counters.sum(1));
+    }
+
+    @Test
+    public void countsPerStripeOnIncrement() {
+        final StripedCounters counters = new StripedCounters(1, 8);
+        for (int i = 1; i <= 20; i++) {
+            assertEquals(i, counters.increment(0));
+        }
+        assertEquals(20, counters.sum(0));
+    }
+}
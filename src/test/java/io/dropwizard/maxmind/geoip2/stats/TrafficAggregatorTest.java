@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.stats;
+
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class TrafficAggregatorTest {
+
+    private final TrafficAggregator aggregator = new TrafficAggregator(8, 1024);
+
+    @Test
+    public void countsCountriesAndFlags() throws Exception {
+        record("203.0.113.1", MaxMindResult.builder().countryIso("IN").asn(13335).build(), 3);
+        record("203.0.113.2", MaxMindResult.builder().countryIso("US").anonymousIp(true).anonymousVpn(true)
+                .asn(15169).build(), 2);
+        record("198.51.100.1", MaxMindResult.builder().countryIso("US").tor(true).anonymousIp(true).build(), 1);
+
+        final TrafficSnapshot snapshot = aggregator.snapshot(10);
+        assertEquals(6, snapshot.getTotal());
+        assertEquals(Long.valueOf(3), snapshot.getCountries().get("IN"));
+        assertEquals(Long.valueOf(3), snapshot.getCountries().get("US"));
+        assertEquals(0, snapshot.getUnknownCountry());
+        assertEquals(3, snapshot.getAnonymous());
+        assertEquals(2, snapshot.getAnonymousVpn());
+        assertEquals(1, snapshot.getTor());
+        assertEquals(entries("13335=3", "15169=2"), entries(snapshot.getAsns()));
+    }
+
+    @Test
+    public void countsUnknownCountries() throws Exception {
+        record("203.0.113.1", MaxMindResult.EMPTY, 2);
+        record("203.0.113.2", MaxMindResult.builder().countryIso("XK1").build(), 1);
+        record("203.0.113.3", MaxMindResult.builder().countryIso("DE").build(), 1);
+
+        final TrafficSnapshot snapshot = aggregator.snapshot(10);
+        assertEquals(4, snapshot.getTotal());
+        assertEquals(3, snapshot.getUnknownCountry());
+        assertEquals(1, snapshot.getCountries().size());
+        //No ASN, nothing tracked
+        assertTrue(snapshot.getAsns().isEmpty());
+    }
+
+    @Test
+    public void bucketsClientNetworks() throws Exception {
+        record("203.0.113.1", MaxMindResult.EMPTY, 3);
+        record("203.0.113.200", MaxMindResult.EMPTY, 1);
+        record("2001:db8:abcd:1::1", MaxMindResult.EMPTY, 2);
+        record("2001:db8:abcd:ffff::2", MaxMindResult.EMPTY, 2);
+        record("2001:db8:abce::1", MaxMindResult.EMPTY, 1);
+        record("::ffff:198.51.100.7", MaxMindResult.EMPTY, 1);
+
+        assertEquals(entries("2001:db8:abcd::/48=4", "203.0.113.0/24=4", "198.51.100.0/24=1",
+                "2001:db8:abce::/48=1"), sorted(entries(aggregator.snapshot(10).getNetworks())));
+    }
+
+    @Test
+    public void limitsAndResets() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            record("203.0.11" + i + ".1", MaxMindResult.builder().asn(64500 + i).build(), 10 - i);
+        }
+        final TrafficSnapshot top = aggregator.snapshot(2);
+        assertEquals(entries("64500=10", "64501=9"), entries(top.getAsns()));
+        assertEquals(entries("203.0.110.0/24=10", "203.0.111.0/24=9"), entries(top.getNetworks()));
+        assertTrue(aggregator.snapshot(0).getNetworks().isEmpty());
+
+        aggregator.reset();
+        final TrafficSnapshot reset = aggregator.snapshot(10);
+        assertEquals(0, reset.getTotal());
+        assertTrue(reset.getAsns().isEmpty());
+        assertTrue(reset.getNetworks().isEmpty());
+        assertTrue(reset.getSince() >= top.getSince());
+    }
+
+    private void record(String address, MaxMindResult result, int times) throws Exception {
+        final InetAddress client = InetAddress.getByName(address);
+        for (int i = 0; i < times; i++) {
+            aggregator.record(client, result);
+        }
+    }
+
+    private static List<String> entries(List<TrafficSnapshot.Entry> entries) {
+        final List<String> values = new ArrayList<>();
+        entries.forEach(e -> values.add(e.getKey() + "=" + e.getCount()));
+        return values;
+    }
+
+    private static List<String> entries(String... values) {
+        final List<String> entries = new ArrayList<>();
+        for (String value : values) {
+            entries.add(value);
+        }
+        return entries;
+    }
+
+    //Equal counts come back in no particular order
+    private static List<String> sorted(List<String> entries) {
+        entries.sort((a, b) -> {
+            final int byCount = Long.compare(count(b), count(a));
+            return byCount != 0 ? byCount : a.compareTo(b);
+        });
+        return entries;
+    }
+
+    private static long count(String entry) {
+        return Long.parseLong(entry.substring(entry.lastIndexOf('=') + 1));
+    }
+}
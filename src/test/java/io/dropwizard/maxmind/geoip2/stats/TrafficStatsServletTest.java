@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.stats;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.testing.ServletServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class TrafficStatsServletTest {
+
+    private final ObjectMapper mapper = Jackson.newObjectMapper();
+
+    private final TrafficAggregator aggregator = new TrafficAggregator(8, 1024);
+
+    private ServletServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServletServer(new TrafficStatsServlet(aggregator, mapper, 3), "/maxmind/traffic");
+        for (int i = 0; i < 5; i++) {
+            final InetAddress client = InetAddress.getByName("203.0.11" + i + ".1");
+            for (int j = 0; j < 10 - i; j++) {
+                aggregator.record(client, MaxMindResult.builder().countryIso("IN").asn(64500 + i).build());
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void getReadsWithoutResetting() throws Exception {
+        final TrafficSnapshot first = read(server.get(null));
+        assertEquals(40, first.getTotal());
+        assertEquals(Long.valueOf(40), first.getCountries().get("IN"));
+        //Capped at the configured default
+        assertEquals(3, first.getAsns().size());
+        assertEquals("64500", first.getAsns().get(0).getKey());
+        assertEquals(3, first.getNetworks().size());
+        assertEquals(first, read(server.get(null)));
+    }
+
+    @Test
+    public void postReadsAndResets() throws Exception {
+        final TrafficSnapshot window = read(server.post(null, ""));
+        assertEquals(40, window.getTotal());
+        final TrafficSnapshot next = read(server.get(null));
+        assertEquals(0, next.getTotal());
+        assertTrue(next.getCountries().isEmpty());
+        assertTrue(next.getAsns().isEmpty());
+        assertTrue(next.getSince() >= window.getSince());
+    }
+
+    @Test
+    public void appliesLimit() throws Exception {
+        assertEquals(5, read(server.get("limit=10")).getAsns().size());
+        assertEquals(1, read(server.get("limit=1")).getNetworks().size());
+        assertTrue(read(server.get("limit=-1")).getAsns().isEmpty());
+        assertEquals(3, read(server.get("limit=many")).getAsns().size());
+    }
+
+    private TrafficSnapshot read(ServletServer.Response response) throws Exception {
+        assertEquals(200, response.getStatus());
+        assertTrue(response.getContentType(), response.getContentType().startsWith("application/json"));
+        return mapper.readValue(response.getBody(), TrafficSnapshot.class);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.testing;
+
+import io.dropwizard.maxmind.geoip2.config.DatabaseType;
+import io.dropwizard.maxmind.geoip2.config.MaxMindConfig;
+import io.dropwizard.maxmind.geoip2.core.MaxMindResult;
+import io.dropwizard.maxmind.geoip2.database.MaxMindDatabase;
+import io.dropwizard.maxmind.geoip2.lookup.MaxMindResolver;
+import io.dropwizard.maxmind.geoip2.metrics.MaxMindMetrics;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolver whose database lookups block until released, for exercising latency budgets and saturated pools.
+ * Lookups answered from memory are not affected.
+ *
+ * @author phaneesh
+ */
+public class BlockingResolver extends MaxMindResolver {
+
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    public BlockingResolver(MaxMindConfig config, Map<DatabaseType, MaxMindDatabase> databases,
+                            MaxMindMetrics metrics) {
+        super(config, databases, metrics);
+    }
+
+    @Override
+    public MaxMindResult lookup(InetAddress address) {
+        lookups.incrementAndGet();
+        try {
+            if (!released.await(30, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Lookup never released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return super.lookup(address);
+    }
+
+    /**
+     * Lets blocked and later lookups run.
+     */
+    public void release() {
+        released.countDown();
+    }
+
+    /**
+     * @return database lookups started so far
+     */
+    public int getLookups() {
+        return lookups.get();
+    }
+}
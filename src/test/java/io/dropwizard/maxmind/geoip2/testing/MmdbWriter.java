@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer of the MaxMind DB format (https://maxmind.github.io/MaxMind-DB/) for synthetic test and benchmark
+ * databases: an IPv6 search tree with 32 bit records, IPv4 networks under ::/96 and the usual IPv4 aliases
+ * (::ffff:0:0/96, 2001::/32 and 2002::/16), deduplicated data records and the metadata section.
+ * Values are encoded by Java type: String as utf8 string, Double as double, Float as float, Integer as uint16,
+ * Long as uint32, BigInteger as uint64, Boolean as boolean, Map with String keys as map and List as array.
+ *
+ * @author phaneesh
+ */
+public final class MmdbWriter {
+
+    private static final byte[] METADATA_MARKER = {(byte) 0xab, (byte) 0xcd, (byte) 0xef,
+            'M', 'a', 'x', 'M', 'i', 'n', 'd', '.', 'c', 'o', 'm'};
+
+    private static final int RECORD_SIZE = 32;
+
+    private static final int IPV4_DEPTH = 96;
+
+    private final String databaseType;
+
+    private final Node root = new Node();
+
+    public MmdbWriter(String databaseType) {
+        this.databaseType = databaseType;
+    }
+
+    /**
+     * Maps a network to a record. Later insertions replace whatever they overlap.
+     *
+     * @param network IPv4 or IPv6 network address
+     */
+    public MmdbWriter insert(InetAddress network, int prefixLength, Map<String, ?> record) {
+        final byte[] address = network.getAddress();
+        final byte[] bits = new byte[16];
+        final int depth;
+        if (address.length == 4) {
+            System.arraycopy(address, 0, bits, 12, 4);
+            depth = IPV4_DEPTH + prefixLength;
+        } else {
+            System.arraycopy(address, 0, bits, 0, 16);
+            depth = prefixLength;
+        }
+        final Data data = new Data(record);
+        Node node = root;
+        for (int i = 0; i < depth - 1; i++) {
+            final int bit = bit(bits, i);
+            final Object child = node.children[bit];
+            if (child instanceof Node) {
+                node = (Node) child;
+            } else {
+                //Split a broader network (or an empty branch) to make room for the narrower one
+                final Node split = new Node();
+                split.children[0] = child;
+                split.children[1] = child;
+                node.children[bit] = split;
+                node = split;
+            }
+        }
+        node.children[bit(bits, depth - 1)] = data;
+        return this;
+    }
+
+    public void write(File file) throws IOException {
+        final Node ipv4 = ipv4Root();
+        alias(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, 0, 0, 0, 0}, IPV4_DEPTH, ipv4);
+        alias(new byte[]{0x20, 0x01, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, 32, ipv4);
+        alias(new byte[]{0x20, 0x02, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, 16, ipv4);
+
+        //Number the nodes breadth first; aliased nodes are shared and numbered once
+        final Map<Node, Integer> ids = new IdentityHashMap<>();
+        final List<Node> nodes = new ArrayList<>();
+        final Deque<Node> queue = new ArrayDeque<>();
+        ids.put(root, 0);
+        nodes.add(root);
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            final Node node = queue.poll();
+            for (Object child : node.children) {
+                if (child instanceof Node && !ids.containsKey(child)) {
+                    ids.put((Node) child, nodes.size());
+                    nodes.add((Node) child);
+                    queue.add((Node) child);
+                }
+            }
+        }
+
+        final ByteArrayOutputStream dataSection = new ByteArrayOutputStream();
+        final Map<Map<String, ?>, Long> offsets = new LinkedHashMap<>();
+        final long nodeCount = nodes.size();
+        final ByteArrayOutputStream tree = new ByteArrayOutputStream(nodes.size() * 8);
+        for (Node node : nodes) {
+            for (Object child : node.children) {
+                final long record;
+                if (child instanceof Node) {
+                    record = ids.get(child);
+                } else if (child instanceof Data) {
+                    final Map<String, ?> value = ((Data) child).record;
+                    Long offset = offsets.get(value);
+                    if (offset == null) {
+                        offset = (long) dataSection.size();
+                        encode(value, dataSection);
+                        offsets.put(value, offset);
+                    }
+                    record = nodeCount + 16 + offset;
+                } else {
+                    record = nodeCount;
+                }
+                writeUnsigned(tree, record, 4);
+            }
+        }
+
+        final Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("binary_format_major_version", 2);
+        metadata.put("binary_format_minor_version", 0);
+        metadata.put("build_epoch", BigInteger.valueOf(System.currentTimeMillis() / 1000));
+        metadata.put("database_type", databaseType);
+        metadata.put("description", Collections.singletonMap("en", "Synthetic " + databaseType));
+        metadata.put("ip_version", 6);
+        metadata.put("languages", Collections.singletonList("en"));
+        metadata.put("node_count", nodeCount);
+        metadata.put("record_size", RECORD_SIZE);
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            tree.writeTo(out);
+            out.write(new byte[16]);
+            dataSection.writeTo(out);
+            out.write(METADATA_MARKER);
+            final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            encode(metadata, encoded);
+            encoded.writeTo(out);
+        }
+    }
+
+    private Node ipv4Root() {
+        Node node = root;
+        for (int i = 0; i < IPV4_DEPTH; i++) {
+            final Object child = node.children[0];
+            if (child instanceof Node) {
+                node = (Node) child;
+            } else {
+                final Node next = new Node();
+                next.children[0] = child;
+                next.children[1] = child;
+                node.children[0] = next;
+                node = next;
+            }
+        }
+        return node;
+    }
+
+    private void alias(byte[] network, int prefixLength, Node target) {
+        Node node = root;
+        for (int i = 0; i < prefixLength - 1; i++) {
+            final int bit = bit(network, i);
+            final Object child = node.children[bit];
+            if (child instanceof Node) {
+                node = (Node) child;
+            } else {
+                final Node next = new Node();
+                next.children[0] = child;
+                next.children[1] = child;
+                node.children[bit] = next;
+                node = next;
+            }
+        }
+        node.children[bit(network, prefixLength - 1)] = target;
+    }
+
+    private static int bit(byte[] address, int index) {
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    private static void encode(Object value, ByteArrayOutputStream out) {
+        if (value instanceof String) {
+            final byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            control(out, 2, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        } else if (value instanceof Double) {
+            control(out, 3, 8);
+            writeUnsigned(out, Double.doubleToLongBits((Double) value), 8);
+        } else if (value instanceof Integer) {
+            unsigned(out, 5, (Integer) value, 2);
+        } else if (value instanceof Long) {
+            unsigned(out, 6, (Long) value, 4);
+        } else if (value instanceof BigInteger) {
+            unsigned(out, 9, ((BigInteger) value).longValue(), 8);
+        } else if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            control(out, 7, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                encode(entry.getKey().toString(), out);
+                encode(entry.getValue(), out);
+            }
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            control(out, 11, list.size());
+            for (Object element : list) {
+                encode(element, out);
+            }
+        } else if (value instanceof Boolean) {
+            control(out, 14, (Boolean) value ? 1 : 0);
+        } else if (value instanceof Float) {
+            control(out, 15, 4);
+            writeUnsigned(out, Float.floatToIntBits((Float) value) & 0xffffffffL, 4);
+        } else {
+            throw new IllegalArgumentException("Unsupported value: " + value);
+        }
+    }
+
+    private static void unsigned(ByteArrayOutputStream out, int type, long value, int maxBytes) {
+        int length = 0;
+        while (length < maxBytes && (value >>> (length * 8)) != 0) {
+            length++;
+        }
+        if (length < maxBytes && (value >>> (length * 8)) != 0) {
+            throw new IllegalArgumentException("Value too large: " + value);
+        }
+        control(out, type, length);
+        writeUnsigned(out, value, length);
+    }
+
+    private static void control(ByteArrayOutputStream out, int type, int size) {
+        final int typeBits = type <= 7 ? type << 5 : 0;
+        final int sizeBits;
+        final int extraBytes;
+        if (size < 29) {
+            sizeBits = size;
+            extraBytes = 0;
+        } else if (size < 285) {
+            sizeBits = 29;
+            extraBytes = 1;
+        } else if (size < 65821) {
+            sizeBits = 30;
+            extraBytes = 2;
+        } else {
+            sizeBits = 31;
+            extraBytes = 3;
+        }
+        out.write(typeBits | sizeBits);
+        if (type > 7) {
+            out.write(type - 7);
+        }
+        if (extraBytes == 1) {
+            out.write(size - 29);
+        } else if (extraBytes == 2) {
+            writeUnsigned(out, size - 285, 2);
+        } else if (extraBytes == 3) {
+            writeUnsigned(out, size - 65821, 3);
+        }
+    }
+
+    private static void writeUnsigned(ByteArrayOutputStream out, long value, int bytes) {
+        for (int i = bytes - 1; i >= 0; i--) {
+            out.write((int) (value >>> (i * 8)) & 0xff);
+        }
+    }
+
+    private static final class Node {
+
+        private final Object[] children = new Object[2];
+    }
+
+    private static final class Data {
+
+        private final Map<String, ?> record;
+
+        private Data(Map<String, ?> record) {
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.testing;
+
+import lombok.Value;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import javax.servlet.http.HttpServlet;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves one servlet on an ephemeral local port, for exercising admin servlets over real HTTP.
+ *
+ * @author phaneesh
+ */
+public class ServletServer implements AutoCloseable {
+
+    private final Server server = new Server();
+
+    private final String path;
+
+    public ServletServer(HttpServlet servlet, String path) throws Exception {
+        this.path = path;
+        final ServerConnector connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+        final ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(servlet), path);
+        server.setHandler(context);
+        server.start();
+    }
+
+    public Response get(String query) throws IOException {
+        return request("GET", query, null);
+    }
+
+    public Response post(String query, String body) throws IOException {
+        return request("POST", query, body);
+    }
+
+    /**
+     * @param query query string without the leading {@code ?}, or null
+     * @param body  request body, or null for none
+     */
+    public Response request(String method, String query, String body) throws IOException {
+        final int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        final URL url = new URL("http://127.0.0.1:" + port + path + (query == null ? "" : "?" + query));
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod(method);
+            if (body != null) {
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            final int status = connection.getResponseCode();
+            final InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            return new Response(status, connection.getContentType(), in == null ? "" : read(in));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        server.stop();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Value
+    public static class Response {
+
+        int status;
+
+        String contentType;
+
+        String body;
+    }
+}
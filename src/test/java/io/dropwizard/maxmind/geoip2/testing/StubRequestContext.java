@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.testing;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bare {@link ContainerRequestContext} holding headers and properties, for driving request filters without a container.
+ * Reusable across invocations through {@link #reset()}.
+ *
+ * @author phaneesh
+ */
+public class StubRequestContext implements ContainerRequestContext {
+
+    private final MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+
+    private final Map<String, Object> properties = new HashMap<>();
+
+    private Response abortedWith;
+
+    public StubRequestContext header(String name, String value) {
+        headers.putSingle(name, value);
+        return this;
+    }
+
+    /**
+     * Clears headers, properties and the abort response.
+     */
+    public StubRequestContext reset() {
+        headers.clear();
+        properties.clear();
+        abortedWith = null;
+        return this;
+    }
+
+    public Response getAbortedWith() {
+        return abortedWith;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return properties.get(name);
+    }
+
+    @Override
+    public Collection<String> getPropertyNames() {
+        return properties.keySet();
+    }
+
+    @Override
+    public void setProperty(String name, Object object) {
+        properties.put(name, object);
+    }
+
+    @Override
+    public void removeProperty(String name) {
+        properties.remove(name);
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public String getHeaderString(String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return String.join(",", header.getValue());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void abortWith(Response response) {
+        this.abortedWith = response;
+    }
+
+    @Override
+    public String getMethod() {
+        return "GET";
+    }
+
+    @Override
+    public UriInfo getUriInfo() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setRequestUri(URI requestUri) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setRequestUri(URI baseUri, URI requestUri) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Request getRequest() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setMethod(String method) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Date getDate() {
+        return null;
+    }
+
+    @Override
+    public Locale getLanguage() {
+        return null;
+    }
+
+    @Override
+    public int getLength() {
+        return -1;
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        return null;
+    }
+
+    @Override
+    public List<MediaType> getAcceptableMediaTypes() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Locale> getAcceptableLanguages() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, Cookie> getCookies() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean hasEntity() {
+        return false;
+    }
+
+    @Override
+    public InputStream getEntityStream() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setEntityStream(InputStream input) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SecurityContext getSecurityContext() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setSecurityContext(SecurityContext context) {
+        throw new UnsupportedOperationException();
+    }
+}
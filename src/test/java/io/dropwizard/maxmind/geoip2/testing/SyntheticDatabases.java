@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic GeoIP2 databases for tests and benchmarks, written with {@link MmdbWriter}.
+ * Public IPv4 space is assigned per /16, with some /16s split into /24s of different countries and some left empty;
+ * IPv6 gets /32s under 2a00::/8. Every database covers the same blocks, the anonymous database only the anonymous ones.
+ *
+ * @author phaneesh
+ */
+public final class SyntheticDatabases {
+
+    private static final String[][] COUNTRIES = {
+            {"US", "United States", "CA", "California", "San Francisco"},
+            {"IN", "India", "KA", "Karnataka", "Bengaluru"},
+            {"GB", "United Kingdom", "ENG", "England", "London"},
+            {"DE", "Germany", "BE", "Berlin", "Berlin"},
+            {"BR", "Brazil", "SP", "São Paulo", "São Paulo"},
+            {"JP", "Japan", "13", "Tokyo", "Tokyo"},
+            {"FR", "France", "IDF", "Île-de-France", "Paris"},
+            {"CI", "Côte d’Ivoire", "AB", "Abidjan", "Abidjan"},
+            {"SG", "Singapore", "01", "Central Singapore", "Singapore"},
+            {"AU", "Australia", "NSW", "New South Wales", "Sydney"}
+    };
+
+    private static final String[] CONNECTION_TYPES = {"Cable/DSL", "Cellular", "Corporate", "Dialup", "Satellite"};
+
+    private static final String[] USER_TYPES = {"residential", "cellular", "business", "hosting", "college"};
+
+    public static final String COUNTRY = "GeoIP2-Country.mmdb";
+
+    public static final String CITY = "GeoIP2-City.mmdb";
+
+    public static final String ENTERPRISE = "GeoIP2-Enterprise.mmdb";
+
+    public static final String ANONYMOUS = "GeoIP2-Anonymous-IP.mmdb";
+
+    public static final String ASN = "GeoLite2-ASN.mmdb";
+
+    private static final String COMPLETE = ".complete";
+
+    private static final List<Block> BLOCKS = Collections.unmodifiableList(generate(0x6e0L));
+
+    private SyntheticDatabases() {
+    }
+
+    /**
+     * A network and the data every synthetic database holds for it.
+     */
+    public static final class Block {
+
+        public final InetAddress network;
+
+        public final int prefixLength;
+
+        public final int country;
+
+        public final long asn;
+
+        public final boolean anonymous;
+
+        public final boolean anonymousVpn;
+
+        public final boolean tor;
+
+        Block(InetAddress network, int prefixLength, int country, long asn, boolean anonymous, boolean anonymousVpn,
+              boolean tor) {
+            this.network = network;
+            this.prefixLength = prefixLength;
+            this.country = country;
+            this.asn = asn;
+            this.anonymous = anonymous;
+            this.anonymousVpn = anonymousVpn;
+            this.tor = tor;
+        }
+
+        public String isoCode() {
+            return COUNTRIES[country][0];
+        }
+
+        /**
+         * @return a random address inside the block
+         */
+        public InetAddress randomAddress(Random random) {
+            final byte[] address = network.getAddress();
+            final int hostBits = address.length * 8 - prefixLength;
+            for (int bit = 0; bit < hostBits; bit++) {
+                if (random.nextBoolean()) {
+                    final int index = address.length * 8 - 1 - bit;
+                    address[index >>> 3] |= (byte) (0x80 >>> (index & 7));
+                }
+            }
+            return address(address);
+        }
+    }
+
+    public static List<Block> blocks() {
+        return BLOCKS;
+    }
+
+    /**
+     * Writes every synthetic database once per build into {@code target/synthetic-mmdb} (or the directory in the
+     * {@code maxmind.synthetic.dir} system property) and returns the database with the given file name.
+     */
+    public static synchronized File shared(String name) throws IOException {
+        final File dir = new File(System.getProperty("maxmind.synthetic.dir", "target/synthetic-mmdb"));
+        final File complete = new File(dir, COMPLETE);
+        if (!complete.exists()) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            country(dir);
+            city(dir);
+            enterprise(dir);
+            anonymous(dir);
+            asn(dir);
+            if (!complete.createNewFile() && !complete.exists()) {
+                throw new IOException("Cannot create " + complete);
+            }
+        }
+        return new File(dir, name);
+    }
+
+    public static File country(File dir) throws IOException {
+        return write(new File(dir, COUNTRY), "GeoIP2-Country", false, false);
+    }
+
+    public static File city(File dir) throws IOException {
+        return write(new File(dir, CITY), "GeoIP2-City", true, false);
+    }
+
+    public static File enterprise(File dir) throws IOException {
+        return write(new File(dir, ENTERPRISE), "GeoIP2-Enterprise", true, true);
+    }
+
+    public static File anonymous(File dir) throws IOException {
+        final MmdbWriter writer = new MmdbWriter("GeoIP2-Anonymous-IP");
+        for (Block block : BLOCKS) {
+            if (block.anonymous) {
+                final Map<String, Object> record = new LinkedHashMap<>();
+                record.put("is_anonymous", true);
+                record.put("is_anonymous_vpn", block.anonymousVpn);
+                record.put("is_tor_exit_node", block.tor);
+                writer.insert(block.network, block.prefixLength, record);
+            }
+        }
+        final File file = new File(dir, ANONYMOUS);
+        writer.write(file);
+        return file;
+    }
+
+    public static File asn(File dir) throws IOException {
+        final MmdbWriter writer = new MmdbWriter("GeoLite2-ASN");
+        for (Block block : BLOCKS) {
+            final Map<String, Object> record = new LinkedHashMap<>();
+            record.put("autonomous_system_number", block.asn);
+            record.put("autonomous_system_organization", "AS" + block.asn + " Networks");
+            writer.insert(block.network, block.prefixLength, record);
+        }
+        final File file = new File(dir, ASN);
+        writer.write(file);
+        return file;
+    }
+
+    private static File write(File file, String type, boolean city, boolean traits) throws IOException {
+        final MmdbWriter writer = new MmdbWriter(type);
+        for (Block block : BLOCKS) {
+            writer.insert(block.network, block.prefixLength, record(block, city, traits));
+        }
+        writer.write(file);
+        return file;
+    }
+
+    private static Map<String, Object> record(Block block, boolean city, boolean traits) {
+        final String[] country = COUNTRIES[block.country];
+        final Map<String, Object> record = new LinkedHashMap<>();
+        final Map<String, Object> countryRecord = new LinkedHashMap<>();
+        countryRecord.put("geoname_id", 1000L + block.country);
+        countryRecord.put("iso_code", country[0]);
+        countryRecord.put("names", Collections.singletonMap("en", country[1]));
+        record.put("country", countryRecord);
+        record.put("registered_country", countryRecord);
+        if (city) {
+            final Map<String, Object> subdivision = new LinkedHashMap<>();
+            subdivision.put("iso_code", country[2]);
+            subdivision.put("names", Collections.singletonMap("en", country[3]));
+            record.put("subdivisions", Collections.singletonList(subdivision));
+            final Map<String, Object> cityRecord = new LinkedHashMap<>();
+            cityRecord.put("geoname_id", 2000L + block.country);
+            cityRecord.put("names", Collections.singletonMap("en", country[4]));
+            record.put("city", cityRecord);
+            record.put("postal", Collections.singletonMap("code", String.valueOf(10000 + block.country)));
+            final Map<String, Object> location = new LinkedHashMap<>();
+            location.put("latitude", -60.0 + block.country * 11.5);
+            location.put("longitude", -170.0 + block.country * 33.25);
+            location.put("accuracy_radius", 5 + block.country);
+            record.put("location", location);
+        }
+        if (traits) {
+            final Map<String, Object> traitsRecord = new LinkedHashMap<>();
+            traitsRecord.put("autonomous_system_number", block.asn);
+            traitsRecord.put("autonomous_system_organization", "AS" + block.asn + " Networks");
+            traitsRecord.put("isp", "ISP " + block.asn % 97);
+            traitsRecord.put("organization", "Org " + block.asn % 89);
+            traitsRecord.put("connection_type", CONNECTION_TYPES[(int) (block.asn % CONNECTION_TYPES.length)]);
+            traitsRecord.put("user_type", USER_TYPES[(int) (block.asn % USER_TYPES.length)]);
+            if (block.anonymous) {
+                traitsRecord.put("is_anonymous", true);
+                traitsRecord.put("is_anonymous_vpn", block.anonymousVpn);
+                traitsRecord.put("is_tor_exit_node", block.tor);
+            }
+            record.put("traits", traitsRecord);
+        }
+        return record;
+    }
+
+    private static List<Block> generate(long seed) {
+        final Random random = new Random(seed);
+        final List<Block> blocks = new ArrayList<>();
+        for (int first = 1; first < 224; first++) {
+            if (first == 10 || first == 100 || first == 127 || first == 169 || first == 172 || first == 192
+                    || first == 198 || first == 203) {
+                //Reserved ranges live in these /8s; keep them out of the data like the real databases
+                continue;
+            }
+            for (int second = 0; second < 256; second++) {
+                final int kind = random.nextInt(256);
+                if (kind < 8) {
+                    //Unassigned
+                    continue;
+                }
+                if (kind == 8) {
+                    for (int third = 0; third < 256; third++) {
+                        blocks.add(block(random, address(new byte[]{(byte) first, (byte) second, (byte) third, 0}),
+                                24));
+                    }
+                    continue;
+                }
+                blocks.add(block(random, address(new byte[]{(byte) first, (byte) second, 0, 0}), 16));
+            }
+        }
+        for (int i = 0; i < 4096; i++) {
+            final byte[] network = new byte[16];
+            network[0] = 0x2a;
+            network[1] = (byte) (i >>> 8);
+            network[2] = (byte) i;
+            blocks.add(block(random, address(network), 32));
+        }
+        return blocks;
+    }
+
+    private static Block block(Random random, InetAddress network, int prefixLength) {
+        //Skewed towards the first countries, like real traffic
+        final int country = Math.min(COUNTRIES.length - 1, (int) Math.abs(random.nextGaussian() * 3));
+        final long asn = 1000 + random.nextInt(5000);
+        final boolean anonymous = random.nextInt(50) == 0;
+        return new Block(network, prefixLength, country, asn, anonymous, anonymous && random.nextBoolean(),
+                anonymous && random.nextInt(4) == 0);
+    }
+
+    private static InetAddress address(byte[] bytes) {
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
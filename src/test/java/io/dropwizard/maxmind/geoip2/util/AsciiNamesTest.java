@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author phaneesh
+ */
+public class AsciiNamesTest {
+
+    @Test
+    public void matchesTheRegex() {
+        final Random random = new Random(7);
+        final char[] alphabet = {'a', 'Z', ' ', '~', '\u007f', '\u001f', '\t', 'é', 'ü', '中', '\ud83d', '\ude00'};
+        for (int i = 0; i < 10_000; i++) {
+            final char[] chars = new char[random.nextInt(12)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            final String input = new String(chars);
+            assertEquals(input.replaceAll("[^\\x20-\\x7e]", ""), AsciiNames.sanitize(input));
+        }
+    }
+
+    @Test
+    public void returnsPrintableInputItself() {
+        final String input = "Deutsche Telekom AG";
+        assertSame(input, AsciiNames.sanitize(input));
+    }
+
+    @Test
+    public void internsSanitizedNames() {
+        final AsciiNames names = new AsciiNames();
+        final String first = names.toAscii(new String("München".toCharArray()));
+        assertEquals("Mnchen", first);
+        assertSame(first, names.toAscii(new String("München".toCharArray())));
+        assertEquals(1, names.size());
+        assertNull(names.toAscii(null));
+        assertEquals("", names.toAscii(""));
+    }
+
+    @Test
+    public void stopsInterningBeyondTheBound() {
+        final AsciiNames names = new AsciiNames(1);
+        names.toAscii("São Paulo");
+        assertEquals("Zrich", names.toAscii("Zürich"));
+        assertEquals(1, names.size());
+        names.clear();
+        assertEquals(0, names.size());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author phaneesh
+ */
+public class CidrTrieTest {
+
+    @Test
+    public void matchesIpv4Networks() {
+        final CidrTrie trie = new CidrTrie().add("10.0.0.0/8").add("192.168.1.1").add("172.16.0.0/12");
+        assertTrue(contains(trie, "10.255.255.255"));
+        assertTrue(contains(trie, "192.168.1.1"));
+        assertTrue(contains(trie, "172.31.0.1"));
+        assertFalse(contains(trie, "11.0.0.0"));
+        assertFalse(contains(trie, "192.168.1.2"));
+        assertFalse(contains(trie, "172.32.0.1"));
+        assertFalse(contains(trie, "2001:db8::1"));
+    }
+
+    @Test
+    public void matchesIpv6Networks() {
+        final CidrTrie trie = new CidrTrie().add("2001:db8::/32").add("fe80::/10");
+        assertTrue(contains(trie, "2001:db8:ffff::1"));
+        assertTrue(contains(trie, "febf::1"));
+        assertFalse(contains(trie, "2001:db9::1"));
+        assertFalse(contains(trie, "fec0::1"));
+        assertFalse(contains(trie, "10.0.0.1"));
+    }
+
+    @Test
+    public void matchesIpv4MappedAddressesAgainstIpv4Networks() {
+        final CidrTrie trie = new CidrTrie().add("10.0.0.0/8");
+        assertTrue(contains(trie, "::ffff:10.1.2.3"));
+        assertTrue(contains(trie, "::ffff:a01:203"));
+        assertFalse(contains(trie, "::ffff:11.1.2.3"));
+        //Only mapped addresses, not the deprecated compatible form
+        assertFalse(contains(trie, "::10.1.2.3"));
+
+        final CidrTrie mapped = new CidrTrie().add("::ffff:192.168.0.0/112");
+        assertTrue(contains(mapped, "192.168.3.4"));
+        assertTrue(contains(mapped, "::ffff:192.168.3.4"));
+        assertFalse(contains(mapped, "192.169.0.1"));
+    }
+
+    @Test
+    public void matchesEverythingForZeroPrefix() {
+        final CidrTrie trie = new CidrTrie().add("0.0.0.0/0");
+        assertTrue(contains(trie, "1.2.3.4"));
+        assertTrue(contains(trie, "::ffff:1.2.3.4"));
+        assertFalse(contains(trie, "2001:db8::1"));
+        assertTrue(contains(new CidrTrie().add("::/0"), "2001:db8::1"));
+    }
+
+    @Test
+    public void keepsBroaderNetworkWhenNarrowerIsAdded() {
+        final CidrTrie trie = new CidrTrie().add("10.0.0.0/8").add("10.1.0.0/16");
+        assertTrue(contains(trie, "10.2.0.1"));
+        final CidrTrie reversed = new CidrTrie().add("10.1.0.0/16").add("10.0.0.0/8");
+        assertTrue(contains(reversed, "10.2.0.1"));
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        final CidrTrie trie = new CidrTrie();
+        for (int i = 0; i < 256; i++) {
+            trie.add("2001:db8:" + Integer.toHexString(i * 251) + "::/48");
+        }
+        for (int i = 0; i < 256; i++) {
+            assertTrue(contains(trie, "2001:db8:" + Integer.toHexString(i * 251) + ":1::1"));
+        }
+        assertFalse(contains(trie, "2001:db8:1::1"));
+    }
+
+    @Test
+    public void reportsEmpty() {
+        assertTrue(new CidrTrie().isEmpty());
+        assertFalse(new CidrTrie().add("::1").isEmpty());
+    }
+
+    @Test
+    public void rejectsInvalidNetworks() {
+        for (String cidr : new String[]{"10.0.0.0/33", "2001:db8::/129", "10.0.0.0/-1", "10.0.0.0/x", "example.com",
+                "10.0.0/8", ""}) {
+            try {
+                new CidrTrie().add(cidr);
+                fail(cidr);
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+        }
+    }
+
+    private static boolean contains(CidrTrie trie, String address) {
+        final byte[] bytes = new byte[16];
+        final int length = IpAddressParser.parseInto(address, 0, address.length(), bytes);
+        return trie.contains(bytes, length);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.util;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author phaneesh
+ */
+public class ClientAddressExtractorTest {
+
+    private final ClientAddressExtractor untrusted = new ClientAddressExtractor(Collections.emptyList());
+
+    private final ClientAddressExtractor trusted = new ClientAddressExtractor(
+            Arrays.asList("10.0.0.0/8", "192.168.1.1", "2001:db8::/32"));
+
+    @Test
+    public void usesLeftmostEntryWithoutTrustedProxies() throws Exception {
+        assertEquals(address("203.0.113.7"), untrusted.fromList("203.0.113.7, 10.0.0.1, 10.0.0.2"));
+        assertEquals(address("2001:db8::1"), untrusted.fromList("2001:db8::1,10.0.0.1"));
+        assertNull(untrusted.fromList("unknown, 10.0.0.1"));
+        assertNull(untrusted.fromList(null));
+        assertNull(untrusted.fromList(""));
+    }
+
+    @Test
+    public void walksFromTheRightSkippingTrustedHops() throws Exception {
+        //Anything left of the first untrusted hop is client supplied and ignored
+        assertEquals(address("203.0.113.7"), trusted.fromList("198.51.100.1, 203.0.113.7, 10.0.0.1, 192.168.1.1"));
+        assertEquals(address("203.0.113.7"), trusted.fromList("bogus, 203.0.113.7, 10.1.2.3"));
+        assertEquals(address("192.168.1.2"), trusted.fromList("192.168.1.2, 192.168.1.1"));
+        assertEquals(address("2001:db9::1"), trusted.fromList("2001:db9::1, 2001:db8::53"));
+        //An invalid hop between trusted ones ends the walk
+        assertNull(trusted.fromList("203.0.113.7, garbage, 10.0.0.1"));
+    }
+
+    @Test
+    public void usesLeftmostHopWhenAllAreTrusted() throws Exception {
+        assertEquals(address("10.0.0.9"), trusted.fromList("10.0.0.9, 10.0.0.1, 192.168.1.1"));
+        assertEquals(address("10.0.0.9"), trusted.fromList("10.0.0.9"));
+        assertEquals(address("10.0.0.9"), trusted.fromList(" , 10.0.0.9, 10.0.0.1"));
+    }
+
+    @Test
+    public void matchesIpv4MappedAddressesAgainstIpv4Networks() throws Exception {
+        assertEquals(address("203.0.113.7"), trusted.fromList("203.0.113.7, ::ffff:10.0.0.1"));
+        assertEquals(address("203.0.113.7"), trusted.fromList("::ffff:203.0.113.7, ::ffff:a00:1"));
+        assertEquals(address("203.0.113.7"), trusted.fromForwarded("for=203.0.113.7, for=\"[::ffff:10.0.0.1]\""));
+    }
+
+    @Test
+    public void skipsEmptyElements() throws Exception {
+        for (ClientAddressExtractor extractor : Arrays.asList(untrusted, trusted)) {
+            assertEquals(address("203.0.113.7"), extractor.fromList("203.0.113.7,"));
+            assertEquals(address("203.0.113.7"), extractor.fromList("203.0.113.7, , "));
+            assertEquals(address("203.0.113.7"), extractor.fromList(" ,,203.0.113.7"));
+            assertEquals(address("203.0.113.7"), extractor.fromForwarded("for=203.0.113.7,"));
+            assertNull(extractor.fromList(" , ,"));
+            assertNull(extractor.fromForwarded(","));
+        }
+        assertEquals(address("203.0.113.7"), trusted.fromList("203.0.113.7, ,10.0.0.1,"));
+    }
+
+    @Test
+    public void parsesForwardedFor() throws Exception {
+        assertEquals(address("192.0.2.60"), untrusted.fromForwarded("for=192.0.2.60;proto=http;by=203.0.113.43"));
+        assertEquals(address("192.0.2.60"), untrusted.fromForwarded("proto=http; FOR=192.0.2.60"));
+        assertEquals(address("192.0.2.60"), untrusted.fromForwarded("for=\"192.0.2.60:8080\""));
+        assertEquals(address("2001:db8:cafe::17"), untrusted.fromForwarded("for=\"[2001:db8:cafe::17]:4711\""));
+        assertEquals(address("2001:db8:cafe::17"), untrusted.fromForwarded("for=\"[2001:db8:cafe::17]\", for=10.0.0.1"));
+        //An IPv6 address must be bracketed and quoted
+        assertNull(untrusted.fromForwarded("for=2001:db8:cafe::17"));
+        assertNull(untrusted.fromForwarded("for=\"[2001:db8:cafe::17\""));
+        assertNull(untrusted.fromForwarded("proto=https"));
+    }
+
+    @Test
+    public void rejectsObfuscatedForwardedNodes() throws Exception {
+        assertNull(untrusted.fromForwarded("for=unknown"));
+        assertNull(untrusted.fromForwarded("for=_hidden, for=203.0.113.7"));
+        assertNull(untrusted.fromForwarded("for=\"_gazonk\""));
+        assertNull(trusted.fromForwarded("for=203.0.113.7, for=unknown, for=10.0.0.1"));
+    }
+
+    @Test
+    public void walksForwardedFromTheRight() throws Exception {
+        assertEquals(address("203.0.113.7"), trusted.fromForwarded(
+                "for=198.51.100.1, for=203.0.113.7;proto=https, for=10.0.0.1;by=10.0.0.2"));
+        assertEquals(address("2001:db9::1"), trusted.fromForwarded(
+                "for=\"[2001:db9::1]:443\", for=\"[2001:db8::53]\""));
+        assertEquals(address("10.0.0.9"), trusted.fromForwarded("for=10.0.0.9, for=10.0.0.1"));
+    }
+
+    private static InetAddress address(String value) throws Exception {
+        return InetAddress.getByName(value);
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package io.dropwizard.maxmind.geoip2.util;
+
+import org.apache.commons.validator.routines.InetAddressValidator;
+import org.junit.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks {@link IpAddressParser} against the parsing it replaced (split, commons-validator and
+ * InetAddress.getByName) on a fixed corpus and on randomly generated and mutated headers.
+ *
+ * @author phaneesh
+ */
+public class IpAddressParserTest {
+
+    private static final String[] CORPUS = {
+            "1.2.3.4", "0.0.0.0", "255.255.255.255", "10.0.0.1, 192.168.1.1", "1.2.3.4,5.6.7.8",
+            "::", "::1", "1::", "2001:db8::1", "2001:DB8:0:0:8:800:200C:417A", "1:2:3:4:5:6:7:8",
+            "::ffff:10.0.0.1", "::ffff:a00:1", "::1.2.3.4", "1:2:3:4:5:6:1.2.3.4", "64:ff9b::192.0.2.33",
+            "fe80::1%eth0", "fe80::1%1", "fe80::1%", "fe80::1%eth 0",
+            "01.2.3.4", "1.02.3.4", "256.1.1.1", "1.2.3", "1.2.3.4.5", "1..2.3", ".1.2.3", "1.2.3.",
+            "1:2:3:4:5:6:7:8:9", "1::2::3", ":1::", "1:::2", "1:2:3:4:5:6:7::", "::1:2:3:4:5:6:7:8", "12345::",
+            "1:2:3:4:5:6:7:1.2.3.4", "::1.2.3", "::1.2.3.256", "g::1", "::1/64", "1.2.3.4/24", "1.2.3.4%24",
+            "localhost", "example.com", "", ",", " , 1.2.3.4", "１::1", "１.2.3.4", "١.2.3.4",
+            "::١", "+1.2.3.4", "-1.2.3.4", "0x1.2.3.4"
+    };
+
+    private static final String ALPHABET = "0123456789abcdefABCDEF:.%,/ \tgx-+１١Ａ";
+
+    @Test
+    public void matchesLegacyParserOnCorpus() {
+        for (String header : CORPUS) {
+            assertSameAddress(header);
+        }
+    }
+
+    @Test
+    public void matchesLegacyParserOnGeneratedHeaders() {
+        final Random random = new Random(0x5eedL);
+        for (int i = 0; i < 200_000; i++) {
+            final StringBuilder header = new StringBuilder(randomAddress(random));
+            if (random.nextInt(4) == 0) {
+                header.append(random.nextBoolean() ? ", " : ",").append(randomAddress(random));
+            }
+            final int mutations = random.nextInt(4);
+            for (int m = 0; m < mutations && header.length() > 0; m++) {
+                mutate(random, header);
+            }
+            assertSameAddress(header.toString());
+        }
+    }
+
+    @Test
+    public void rejectsNonAsciiDigits() {
+        assertNull(IpAddressParser.parseFirst("１::1"));
+        assertNull(IpAddressParser.parseFirst("::١"));
+        assertNull(IpAddressParser.parseFirst("１.2.3.4"));
+    }
+
+    @Test
+    public void neverResolvesNames() {
+        assertNull(IpAddressParser.parseFirst("localhost"));
+        assertNull(IpAddressParser.parseFirst("example.com, 1.2.3.4"));
+    }
+
+    @Test
+    public void mapsIpv4MappedAddressesToIpv4() {
+        final InetAddress address = IpAddressParser.parseFirst("::ffff:10.0.0.1");
+        assertNotNull(address);
+        assertEquals(Inet4Address.class, address.getClass());
+        assertArrayEquals(new byte[]{10, 0, 0, 1}, address.getAddress());
+    }
+
+    @Test
+    public void dropsZoneIds() {
+        final InetAddress address = IpAddressParser.parseFirst("fe80::1%no-such-interface");
+        assertNotNull(address);
+        assertEquals("fe80:0:0:0:0:0:0:1", address.getHostAddress());
+        assertNull(IpAddressParser.parseFirst("fe80::1%"));
+        assertNull(IpAddressParser.parseFirst("1.2.3.4%1"));
+    }
+
+    @Test
+    public void parsesIntoCallerBuffer() {
+        final byte[] buffer = new byte[16];
+        assertEquals(4, IpAddressParser.parseInto(" 1.2.3.4 ", 0, 9, buffer));
+        assertEquals(16, IpAddressParser.parseInto("x2001:db8::1y", 1, 12, buffer));
+        assertEquals(0, IpAddressParser.parseInto("2001:db8::1::", 0, 13, buffer));
+    }
+
+    /**
+     * The new parser trims spaces and tabs around the first entry and accepts any IPv6 zone id without resolving the
+     * interface, dropping it; the legacy parse is applied to the input normalized the same way.
+     */
+    private static void assertSameAddress(String header) {
+        final InetAddress expected = legacy(header);
+        final InetAddress actual = IpAddressParser.parseFirst(header);
+        if (expected == null) {
+            assertNull("Expected [" + header + "] to be rejected", actual);
+            return;
+        }
+        assertNotNull("Expected [" + header + "] to parse", actual);
+        assertEquals("Family of [" + header + "]", expected.getClass(), actual.getClass());
+        assertArrayEquals("Address of [" + header + "]", expected.getAddress(), actual.getAddress());
+    }
+
+    private static InetAddress legacy(String header) {
+        final String[] addresses = header.split(",");
+        if (addresses.length == 0) {
+            return null;
+        }
+        String first = trim(addresses[0]);
+        final int zone = first.indexOf('%');
+        final int colon = first.indexOf(':');
+        if (zone >= 0 && colon >= 0 && colon < zone) {
+            final String id = first.substring(zone + 1);
+            if (id.isEmpty() || id.indexOf(' ') >= 0 || id.indexOf('\t') >= 0 || id.indexOf('/') >= 0
+                    || id.indexOf('%') >= 0) {
+                return null;
+            }
+            first = first.substring(0, zone);
+        }
+        if (!InetAddressValidator.getInstance().isValid(first)) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(first);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String trim(String value) {
+        int from = 0;
+        int to = value.length();
+        while (from < to && (value.charAt(from) == ' ' || value.charAt(from) == '\t')) {
+            from++;
+        }
+        while (to > from && (value.charAt(to - 1) == ' ' || value.charAt(to - 1) == '\t')) {
+            to--;
+        }
+        return value.substring(from, to);
+    }
+
+    private static String randomAddress(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+            case 1:
+                return ipv4(random);
+            case 2:
+                return "::ffff:" + ipv4(random);
+            case 3:
+                return ipv6(random, 8) + (random.nextInt(4) == 0 ? "%eth" + random.nextInt(3) : "");
+            case 4:
+                return compressed(random);
+            default:
+                return ipv6(random, 6) + ":" + ipv4(random);
+        }
+    }
+
+    private static String ipv4(Random random) {
+        return random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+    }
+
+    private static String ipv6(Random random, int groups) {
+        final StringBuilder address = new StringBuilder();
+        for (int i = 0; i < groups; i++) {
+            if (i > 0) {
+                address.append(':');
+            }
+            final String group = Integer.toHexString(random.nextInt(0x10000));
+            address.append(random.nextBoolean() ? group : group.toUpperCase());
+        }
+        return address.toString();
+    }
+
+    private static String compressed(Random random) {
+        final int head = random.nextInt(4);
+        final int tail = random.nextInt(4);
+        return (head == 0 ? "" : ipv6(random, head)) + "::" + (tail == 0 ? "" : ipv6(random, tail));
+    }
+
+    private static void mutate(Random random, StringBuilder header) {
+        final int at = random.nextInt(header.length() + 1);
+        final char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        switch (random.nextInt(3)) {
+            case 0:
+                header.insert(at, c);
+                break;
+            case 1:
+                if (at < header.length()) {
+                    header.deleteCharAt(at);
+                }
+                break;
+            default:
+                if (at < header.length()) {
+                    header.setCharAt(at, c);
+                }
+        }
+    }
+}
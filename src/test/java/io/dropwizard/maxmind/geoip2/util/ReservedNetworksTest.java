@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2016 Phaneesh Nagaraja <phaneesh.n@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package io.dropwizard.maxmind.geoip2.util;
+
+import org.junit.Test;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author phaneesh
+ */
+public class ReservedNetworksTest {
+
+    @Test
+    public void containsReservedIpv4Ranges() throws Exception {
+        for (String address : new String[]{"10.0.0.0", "10.255.255.255", "100.64.0.1", "100.127.255.255",
+                "169.254.0.1", "169.254.255.255", "127.0.0.1", "172.16.0.1", "172.31.255.255", "192.168.0.1",
+                "192.0.2.1", "198.18.0.1", "203.0.113.9", "224.0.0.1", "255.255.255.255", "0.0.0.0"}) {
+            assertTrue(address, reserved(address));
+        }
+    }
+
+    @Test
+    public void excludesPublicIpv4Neighbours() throws Exception {
+        for (String address : new String[]{"9.255.255.255", "11.0.0.0", "100.63.255.255", "100.128.0.0",
+                "169.253.255.255", "169.255.0.0", "172.15.255.255", "172.32.0.0", "192.167.255.255", "1.1.1.1",
+                "8.8.8.8", "223.255.255.255"}) {
+            assertFalse(address, reserved(address));
+        }
+    }
+
+    @Test
+    public void containsReservedIpv6Ranges() throws Exception {
+        for (String address : new String[]{"::", "::1", "fc00::1", "fdff:ffff::1", "fe80::1", "febf:ffff::1",
+                "2001:db8::1", "ff02::1", "100::1"}) {
+            assertTrue(address, reserved(address));
+        }
+        for (String address : new String[]{"fbff:ffff::1", "fec0::1", "2001:db9::1", "2001:4860::8888", "::2"}) {
+            assertFalse(address, reserved(address));
+        }
+    }
+
+    @Test
+    public void matchesIpv4MappedAddresses() throws Exception {
+        //Kept as 16 bytes, as an IPv6 socket reports an IPv4 client
+        for (String address : new String[]{"10.1.2.3", "192.168.1.1", "100.64.0.1", "169.254.1.1", "127.0.0.1"}) {
+            assertTrue(address, ReservedNetworks.contains(mapped(address)));
+        }
+        assertFalse(ReservedNetworks.contains(mapped("8.8.8.8")));
+        assertTrue(reserved("::ffff:10.1.2.3"));
+    }
+
+    private static boolean reserved(String address) throws Exception {
+        return ReservedNetworks.contains(InetAddress.getByName(address));
+    }
+
+    private static InetAddress mapped(String address) throws Exception {
+        final byte[] ipv4 = InetAddress.getByName(address).getAddress();
+        final byte[] bytes = new byte[16];
+        bytes[10] = (byte) 0xff;
+        bytes[11] = (byte) 0xff;
+        System.arraycopy(ipv4, 0, bytes, 12, 4);
+        final InetAddress mapped = Inet6Address.getByAddress(null, bytes, -1);
+        assertEquals(16, mapped.getAddress().length);
+        return mapped;
+    }
+}